@@ -25,7 +25,7 @@ set "OUT_DIR=%REPO_DIR%\out\production\othello-netprog"
 echo Compiling...
 if not exist "%OUT_DIR%" mkdir "%OUT_DIR%"
 
-dir /s /b "%SRC_DIR%\model\*.java" "%SRC_DIR%\common\*.java" "%SRC_DIR%\client\*.java" > "%REPO_DIR%\sources.txt"
+dir /s /b "%SRC_DIR%\model\*.java" "%SRC_DIR%\common\*.java" "%SRC_DIR%\engine\*.java" "%SRC_DIR%\client\*.java" > "%REPO_DIR%\sources.txt"
 
 "%JAVAC_CMD%" -encoding UTF-8 -d "%OUT_DIR%" @"%REPO_DIR%\sources.txt"
 del "%REPO_DIR%\sources.txt"
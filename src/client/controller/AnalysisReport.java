@@ -0,0 +1,186 @@
+package client.controller;
+
+import engine.*;
+import model.*;
+
+import java.util.*;
+
+/**
+ * サーバーから受け取った対局の解析結果（{@code ANALYSIS}の応答）です。
+ * <p>
+ * 応答は解析待ち（{@link Status#PENDING}）、不明な対局（{@link Status#UNKNOWN}）、解析済み（{@link Status#READY}）のいずれかです。
+ * 解析済みの場合は1手ごとに、実際の手、最善手、打つ前の白の勝率、失った勝率、悪手の程度を持ちます。
+ * 各手の手番は棋譜を再生して求めます。
+ */
+public final class AnalysisReport {
+	/**
+	 * 応答の種類です。
+	 */
+	public enum Status {
+		PENDING, UNKNOWN, READY
+	}
+
+	private final String gameId;
+	private final Status status;
+	private final int size;
+	private final int[] played;
+	private final int[] best;
+	private final int[] whiteWinPercent;
+	private final int[] lossPercent;
+	private final int[] grades;
+	private final Piece[] movers;
+
+	private AnalysisReport(final String gameId, final Status status, final int size, final int plies) {
+		this.gameId = gameId;
+		this.status = status;
+		this.size = size;
+		this.played = new int[plies];
+		this.best = new int[plies];
+		this.whiteWinPercent = new int[plies];
+		this.lossPercent = new int[plies];
+		this.grades = new int[plies];
+		this.movers = new Piece[plies];
+	}
+
+	/**
+	 * {@code ANALYSIS gameId PENDING|UNKNOWN|READY ...}の1行を解釈します。
+	 *
+	 * @param line      受信した行
+	 * @param boardSize 対局のボードサイズ
+	 * @throws IllegalArgumentException 形式が正しくない場合
+	 */
+	public static AnalysisReport parse(final String line, final int boardSize) {
+		String[] tokens = line.split(" ");
+		if (tokens.length < 3 || !"ANALYSIS".equals(tokens[0])) throw new IllegalArgumentException("not an analysis reply: " + line);
+		String gameId = tokens[1];
+		switch (tokens[2]) {
+			case "PENDING":
+				return new AnalysisReport(gameId, Status.PENDING, boardSize, 0);
+			case "UNKNOWN":
+				return new AnalysisReport(gameId, Status.UNKNOWN, boardSize, 0);
+			case "READY":
+				break;
+			default:
+				throw new IllegalArgumentException("unknown analysis status: " + tokens[2]);
+		}
+
+		int plies = Integer.parseInt(tokens[3]);
+		if (tokens.length != 4 + plies) throw new IllegalArgumentException("expected " + plies + " plies: " + line);
+		AnalysisReport report = new AnalysisReport(gameId, Status.READY, boardSize, plies);
+		Board board = new Board(boardSize);
+		Piece turn = Piece.WHITE;
+		for (int ply = 0; ply < plies; ply++) {
+			// i,j:bi,bj:win:loss:grade
+			String[] fields = tokens[4 + ply].split(":");
+			if (fields.length != 5) throw new IllegalArgumentException("malformed ply: " + tokens[4 + ply]);
+			report.played[ply] = parseCell(fields[0], boardSize);
+			report.best[ply] = "-".equals(fields[1]) ? -1 : parseCell(fields[1], boardSize);
+			report.whiteWinPercent[ply] = "-".equals(fields[2]) ? GameAnalysis.UNKNOWN : Integer.parseInt(fields[2]);
+			report.lossPercent[ply] = Integer.parseInt(fields[3]);
+			report.grades[ply] = Integer.parseInt(fields[4]);
+
+			if (board.countValidMoves(turn) == 0) turn = turn.opposite();
+			int move = report.played[ply];
+			if (!board.isValidMove(turn, move / boardSize, move % boardSize)) throw new IllegalArgumentException("illegal move at ply " + (ply + 1));
+			report.movers[ply] = turn;
+			board.applyMove(turn, move / boardSize, move % boardSize);
+			turn = turn.opposite();
+		}
+		return report;
+	}
+
+	private static int parseCell(final String text, final int boardSize) {
+		int comma = text.indexOf(',');
+		if (comma < 0) throw new IllegalArgumentException("malformed cell: " + text);
+		return Integer.parseInt(text.substring(0, comma)) * boardSize + Integer.parseInt(text.substring(comma + 1));
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * ボードサイズを返します。
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * 手数を返します（解析済みでなければ0）。
+	 */
+	public int getPlies() {
+		return played.length;
+	}
+
+	/**
+	 * 実際に打った手（i * size + j）を返します。
+	 */
+	public int getPlayed(final int ply) {
+		return played[ply];
+	}
+
+	/**
+	 * 最善手（i * size + j）を返します。不明な場合は-1を返します。
+	 */
+	public int getBest(final int ply) {
+		return best[ply];
+	}
+
+	/**
+	 * 打つ前の白の勝率（%）を返します。不明な場合は{@link GameAnalysis#UNKNOWN}を返します。
+	 */
+	public int getWhiteWinPercent(final int ply) {
+		return whiteWinPercent[ply];
+	}
+
+	/**
+	 * 手番のプレイヤーが失った勝率（%）を返します。
+	 */
+	public int getLossPercent(final int ply) {
+		return lossPercent[ply];
+	}
+
+	/**
+	 * 悪手の程度（{@link GameAnalysis#GOOD}〜{@link GameAnalysis#BLUNDER}）を返します。
+	 */
+	public int getGrade(final int ply) {
+		return grades[ply];
+	}
+
+	/**
+	 * その手を打ったプレイヤーを返します。
+	 */
+	public Piece getMover(final int ply) {
+		return movers[ply];
+	}
+
+	/**
+	 * 指定されたプレイヤーの、指定した程度以上の悪手の数を返します。
+	 */
+	public int countGrade(final Piece player, final int minimumGrade) {
+		int count = 0;
+		for (int ply = 0; ply < movers.length; ply++) {
+			if (movers[ply] == player && grades[ply] >= minimumGrade) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 指定されたプレイヤーの手を、失った勝率の大きい順に最大{@code limit}手返します（失っていない手は含まない）。
+	 *
+	 * @return 手数（0始まり）のリスト
+	 */
+	public List<Integer> worstMoves(final Piece player, final int limit) {
+		List<Integer> plies = new ArrayList<>();
+		for (int ply = 0; ply < movers.length; ply++) {
+			if (movers[ply] == player && lossPercent[ply] > 0) plies.add(ply);
+		}
+		plies.sort((a, b) -> Integer.compare(lossPercent[b], lossPercent[a]));
+		return plies.subList(0, Math.min(limit, plies.size()));
+	}
+}
@@ -0,0 +1,67 @@
+package client.controller;
+
+import engine.*;
+import model.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * 自分の手番中に、置けるすべての手をバックグラウンドで評価するクラスです。
+ * <p>
+ * 探索は全インスタンスで共有する低優先度のデーモンスレッド1本で行い、EDTでは実行しません。
+ * 対局ごとにインスタンスを作っても、スレッドは増えません。
+ * 新しい解析を始めると前の解析は打ち切られ、{@link #cancel()}を呼ぶと探索は数百ノード以内に止まります。
+ * {@code -Dothello.analysis=true}を指定した場合のみ有効です。
+ */
+final class AnalysisWorker {
+	/** 解析を有効にするかどうか */
+	static final boolean ENABLED = Boolean.getBoolean("othello.analysis");
+	/** 1局面の解析に使ってよいCPU時間（ミリ秒） */
+	private static final long BUDGET_MILLIS = Integer.getInteger("othello.analysis.millis", 3000);
+	/** 探索に使用する評価関数 */
+	private static final Evaluator EVALUATOR = new PositionalEvaluator();
+
+	/** 全インスタンスで共有する解析用のスレッド（UIを妨げないよう最低優先度） */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "analysis-worker");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	/** 解析の世代（開始・打ち切りのたびに増やし、古い解析を実行前に捨てる） */
+	private final AtomicInteger generation = new AtomicInteger();
+	/** 実行中の解析の打ち切り時刻（実行中でなければnull） */
+	private volatile Deadline current;
+
+	/**
+	 * 局面の解析を開始します。実行中の解析は打ち切ります。
+	 *
+	 * @param board    解析する盤面（呼び出し側で複製したもの）
+	 * @param player   手番のプレイヤー
+	 * @param listener 各手の評価値の通知先（解析スレッド上で呼ばれる）
+	 */
+	void start(final Board board, final Piece player, final AlphaBetaSearch.ScoreListener listener) {
+		cancel();
+		int id = generation.get();
+		EXECUTOR.execute(() -> {
+			// CPU時間は解析スレッドで計測するため、ここで作成する
+			Deadline deadline = Deadline.cpuTime(TimeUnit.MILLISECONDS.toNanos(BUDGET_MILLIS));
+			current = deadline;
+			// 公開した後に世代を確認するので、打ち切りと行き違っても必ずどちらかで止まる
+			if (generation.get() == id) {
+				new AlphaBetaSearch(EVALUATOR, deadline).scoreMoves(board, player, listener);
+			}
+			current = null;
+		});
+	}
+
+	/**
+	 * 実行中の解析を打ち切ります。
+	 */
+	void cancel() {
+		generation.incrementAndGet();
+		Deadline deadline = current;
+		if (deadline != null) deadline.cancel();
+	}
+}
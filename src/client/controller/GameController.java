@@ -4,18 +4,50 @@
 import model.*;
 
 import javax.swing.*;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * ゲームの進行およびボードの状態を管理します。
+ * <p>
+ * 自分の手はサーバーの{@code MOVE_ACCEPTED}を待たずにローカルのボードと画面へすぐに反映し、未確定の手として保持します。
+ * サーバーから同じ手の{@code MOVE_ACCEPTED}が届いたら確定し、別の手が届いた場合やエラーが返された場合は、
+ * 手を打つ前のスナップショットに巻き戻します。
+ * ボードはEDTとネットワークの受信スレッドの両方から操作されるため、このオブジェクトのロックで保護します。
+ * <p>
+ * 解析が有効な場合、自分の手番の間は{@link AnalysisWorker}が置ける手を評価し、結果をヒートマップとして表示します。
+ * 解析は手が打たれた時点で打ち切り、それ以降に届いた古い結果は捨てます。
+ * <p>
+ * 対局が終わるとサーバーが対局IDを知らせてくるので、結果画面から{@link #requestAnalysis()}でその対局の解析結果を取得できます。
  */
 public class GameController implements NetworkListener {
+	// --------------- クラス定数 ---------------
+	/** 解析結果を要求する回数の上限（解析待ちの間は間隔をあけて要求し直す） */
+	private static final int ANALYSIS_FETCH_ATTEMPTS = 30;
+	/** 解析待ちのときに要求し直すまでの間隔（ミリ秒） */
+	private static final long ANALYSIS_FETCH_INTERVAL_MILLIS = 2000;
+
 	// --------------- フィールド ---------------
 	private final OthelloGUI gui;
 	private final NetworkController networkController;
 	private final int boardSize;
 	private final String playerName;
-	private final Board board;
+	/** ローカルのボード（未確定の手を含む） */
+	private Board board;
+	/** 未確定の手を打つ前のボード（未確定の手がなければnull） */
+	private Board snapshot;
+	/** 未確定の手のマス（i * boardSize + j、未確定の手がなければ-1） */
+	private int pendingMove = -1;
+	/** 手番中の解析（無効な場合はnull） */
+	private final AnalysisWorker analysis = AnalysisWorker.ENABLED ? new AnalysisWorker() : null;
+	/** 解析の世代（解析を開始・打ち切るたびに増やし、古い解析の結果を捨てる） */
+	private int analysisGeneration;
+	/** EDTにまだ適用されていない差分（EDTが追いつかない間に届いた差分はここでまとめられる） */
+	private final AtomicReference<BoardDiff> pendingDiff = new AtomicReference<>();
+	/** サーバーで解析待ちになった対局のID（まだ知らされていなければnull） */
+	private volatile String analysisGameId;
 	private Piece myColor;
 	private Piece currentTurn;
 
@@ -40,11 +72,23 @@ public boolean connect() {
 		return networkController.connect(playerName, boardSize);
 	}
 
-	public void setPiece(int i, int j) {
+	public synchronized void setPiece(int i, int j) {
 		// 選択したマスに駒が置ける場合NetworkControllerに伝達
 		if (myColor == null) return;
 		if (currentTurn != myColor) return;
+		if (pendingMove >= 0) return;
 		if (!board.isValidMove(currentTurn, i, j)) return;
+
+		// サーバーの応答を待たずに手を反映し、未確定の手として覚えておく
+		snapshot = new Board(board);
+		pendingMove = i * boardSize + j;
+		BoardDiff.Builder diff = BoardDiff.builder();
+		stopAnalysis(diff);
+		resetValidMoves(diff, board.getValidMoveCells(myColor));
+		List<Integer> changedCells = board.applyMove(myColor, i, j);
+		updateCells(diff, myColor, changedCells);
+		post(diff.build());
+
 		networkController.sendMove(i, j);
 		System.out.println("手を送信: (" + i + ", " + j + ")");
 	}
@@ -53,76 +97,229 @@ public void giveUp() {
 		networkController.sendResign();
 	}
 
+	/**
+	 * 終わった対局の解析結果をサーバーに要求します。呼び出し元をブロックしません。
+	 * 解析待ちの間は一定間隔で要求し直し、解析結果・不明な対局・上限まで待っても解析待ちのいずれかを結果画面に表示します。
+	 */
+	public void requestAnalysis() {
+		String gameId = analysisGameId;
+		if (gameId == null) return;
+		Thread thread = new Thread(() -> fetchAnalysis(gameId), "analysis-fetch");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void fetchAnalysis(String gameId) {
+		try {
+			AnalysisReport report = null;
+			for (int attempt = 0; attempt < ANALYSIS_FETCH_ATTEMPTS; attempt++) {
+				if (attempt > 0) Thread.sleep(ANALYSIS_FETCH_INTERVAL_MILLIS);
+				report = NetworkController.fetchAnalysis(gameId, boardSize);
+				if (report.getStatus() != AnalysisReport.Status.PENDING) break;
+			}
+			showAnalysis(report);
+		} catch (IOException e) {
+			System.err.println("解析結果の取得に失敗しました: " + e.getMessage());
+			SwingUtilities.invokeLater(() -> gui.showAnalysisError("Could not fetch the analysis."));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	// --------------- NetworkListenerの実装 ---------------
 	@Override
 	public void onGameStart(Piece assignedColor) {
 		this.myColor = assignedColor;
 		this.currentTurn = Piece.WHITE;
 		System.out.println("ゲーム開始！あなたは " + myColor);
-		SwingUtilities.invokeLater(() -> gui.showMessage("Game started! You are " + myColor));
+		post(BoardDiff.builder().message("Game started! You are " + myColor).build());
 	}
 
 	@Override
-	public void onYourTurn() {
+	public synchronized void onYourTurn() {
 		this.currentTurn = myColor;
 		System.out.println("あなたのターン！");
-		SwingUtilities.invokeLater(() -> gui.showMessage("Your turn! Your color is " + myColor));
 		// 自分のターンの場合、駒を置けるマスを表示する
-		for (int index : board.getValidMoves(myColor).keySet()) {
-			int i = index / boardSize;
-			int j = index % boardSize;
-			SwingUtilities.invokeLater(() -> gui.setValidPiece(myColor, i, j));
-		}
+		BoardDiff.Builder diff = BoardDiff.builder().message("Your turn! Your color is " + myColor);
+		for (int index : board.getValidMoveCells(myColor)) diff.set(index, CellState.hintOf(myColor));
+		post(diff.build());
+		startAnalysis();
 	}
 
 	@Override
-	public void onOpponentTurn() {
+	public synchronized void onOpponentTurn() {
 		this.currentTurn = myColor == Piece.WHITE ? Piece.BLACK : Piece.WHITE;
 		System.out.println("相手のターン");
-		SwingUtilities.invokeLater(() -> gui.showMessage("Opponent's turn"));
+		post(BoardDiff.builder().message("Opponent's turn").build());
 	}
 
 	@Override
-	public void onMoveAccepted(int i, int j) {
+	public synchronized void onMoveAccepted(int i, int j) {
 		// 自分または相手が駒を正しく置いたときに呼ばれる
 		System.out.println("手が受理されました: (" + i + ", " + j + ")");
-		resetValidMoves(board.getValidMoves(myColor).keySet());
+		BoardDiff.Builder diff = BoardDiff.builder();
+		stopAnalysis(diff);
+		if (pendingMove >= 0) {
+			// 未確定の手と同じなら反映済みなので確定するだけ
+			if (pendingMove == i * boardSize + j) {
+				snapshot = null;
+				pendingMove = -1;
+				post(diff.build());
+				return;
+			}
+			// 違う手が受理された場合は巻き戻してから反映する
+			rollback(diff);
+		}
+		resetValidMoves(diff, board.getValidMoveCells(myColor));
 		List<Integer> changedCells = board.applyMove(currentTurn, i, j);
-		updateCells(currentTurn, changedCells);
+		updateCells(diff, currentTurn, changedCells);
+		post(diff.build());
 	}
 
 	@Override
 	public void onGameOver(String result, int whiteCount, int blackCount) {
+		if (analysis != null) analysis.cancel();
 		System.out.println(result + " " + whiteCount + " - " + blackCount);
-		SwingUtilities.invokeLater(() -> gui.showResult(result, whiteCount, blackCount));
+		// 解析待ちの通知はGAME_OVERより先に届く
+		boolean analysisAvailable = analysisGameId != null;
+		SwingUtilities.invokeLater(() -> gui.showResult(result, whiteCount, blackCount, analysisAvailable));
 	}
 
 	@Override
 	public void onOpponentResigned() {
 		System.out.println("相手が降参しました。");
-		SwingUtilities.invokeLater(() -> gui.showMessage("Opponent resigned."));
+		post(BoardDiff.builder().message("Opponent resigned.").build());
 	}
 
 	@Override
 	public void onNetworkError(String message) {
 		System.err.println("ネットワークエラー: " + message);
-		SwingUtilities.invokeLater(() -> gui.showMessage("Network error: " + message));
+		post(BoardDiff.builder().message("Network error: " + message).build());
+	}
+
+	@Override
+	public synchronized void onServerError(String message) {
+		if (pendingMove < 0) return;
+		// 未確定の手が拒否されたので巻き戻し、置けるマスを表示し直す
+		System.out.println("手が拒否されたため元に戻します: " + message);
+		BoardDiff.Builder diff = BoardDiff.builder().message("Move rejected: " + message);
+		rollback(diff);
+		if (currentTurn == myColor) {
+			for (int index : board.getValidMoveCells(myColor)) diff.set(index, CellState.hintOf(myColor));
+		}
+		post(diff.build());
+		if (currentTurn == myColor) startAnalysis();
 	}
 
-	private void resetValidMoves(Set<Integer> changedCells) {
-		for (int index : changedCells) {
-			int i = index / boardSize;
-			int j = index % boardSize;
-			SwingUtilities.invokeLater(() -> gui.setPiece(Piece.EMPTY, i, j));
+	@Override
+	public void onAnalysis(AnalysisReport report) {
+		if (report.getStatus() == AnalysisReport.Status.PENDING) {
+			// 対局終了時の通知。結果画面から解析結果を要求できるよう対局IDを覚えておく
+			System.out.println("対局の解析を受け付けました: " + report.getGameId());
+			analysisGameId = report.getGameId();
+			return;
 		}
+		showAnalysis(report);
+	}
+
+	@Override
+	public void onRoundTripTime(long sampleNanos, long smoothedNanos) {
+		Diagnostics.recordRoundTrip(sampleNanos);
+		long millis = TimeUnit.NANOSECONDS.toMillis(smoothedNanos);
+		SwingUtilities.invokeLater(() -> gui.showRoundTripTime(millis));
 	}
 
-	private void updateCells(Piece piece, List<Integer> validMoves) {
-		for (int index : validMoves) {
-			int i = index / boardSize;
-			int j = index % boardSize;
-			SwingUtilities.invokeLater(() -> gui.setPiece(piece, i, j));
+	/**
+	 * 解析の応答をログに出し、結果画面に表示します。
+	 */
+	private void showAnalysis(AnalysisReport report) {
+		switch (report.getStatus()) {
+			case PENDING:
+				System.out.println("対局の解析がまだ終わっていません: " + report.getGameId());
+				break;
+			case UNKNOWN:
+				System.out.println("サーバーに対局の解析結果がありません: " + report.getGameId());
+				break;
+			case READY:
+				System.out.println("対局の解析結果を受け取りました: " + report.getGameId() + "（" + report.getPlies() + "手）");
+				break;
 		}
+		Piece color = myColor;
+		SwingUtilities.invokeLater(() -> gui.showAnalysis(report, color));
+	}
+
+	/**
+	 * 現在の盤面の複製に対して、自分の置ける手の解析を開始します。
+	 */
+	private void startAnalysis() {
+		if (analysis == null) return;
+		int generation = ++analysisGeneration;
+		analysis.start(new Board(board), myColor, (move, score, depth) -> onAnalysisScore(generation, move, score));
+	}
+
+	/**
+	 * 解析を打ち切り、表示中のヒートマップを消去する変更を{@code diff}に追加します。
+	 */
+	private void stopAnalysis(BoardDiff.Builder diff) {
+		if (analysis == null) return;
+		analysisGeneration++;
+		analysis.cancel();
+		diff.clearHeat();
+	}
+
+	/**
+	 * 解析スレッドから1つの手の評価値を受け取ります。打ち切り済みの解析の結果は捨てます。
+	 */
+	private synchronized void onAnalysisScore(int generation, int move, int score) {
+		if (generation != analysisGeneration) return;
+		post(BoardDiff.builder().heat(move, score).build());
+	}
+
+	/**
+	 * 未確定の手を取り消し、スナップショットのボードに戻します。
+	 * 未確定の手で変わったマスを元の表示状態に戻す変更を{@code diff}に追加します。
+	 */
+	private void rollback(BoardDiff.Builder diff) {
+		for (int i = 0; i < boardSize; i++) {
+			for (int j = 0; j < boardSize; j++) {
+				Piece piece = snapshot.getPiece(i, j);
+				if (board.getPiece(i, j) != piece) diff.set(i * boardSize + j, CellState.stoneOf(piece));
+			}
+		}
+		board = snapshot;
+		snapshot = null;
+		pendingMove = -1;
+	}
+
+	private void resetValidMoves(BoardDiff.Builder diff, List<Integer> changedCells) {
+		for (int index : changedCells) diff.set(index, CellState.EMPTY);
+	}
+
+	private void updateCells(BoardDiff.Builder diff, Piece piece, List<Integer> validMoves) {
+		for (int index : validMoves) diff.set(index, CellState.stoneOf(piece));
+	}
+
+	/**
+	 * 差分をEDTに送ります。
+	 * まだ適用されていない差分があればそれにまとめ、EDTのタスクは未適用の差分が空のときだけ登録します。
+	 * これにより1回のネットワークイベントにつきEDTのタスクは高々1つになり、途中状態が描画されることもありません。
+	 */
+	private void post(BoardDiff diff) {
+		BoardDiff previous;
+		do {
+			previous = pendingDiff.get();
+		} while (!pendingDiff.compareAndSet(previous, previous == null ? diff : previous.merge(diff)));
+		if (previous == null) SwingUtilities.invokeLater(this::flushDiff);
+	}
+
+	/**
+	 * 未適用の差分をまとめてゲーム画面に適用します（EDT上で呼ばれます）。
+	 */
+	private void flushDiff() {
+		BoardDiff diff = pendingDiff.getAndSet(null);
+		if (diff == null) return;
+		gui.applyDiff(diff);
+		Diagnostics.markApplied();
 	}
 
 }
@@ -1,34 +1,62 @@
 package client.controller;
 
+import client.view.*;
 import common.*;
 import model.*;
 
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.*;
 
 /**
  * 通信を管理するクラスです。
+ * <p>
+ * 送信はキューに積むだけで、実際の書き込みは送信スレッドが行います。そのためEDTがソケットの書き込みで止まることはありません。
+ * 送信スレッドは一定間隔で{@code PING}を送り、{@code PONG}が返るまでの時間から往復時間（RTT）を計測します。
+ * 受信が一定時間途絶えた場合は、TCPのタイムアウトを待たずに切断とみなします。
  */
 class NetworkController {
 	private static final int DEFAULT_PORT = 10000;
 	// private static final String DEFAULT_HOST = "133.42.227.142";
 	private static final String DEFAULT_HOST = "localhost";
+	/** 接続の制限時間（ミリ秒） */
+	private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+	/** PINGを送る間隔（ミリ秒） */
+	private static final long HEARTBEAT_INTERVAL_MILLIS = 2000;
+	/** 受信がこの時間（ミリ秒）途絶えたら切断されたとみなす */
+	private static final int HEARTBEAT_TIMEOUT_MILLIS = 6000;
+	/** 送信スレッドに終了を伝えるための番兵（参照比較で判定する） */
+	private static final String CLOSE_SIGNAL = new String("CLOSE");
+
 	private final NetworkListener networkListener;
+	/** 送信待ちメッセージのキュー */
+	private final BlockingQueue<String> outbound = new LinkedBlockingQueue<>();
 	private Socket socket;
 	private PrintWriter out;
 	private BufferedReader in;
+	/** 対局のボードサイズ（解析結果の解釈に使う） */
+	private int boardSize;
+	/** disconnect()が呼ばれた後はtrue（それ以降の通信エラーは通知しない） */
+	private volatile boolean closed;
+	/** 平滑化した往復時間（ナノ秒、未計測なら0） */
+	private long smoothedRoundTripNanos;
 
 	public NetworkController(NetworkListener listener) {
 		this.networkListener = listener;
 	}
 
 	public boolean connect(String playerName, int boardSize) {
+		this.boardSize = boardSize;
 		try {
-			socket = new Socket(DEFAULT_HOST, DEFAULT_PORT);
-			out = new PrintWriter(socket.getOutputStream(), true);
+			socket = new Socket();
+			socket.connect(new InetSocketAddress(DEFAULT_HOST, DEFAULT_PORT), CONNECT_TIMEOUT_MILLIS);
+			socket.setSoTimeout(HEARTBEAT_TIMEOUT_MILLIS);
+			out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), false);
 			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-			out.println(Protocol.connect(playerName, boardSize));
-			out.flush();
+			send(Protocol.connect(playerName, boardSize));
+			Thread writerThread = new Thread(this::drainOutbound, "network-writer");
+			writerThread.setDaemon(true);
+			writerThread.start();
 			MessageReceiveThread receiveThread = new MessageReceiveThread();
 			receiveThread.start();
 			return true;
@@ -39,16 +67,49 @@ public boolean connect(String playerName, int boardSize) {
 	}
 
 	public void sendMove(int i, int j) {
-		out.println(Protocol.move(i, j));
-		out.flush();
+		send(Protocol.move(i, j));
 	}
 
 	public void sendResign() {
-		out.println(Protocol.resign());
-		out.flush();
+		send(Protocol.resign());
+	}
+
+	/**
+	 * 終わった対局の解析結果をサーバーに要求します。対局の接続とは別に短い接続を開き、応答を1行受け取って閉じます。
+	 * 呼び出し元をブロックするため、EDTから呼ばないでください。
+	 *
+	 * @param gameId    対局終了時に受け取った対局ID
+	 * @param boardSize 対局のボードサイズ
+	 * @throws IOException 接続できない場合や応答がない場合
+	 */
+	static AnalysisReport fetchAnalysis(String gameId, int boardSize) throws IOException {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(DEFAULT_HOST, DEFAULT_PORT), CONNECT_TIMEOUT_MILLIS);
+			socket.setSoTimeout(HEARTBEAT_TIMEOUT_MILLIS);
+			PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), false);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			writer.println(Protocol.analysisRequest(gameId));
+			writer.flush();
+			String line = reader.readLine();
+			if (line == null) throw new EOFException("解析結果を受け取る前に切断されました");
+			try {
+				return AnalysisReport.parse(line, boardSize);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("解析結果を解釈できません: " + line, e);
+			}
+		}
+	}
+
+	/**
+	 * メッセージを送信キューに積みます。呼び出し元はブロックしません。
+	 */
+	private void send(String message) {
+		if (!closed) outbound.offer(message);
 	}
 
 	public void disconnect() {
+		closed = true;
+		outbound.offer(CLOSE_SIGNAL);
 		try {
 			if (socket != null) socket.close();
 		} catch (IOException e) {
@@ -56,11 +117,68 @@ public void disconnect() {
 		}
 	}
 
+	/**
+	 * 送信スレッドの本体です。キューが空になった時点でまとめてflushし、
+	 * 前回のPINGから一定時間経っていれば次のPINGを送ります。
+	 */
+	private void drainOutbound() {
+		long nextPing = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL_MILLIS);
+		try {
+			while (true) {
+				long wait = TimeUnit.NANOSECONDS.toMillis(nextPing - System.nanoTime());
+				String message = wait > 0 ? outbound.poll(wait, TimeUnit.MILLISECONDS) : null;
+				if (message == CLOSE_SIGNAL) break;
+				if (message == null) {
+					// 送信時刻をトークンにする（PONGで同じ値が返ってくる）
+					message = Protocol.ping(System.nanoTime());
+					nextPing = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL_MILLIS);
+				}
+				out.println(message);
+				// checkError()はflushを伴うため、まとめてflushするときだけ確認する
+				if (outbound.isEmpty()) {
+					out.flush();
+					if (out.checkError()) {
+						if (!closed) networkListener.onNetworkError("送信に失敗しました");
+						break;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * PONGから往復時間を計算し、平滑化した値を通知します（受信スレッド上で呼ばれます）。
+	 */
+	private void handlePong(String token) {
+		long sentAt;
+		try {
+			sentAt = Long.parseLong(token);
+		} catch (NumberFormatException e) {
+			return;
+		}
+		long sample = System.nanoTime() - sentAt;
+		// TCPと同じく直近の値に1/8の重みをつけて平滑化する
+		smoothedRoundTripNanos = smoothedRoundTripNanos == 0 ? sample : smoothedRoundTripNanos + (sample - smoothedRoundTripNanos) / 8;
+		networkListener.onRoundTripTime(sample, smoothedRoundTripNanos);
+	}
+
 	private void handleMessage(String message) {
 		String[] tokens = message.split(" ");
 		CommandType command = CommandType.fromToken(tokens[0]);
 
 		switch (command) {
+			case PING:
+				// PING token
+				send(Protocol.pong(tokens.length > 1 ? tokens[1] : ""));
+				break;
+
+			case PONG:
+				// PONG token
+				if (tokens.length > 1) handlePong(tokens[1]);
+				break;
+
 			case GAME_START:
 				// GAME_START WHITE または GAME_START BLACK
 				Piece color = Piece.valueOf(tokens[1]);
@@ -94,8 +212,30 @@ private void handleMessage(String message) {
 				networkListener.onOpponentResigned();
 				break;
 
+			case LEADERBOARD:
+				// LEADERBOARD rank total name1 rating1 ...
+				System.out.println("順位: " + tokens[1] + " / " + tokens[2]);
+				for (int k = 3; k + 1 < tokens.length; k += 2) {
+					System.out.println("  " + ((k - 1) / 2) + ". " + tokens[k] + " (" + tokens[k + 1] + ")");
+				}
+				break;
+
+			case ANALYSIS:
+				// ANALYSIS gameId PENDING|UNKNOWN|READY ...
+				AnalysisReport report;
+				try {
+					report = AnalysisReport.parse(message, boardSize);
+				} catch (IllegalArgumentException e) {
+					System.err.println("解析結果を解釈できません: " + e.getMessage());
+					break;
+				}
+				networkListener.onAnalysis(report);
+				break;
+
 			case ERROR:
+				// ERROR message
 				System.err.println("サーバーエラー: " + message.substring(6));
+				networkListener.onServerError(message.substring(6));
 				break;
 
 			default:
@@ -109,11 +249,21 @@ public void run() {
 				while (true) {
 					String line = in.readLine();
 					if (line == null) break;
+					long receivedAt = System.nanoTime();
+					if (line.startsWith(CommandType.PONG.command()) || line.startsWith(CommandType.PING.command())) {
+						handleMessage(line);
+						continue;
+					}
 					System.out.println("受信: " + line);
 					handleMessage(line);
+					Diagnostics.markHandled(receivedAt);
 				}
+			} catch (SocketTimeoutException e) {
+				if (!closed) networkListener.onNetworkError("サーバーからの応答が途絶えました");
+				disconnect();
 			} catch (IOException e) {
-				networkListener.onNetworkError("接続が切断されました");
+				if (!closed) networkListener.onNetworkError("接続が切断されました");
+				disconnect();
 			}
 		}
 	}
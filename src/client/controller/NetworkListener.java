@@ -20,4 +20,21 @@ public interface NetworkListener {
 	void onOpponentResigned();
 
 	void onNetworkError(String message);
+
+	void onServerError(String message);
+
+	/**
+	 * 対局の解析について応答を受け取ったときに呼ばれます。対局終了時には解析待ち（{@link AnalysisReport.Status#PENDING}）が届きます。
+	 *
+	 * @param report 解析待ち・不明な対局・解析結果のいずれか
+	 */
+	void onAnalysis(AnalysisReport report);
+
+	/**
+	 * PINGの往復時間を計測するたびに呼ばれます。
+	 *
+	 * @param sampleNanos   今回の往復時間（ナノ秒）
+	 * @param smoothedNanos 平滑化した往復時間（ナノ秒）
+	 */
+	void onRoundTripTime(long sampleNanos, long smoothedNanos);
 }
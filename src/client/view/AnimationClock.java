@@ -0,0 +1,54 @@
+package client.view;
+
+import javax.swing.Timer;
+import java.util.*;
+
+/**
+ * すべてのアニメーションで共有する時計です。
+ * <p>
+ * 1つの{@link Timer}で約60fpsのフレームを刻み、登録されたアニメーションにフレーム時刻を通知します。
+ * アニメーションは経過時間から表示内容を決めるため、フレームが遅れても進み具合は崩れません。
+ * アニメーションが1つもなくなるとタイマーを止めます。EDT上からのみ使用してください。
+ */
+final class AnimationClock {
+	/** フレーム間隔（ミリ秒、約60fps） */
+	private static final int FRAME_MILLIS = 16;
+
+	/** 実行中のアニメーション */
+	private static final List<Animation> animations = new ArrayList<>();
+	/** フレームを刻むタイマー */
+	private static final Timer timer = new Timer(FRAME_MILLIS, e -> tick());
+
+	private AnimationClock() {
+	}
+
+	/**
+	 * アニメーションを登録し、止まっていれば時計を動かします。登録済みの場合は何もしません。
+	 */
+	static void start(final Animation animation) {
+		if (!animations.contains(animation)) animations.add(animation);
+		if (!timer.isRunning()) timer.start();
+	}
+
+	/**
+	 * 1フレーム分の通知を行い、終了したアニメーションを取り除きます。
+	 */
+	private static void tick() {
+		long now = System.nanoTime();
+		animations.removeIf(animation -> !animation.onFrame(now));
+		if (animations.isEmpty()) timer.stop();
+	}
+
+	/**
+	 * 共有時計から通知を受けるアニメーションです。
+	 */
+	interface Animation {
+		/**
+		 * フレームごとに呼ばれます。
+		 *
+		 * @param nowNanos フレーム時刻（{@link System#nanoTime()}）
+		 * @return まだアニメーションが続く場合はtrue
+		 */
+		boolean onFrame(long nowNanos);
+	}
+}
@@ -0,0 +1,63 @@
+package client.view;
+
+import javax.imageio.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * クライアントで使用する画像リソースの一覧です。
+ * <p>
+ * 画像は最初に{@link #image()}が呼ばれたときにデコードされ、以降は同じインスタンスを返します。
+ */
+enum Asset {
+	/** 背景画像 */
+	BACKGROUND("../assets/background.png"),
+	/** アプリケーションアイコン */
+	ICON("../assets/icon.png"),
+	/** スタートボタン */
+	START("../assets/start.png"),
+	/** 終了ボタン */
+	FINISH("../assets/finish.png"),
+	/** ホームボタン */
+	HOME("../assets/home.png"),
+	/** 空きマス */
+	EMPTY_CELL("../assets/move_hint_frame.jpg"),
+	/** 白駒 */
+	WHITE_STONE("../assets/white_stone.jpg"),
+	/** 黒駒 */
+	BLACK_STONE("../assets/black_stone.jpg"),
+	/** 白駒（配置可能マス用ヒント） */
+	WHITE_MOVE_HINT("../assets/move_hint_white.png"),
+	/** 黒駒（配置可能マス用ヒント） */
+	BLACK_MOVE_HINT("../assets/move_hint_black.png");
+
+	/** 画像のパス（このクラスからの相対パス） */
+	private final String path;
+	/** デコード済みの画像 */
+	private volatile BufferedImage image;
+
+	Asset(final String path) {
+		this.path = path;
+	}
+
+	/**
+	 * デコード済みの画像を返します。
+	 *
+	 * @throws RuntimeException 画像の読み込みに失敗した場合
+	 */
+	public BufferedImage image() {
+		BufferedImage result = image;
+		if (result != null) return result;
+		synchronized (this) {
+			if (image == null) {
+				try {
+					image = ImageIO.read(Objects.requireNonNull(Asset.class.getResource(path)));
+				} catch (final IOException | NullPointerException e) {
+					throw new RuntimeException("画像の読み込みに失敗しました: " + path, e);
+				}
+			}
+			return image;
+		}
+	}
+}
@@ -1,53 +1,67 @@
 package client.view;
 
-import javax.imageio.*;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.*;
 import java.awt.image.*;
-import java.io.*;
-import java.util.*;
 
 abstract class BaseBackgroundPanel extends JPanel {
-	/** 背景画像のパス（デフォルト） */
-	protected static final String DEFAULT_BACKGROUND_IMAGE_PATH = "../assets/background.png";
-	/** 背景画像（デフォルト） */
-	protected static final BufferedImage DEFAULT_BACKGROUND_IMAGE;
-
-	static {
-		try {
-			DEFAULT_BACKGROUND_IMAGE = ImageIO.read(Objects.requireNonNull(BaseBackgroundPanel.class.getResource(DEFAULT_BACKGROUND_IMAGE_PATH)));
-		} catch (final IOException | NullPointerException e) {
-			throw new RuntimeException("背景画像の読み込みに失敗しました", e);
-		}
-	}
+	/** リサイズが止まってから背景画像を生成するまでの待ち時間（ミリ秒） */
+	private static final int RESCALE_DELAY_MILLIS = 150;
 
 	/**
 	 * このパネルで使用する背景画像
 	 */
-	protected final BufferedImage backgroundImage;
+	protected final Asset backgroundAsset;
+	/** リサイズが落ち着いたことを検出するタイマー（リサイズのたびにやり直す） */
+	private final Timer rescaleTimer;
 
 	/**
 	 * デフォルトの背景画像を使用するコンストラクタ
 	 */
 	protected BaseBackgroundPanel() {
-		this.backgroundImage = DEFAULT_BACKGROUND_IMAGE;
+		this(Asset.BACKGROUND);
 	}
 
 	/**
-	 * コンストラクタで画像パスを受け取る
+	 * コンストラクタで背景画像を受け取る
 	 *
-	 * @param imagePath 背景画像のパス
+	 * @param backgroundAsset 背景画像
 	 */
-	protected BaseBackgroundPanel(final String imagePath) {
-		if (imagePath == null || imagePath.equals(DEFAULT_BACKGROUND_IMAGE_PATH)) {
-			this.backgroundImage = DEFAULT_BACKGROUND_IMAGE;
-		} else {
-			try {
-				backgroundImage = ImageIO.read(Objects.requireNonNull(BaseBackgroundPanel.class.getResource(imagePath)));
-			} catch (final IOException | NullPointerException e) {
-				throw new RuntimeException("背景画像の読み込みに失敗しました", e);
+	protected BaseBackgroundPanel(final Asset backgroundAsset) {
+		this.backgroundAsset = backgroundAsset;
+		// 起動時に読み込みに失敗した場合はここで例外にする
+		backgroundAsset.image();
+
+		// リサイズ中のサイズごとに背景を生成しないよう、リサイズが落ち着いてから生成を依頼する
+		rescaleTimer = new Timer(RESCALE_DELAY_MILLIS, e -> requestBackground());
+		rescaleTimer.setRepeats(false);
+		addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(final ComponentEvent e) {
+				rescaleTimer.restart();
 			}
+		});
+	}
+
+	/**
+	 * 現在のパネルサイズの背景画像の生成を依頼し、完了したら再描画します。
+	 */
+	private void requestBackground() {
+		if (getWidth() <= 0 || getHeight() <= 0) return;
+		SpriteCache.request(backgroundAsset, getWidth(), getHeight(), SpriteCache.Variant.COVER, this::repaint);
+	}
+
+	@Override
+	public void paint(final Graphics g) {
+		if (!Diagnostics.ENABLED) {
+			super.paint(g);
+			return;
 		}
+		// 子コンポーネントを含めたパネル全体の描画時間を計測する
+		long start = System.nanoTime();
+		super.paint(g);
+		Diagnostics.markPainted(getClass().getSimpleName(), System.nanoTime() - start);
 	}
 
 	@Override
@@ -56,6 +70,17 @@ protected void paintComponent(final Graphics g) {
 
 		int panelWidth = getWidth();
 		int panelHeight = getHeight();
+		if (panelWidth <= 0 || panelHeight <= 0) return;
+
+		// パネルサイズに拡大縮小済みの背景をキャッシュから取得する（同じサイズのパネル間で共有される）
+		BufferedImage background = SpriteCache.peek(backgroundAsset, panelWidth, panelHeight, SpriteCache.Variant.COVER);
+		if (background != null) {
+			g.drawImage(background, 0, 0, this);
+			return;
+		}
+
+		// リサイズ中や生成中は元画像をそのまま拡大縮小して描画する
+		BufferedImage backgroundImage = backgroundAsset.image();
 		int imageWidth = backgroundImage.getWidth();
 		int imageHeight = backgroundImage.getHeight();
 		double imageAspect = (double) imageWidth / imageHeight;
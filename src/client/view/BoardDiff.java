@@ -0,0 +1,181 @@
+package client.view;
+
+import java.util.*;
+
+/**
+ * 1回のネットワークイベントによるゲーム画面の変更をまとめた不変オブジェクトです。
+ * <p>
+ * 変更されるマスとその表示状態、および画面上部のメッセージを保持し、EDT上で1回のタスクとして適用されます。
+ * EDTの処理が追いつかない場合は、複数の差分を{@link #merge}で1つにまとめてから適用します。
+ * <p>
+ * 解析結果のヒートマップ（マスごとの評価値）も同じ経路で送るため、盤面の変更との順序が入れ替わることはありません。
+ */
+public final class BoardDiff {
+	/** 変更されるマスの座標（i * size + j） */
+	private final int[] cells;
+	/** 変更後の表示状態（{@link #cells}と同じ順） */
+	private final CellState[] states;
+	/** 表示するメッセージ（変更しない場合はnull） */
+	private final String message;
+	/** 評価値を設定するマス（i * size + j） */
+	private final int[] heatCells;
+	/** 設定する評価値（{@link #heatCells}と同じ順） */
+	private final int[] heatScores;
+	/** 評価値を設定する前に、表示中のヒートマップを消去する場合true */
+	private final boolean clearHeat;
+
+	private BoardDiff(final int[] cells, final CellState[] states, final String message,
+	                  final int[] heatCells, final int[] heatScores, final boolean clearHeat) {
+		this.cells = cells;
+		this.states = states;
+		this.message = message;
+		this.heatCells = heatCells;
+		this.heatScores = heatScores;
+		this.clearHeat = clearHeat;
+	}
+
+	/**
+	 * 差分を作成するビルダーを返します。
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * この差分の後に{@code later}を適用した場合と同じ結果になる差分を返します。
+	 * 同じマスが両方で変更されている場合は{@code later}の状態が残ります。
+	 * {@code later}がヒートマップを消去する場合、この差分の評価値は捨てられます。
+	 */
+	public BoardDiff merge(final BoardDiff later) {
+		Builder builder = new Builder();
+		builder.putAll(this);
+		builder.putAll(later);
+		builder.message(later.message != null ? later.message : message);
+		return builder.build();
+	}
+
+	/**
+	 * 変更されるマスの数を返します。
+	 */
+	public int size() {
+		return cells.length;
+	}
+
+	/**
+	 * k番目に変更されるマスの座標（i * size + j）を返します。
+	 */
+	public int cellAt(final int k) {
+		return cells[k];
+	}
+
+	/**
+	 * k番目に変更されるマスの表示状態を返します。
+	 */
+	public CellState stateAt(final int k) {
+		return states[k];
+	}
+
+	/**
+	 * 評価値を設定するマスの数を返します。
+	 */
+	public int heatSize() {
+		return heatCells.length;
+	}
+
+	/**
+	 * k番目に評価値を設定するマスの座標（i * size + j）を返します。
+	 */
+	public int heatCellAt(final int k) {
+		return heatCells[k];
+	}
+
+	/**
+	 * k番目に設定する評価値を返します。
+	 */
+	public int heatScoreAt(final int k) {
+		return heatScores[k];
+	}
+
+	/**
+	 * 評価値を設定する前に、表示中のヒートマップを消去するかを返します。
+	 */
+	public boolean isClearHeat() {
+		return clearHeat;
+	}
+
+	/**
+	 * 表示するメッセージを返します。変更しない場合はnullです。
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * {@link BoardDiff}のビルダーです。同じマスを複数回設定した場合は最後の状態が残ります。
+	 */
+	public static final class Builder {
+		/** 設定順を保ったマスごとの表示状態 */
+		private final LinkedHashMap<Integer, CellState> changes = new LinkedHashMap<>();
+		/** マスごとの評価値 */
+		private final LinkedHashMap<Integer, Integer> heat = new LinkedHashMap<>();
+		private String message;
+		private boolean clearHeat;
+
+		private Builder() {
+		}
+
+		public Builder set(final int cell, final CellState state) {
+			changes.remove(cell);
+			changes.put(cell, state);
+			return this;
+		}
+
+		/**
+		 * マスの評価値を設定します。
+		 */
+		public Builder heat(final int cell, final int score) {
+			heat.put(cell, score);
+			return this;
+		}
+
+		/**
+		 * 表示中のヒートマップを消去します。それまでに設定した評価値も取り消します。
+		 */
+		public Builder clearHeat() {
+			heat.clear();
+			clearHeat = true;
+			return this;
+		}
+
+		public Builder message(final String message) {
+			this.message = message;
+			return this;
+		}
+
+		private void putAll(final BoardDiff diff) {
+			for (int k = 0; k < diff.cells.length; k++) set(diff.cells[k], diff.states[k]);
+			if (diff.clearHeat) clearHeat();
+			for (int k = 0; k < diff.heatCells.length; k++) heat(diff.heatCells[k], diff.heatScores[k]);
+		}
+
+		public BoardDiff build() {
+			int[] cells = new int[changes.size()];
+			CellState[] states = new CellState[changes.size()];
+			int k = 0;
+			for (Map.Entry<Integer, CellState> entry : changes.entrySet()) {
+				cells[k] = entry.getKey();
+				states[k] = entry.getValue();
+				k++;
+			}
+			int[] heatCells = new int[heat.size()];
+			int[] heatScores = new int[heat.size()];
+			k = 0;
+			for (Map.Entry<Integer, Integer> entry : heat.entrySet()) {
+				heatCells[k] = entry.getKey();
+				heatScores[k] = entry.getValue();
+				k++;
+			}
+			return new BoardDiff(cells, states, message, heatCells, heatScores, clearHeat);
+		}
+	}
+}
@@ -0,0 +1,430 @@
+package client.view;
+
+import client.controller.*;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * オセロのボードを1つのコンポーネントで描画するクラスです。
+ * <p>
+ * マスごとにコンポーネントを作らず、{@link CellState}の配列をもとに{@link #paintComponent}で全マスを描画します。
+ * クリック位置は座標の割り算でマスに変換し、マスの更新時はそのマスの矩形だけを再描画します。
+ * <p>
+ * リサイズ中は手持ちの画像を最近傍補間で引き伸ばして描画し、リサイズが落ち着いてから
+ * バックグラウンドスレッドで高品質な画像を生成して、全マス分をまとめて差し替えます。
+ * <p>
+ * 石が裏返るときは、セルサイズごとに事前に描画しておいたコマを{@link AnimationClock}の時刻に合わせて表示します。
+ * 表示状態はすぐに更新するため、アニメーション中でも次のメッセージの処理は遅れません。
+ * 同じフレームでアニメーションしているマスは、まとめて1回だけ再描画します。
+ * <p>
+ * 解析結果の評価値が届いているマスには、評価の高い順に緑から赤へ変わる半透明の色を重ねます（ヒートマップ）。
+ */
+class BoardView extends JComponent {
+	// --------------- クラス定数 ---------------
+	private static final long serialVersionUID = 1L;
+	/** 各表示状態の画像（{@link CellState#ordinal()}で引く） */
+	private static final Asset[] CELL_ASSETS = new Asset[CellState.values().length];
+	/** リサイズが止まってから高品質な画像を生成するまでの待ち時間（ミリ秒） */
+	private static final int RESCALE_DELAY_MILLIS = 150;
+	/** 裏返しアニメーションのコマ数 */
+	private static final int FLIP_FRAMES = 16;
+	/** 裏返しアニメーションの長さ（ナノ秒） */
+	private static final long FLIP_NANOS = 300_000_000L;
+	/** 石の画像のうち石が占める直径の割合（残りはマスの背景） */
+	private static final double DISC_RATIO = 0.82;
+	/** アニメーション中でないことを表す開始時刻 */
+	private static final long NOT_FLIPPING = Long.MIN_VALUE;
+	/** 評価値がないことを表す値 */
+	private static final int NO_HEAT = Integer.MIN_VALUE;
+	/** ヒートマップの不透明度（0～255） */
+	private static final int HEAT_ALPHA = 120;
+
+	static {
+		CELL_ASSETS[CellState.EMPTY.ordinal()] = Asset.EMPTY_CELL;
+		CELL_ASSETS[CellState.WHITE_STONE.ordinal()] = Asset.WHITE_STONE;
+		CELL_ASSETS[CellState.BLACK_STONE.ordinal()] = Asset.BLACK_STONE;
+		CELL_ASSETS[CellState.WHITE_MOVE_HINT.ordinal()] = Asset.WHITE_MOVE_HINT;
+		CELL_ASSETS[CellState.BLACK_MOVE_HINT.ordinal()] = Asset.BLACK_MOVE_HINT;
+	}
+
+	// --------------- フィールド ---------------
+	/** ボードサイズ（片辺のマス数） */
+	private final int boardSize;
+	/** 各マスの表示状態（i * boardSize + j） */
+	private final CellState[] cells;
+	/** リサイズが落ち着いたことを検出するタイマー（リサイズのたびにやり直す） */
+	private final Timer rescaleTimer;
+	/** 各マスの裏返しアニメーションの開始時刻（{@link System#nanoTime()}、アニメーション中でなければ{@link #NOT_FLIPPING}） */
+	private final long[] flipStart;
+	/** 各マスの解析結果の評価値（なければ{@link #NO_HEAT}） */
+	private final int[] heat;
+	/** 共有時計に登録するアニメーション */
+	private final AnimationClock.Animation flipAnimation = this::onFrame;
+
+	/** 現在のセルサイズ */
+	private int cellSize;
+	/** 高品質に拡大縮小済みの画像一式（EDT上でのみ差し替える） */
+	private SpriteSet sprites;
+	/** 生成中の画像一式のセルサイズ（生成中でなければ0） */
+	private int pendingCellSize;
+	/** 裏返しアニメーション中のマスの数 */
+	private int flipping;
+	/** 評価値が表示されているマスの数 */
+	private int heatCount;
+
+	/**
+	 * BoardViewを構築します。
+	 *
+	 * @param controller クリックされたマスを伝えるコントローラー
+	 * @param boardSize  ボードのサイズ（片辺のマス数）
+	 */
+	public BoardView(final GameController controller, final int boardSize) {
+		this.boardSize = boardSize;
+		this.cells = new CellState[boardSize * boardSize];
+		Arrays.fill(cells, CellState.EMPTY);
+		this.flipStart = new long[boardSize * boardSize];
+		Arrays.fill(flipStart, NOT_FLIPPING);
+		this.heat = new int[boardSize * boardSize];
+		Arrays.fill(heat, NO_HEAT);
+		setOpaque(false);
+
+		// 押下時のアクション（座標からマスを計算する）
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(final MouseEvent e) {
+				int size = currentCellSize();
+				if (size <= 0) return;
+				int x = e.getX() - originX(size);
+				int y = e.getY() - originY(size);
+				if (x < 0 || y < 0) return;
+				int i = y / size, j = x / size;
+				if (i >= boardSize || j >= boardSize) return;
+				System.out.println("Cell(" + i + ", " + j + ", " + cells[i * boardSize + j] + ")");
+				controller.setPiece(i, j);
+			}
+		});
+
+		// リサイズ中は画像を作り直さず、最後のリサイズから一定時間後に1回だけ作り直す
+		rescaleTimer = new Timer(RESCALE_DELAY_MILLIS, e -> rescale());
+		rescaleTimer.setRepeats(false);
+		addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(final ComponentEvent e) {
+				rescaleTimer.restart();
+			}
+		});
+	}
+
+	/**
+	 * 指定マスの表示状態を変更し、そのマスだけを再描画します。
+	 *
+	 * @param i     行インデックス
+	 * @param j     列インデックス
+	 * @param state 新しい表示状態
+	 */
+	public void setCell(final int i, final int j, final CellState state) {
+		int index = i * boardSize + j;
+		if (cells[index] == state) return;
+		changeCell(index, state, System.nanoTime());
+		if (flipping > 0) AnimationClock.start(flipAnimation);
+		int size = currentCellSize();
+		if (size > 0) repaint(originX(size) + j * size, originY(size) + i * size, size, size);
+	}
+
+	/**
+	 * 差分に含まれるすべてのマスの表示状態を変更し、変更されたマスを囲む矩形をまとめて1回だけ再描画します。
+	 *
+	 * @param diff 適用する差分
+	 */
+	public void apply(final BoardDiff diff) {
+		int minRow = boardSize, maxRow = -1, minCol = boardSize, maxCol = -1;
+		long now = System.nanoTime();
+		for (int k = 0; k < diff.size(); k++) {
+			int index = diff.cellAt(k);
+			if (cells[index] == diff.stateAt(k)) continue;
+			changeCell(index, diff.stateAt(k), now);
+			int i = index / boardSize, j = index % boardSize;
+			minRow = Math.min(minRow, i);
+			maxRow = Math.max(maxRow, i);
+			minCol = Math.min(minCol, j);
+			maxCol = Math.max(maxCol, j);
+		}
+		if (flipping > 0) AnimationClock.start(flipAnimation);
+		int size = currentCellSize();
+		// 評価値が変わると全体の色の割り当てが変わるため、ボード全体を再描画する
+		if (applyHeat(diff) && size > 0) {
+			repaint(originX(size), originY(size), size * boardSize, size * boardSize);
+			return;
+		}
+		if (maxRow < 0 || size <= 0) return;
+		repaint(originX(size) + minCol * size, originY(size) + minRow * size, (maxCol - minCol + 1) * size, (maxRow - minRow + 1) * size);
+	}
+
+	/**
+	 * 差分に含まれる評価値をヒートマップに反映します。
+	 *
+	 * @return ヒートマップが変わった場合true
+	 */
+	private boolean applyHeat(final BoardDiff diff) {
+		boolean changed = false;
+		if (diff.isClearHeat() && heatCount > 0) {
+			Arrays.fill(heat, NO_HEAT);
+			heatCount = 0;
+			changed = true;
+		}
+		for (int k = 0; k < diff.heatSize(); k++) {
+			int index = diff.heatCellAt(k);
+			if (heat[index] == NO_HEAT) heatCount++;
+			heat[index] = diff.heatScoreAt(k);
+			changed = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * マスの表示状態を変更し、白黒が入れ替わった場合は裏返しアニメーションを開始します。
+	 */
+	private void changeCell(final int index, final CellState state, final long now) {
+		CellState old = cells[index];
+		cells[index] = state;
+		boolean flip = (old == CellState.WHITE_STONE && state == CellState.BLACK_STONE)
+				|| (old == CellState.BLACK_STONE && state == CellState.WHITE_STONE);
+		if (flip) {
+			if (flipStart[index] == NOT_FLIPPING) flipping++;
+			flipStart[index] = now;
+		} else if (flipStart[index] != NOT_FLIPPING) {
+			flipStart[index] = NOT_FLIPPING;
+			flipping--;
+		}
+	}
+
+	/**
+	 * 共有時計からフレームごとに呼ばれ、アニメーション中のマスを囲む矩形を1回だけ再描画します。
+	 *
+	 * @return まだアニメーション中のマスがあればtrue
+	 */
+	private boolean onFrame(final long now) {
+		int minRow = boardSize, maxRow = -1, minCol = boardSize, maxCol = -1;
+		for (int index = 0; index < flipStart.length; index++) {
+			if (flipStart[index] == NOT_FLIPPING) continue;
+			// 終了したマスも最後に1回描画して、通常の画像に戻す
+			if (now - flipStart[index] >= FLIP_NANOS) {
+				flipStart[index] = NOT_FLIPPING;
+				flipping--;
+			}
+			int i = index / boardSize, j = index % boardSize;
+			minRow = Math.min(minRow, i);
+			maxRow = Math.max(maxRow, i);
+			minCol = Math.min(minCol, j);
+			maxCol = Math.max(maxCol, j);
+		}
+		int size = currentCellSize();
+		if (maxRow >= 0 && size > 0) {
+			repaint(originX(size) + minCol * size, originY(size) + minRow * size, (maxCol - minCol + 1) * size, (maxRow - minRow + 1) * size);
+		}
+		return flipping > 0;
+	}
+
+	/**
+	 * 指定マスの表示状態を返します。
+	 */
+	public CellState getCell(final int i, final int j) {
+		return cells[i * boardSize + j];
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet()) return super.getPreferredSize();
+		int size = Math.max(cellSize, 1);
+		return new Dimension(size * boardSize, size * boardSize);
+	}
+
+	@Override
+	public void paint(final Graphics g) {
+		if (!Diagnostics.ENABLED) {
+			super.paint(g);
+			return;
+		}
+		long start = System.nanoTime();
+		super.paint(g);
+		Diagnostics.recordPaint("BoardView", System.nanoTime() - start);
+	}
+
+	@Override
+	protected void paintComponent(final Graphics g) {
+		super.paintComponent(g);
+		int size = currentCellSize();
+		if (size <= 0) return;
+		cellSize = size;
+		// 初回は待たずに生成を始める
+		if (sprites == null) rescale();
+
+		// 画像一式がセルサイズと合っていなければ、最近傍補間で引き伸ばしたプレビューを描画する
+		SpriteSet current = sprites;
+		boolean exact = current != null && current.cellSize == size;
+		Graphics2D g2d = (Graphics2D) g;
+		if (!exact) g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+		// クリップ領域に含まれるマスだけを描画する
+		int ox = originX(size), oy = originY(size);
+		long now = System.nanoTime();
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+		// ヒートマップの色は表示中の評価値の最小値から最大値までで割り当てる
+		int minHeat = Integer.MAX_VALUE, maxHeat = Integer.MIN_VALUE;
+		if (heatCount > 0) {
+			for (int score : heat) {
+				if (score == NO_HEAT) continue;
+				minHeat = Math.min(minHeat, score);
+				maxHeat = Math.max(maxHeat, score);
+			}
+		}
+		int firstRow = Math.max(0, (clip.y - oy) / size);
+		int lastRow = Math.min(boardSize - 1, (clip.y + clip.height - 1 - oy) / size);
+		int firstCol = Math.max(0, (clip.x - ox) / size);
+		int lastCol = Math.min(boardSize - 1, (clip.x + clip.width - 1 - ox) / size);
+		for (int i = firstRow; i <= lastRow; i++) {
+			for (int j = firstCol; j <= lastCol; j++) {
+				int index = i * boardSize + j;
+				int state = cells[index].ordinal();
+				if (exact) {
+					BufferedImage image = current.images[state];
+					if (flipStart[index] != NOT_FLIPPING) image = current.flipFrame(cells[index], now - flipStart[index]);
+					g2d.drawImage(image, ox + j * size, oy + i * size, this);
+				} else {
+					BufferedImage image = current != null ? current.images[state] : CELL_ASSETS[state].image();
+					g2d.drawImage(image, ox + j * size, oy + i * size, size, size, this);
+				}
+				if (heat[index] != NO_HEAT) {
+					float t = maxHeat == minHeat ? 1f : (float) (((double) heat[index] - minHeat) / ((double) maxHeat - minHeat));
+					Color color = Color.getHSBColor(t / 3f, 1f, 1f);
+					g2d.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), HEAT_ALPHA));
+					g2d.fillRect(ox + j * size, oy + i * size, size, size);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 現在のセルサイズに合わせた画像一式をバックグラウンドスレッドで生成し、完了したらまとめて差し替えます。
+	 */
+	private void rescale() {
+		int size = currentCellSize();
+		if (size <= 0 || size == pendingCellSize || (sprites != null && sprites.cellSize == size)) return;
+		pendingCellSize = size;
+		new SwingWorker<SpriteSet, Void>() {
+			@Override
+			protected SpriteSet doInBackground() {
+				BufferedImage[] images = new BufferedImage[CELL_ASSETS.length];
+				for (int k = 0; k < images.length; k++) {
+					images[k] = SpriteCache.get(CELL_ASSETS[k], size, size, SpriteCache.Variant.NORMAL);
+				}
+				BufferedImage[] flipFrames = renderFlipFrames(images[CellState.EMPTY.ordinal()],
+						images[CellState.WHITE_STONE.ordinal()], images[CellState.BLACK_STONE.ordinal()], size);
+				return new SpriteSet(size, images, flipFrames);
+			}
+
+			@Override
+			protected void done() {
+				if (pendingCellSize == size) pendingCellSize = 0;
+				try {
+					sprites = get();
+				} catch (InterruptedException | ExecutionException e) {
+					System.err.println("セル画像の生成に失敗しました: " + e);
+					return;
+				}
+				// 生成中にさらにリサイズされていたら、もう一度作り直す
+				if (currentCellSize() != size) rescaleTimer.restart();
+				repaint();
+			}
+		}.execute();
+	}
+
+	/**
+	 * 白から黒へ裏返る様子のコマを描画します（最初のコマが白、最後のコマが黒）。黒から白へはこのコマを逆順に使います。
+	 * <p>
+	 * 石を横方向に{@code |cos θ|}倍へ縮めて回転を表現し、前半は白、後半は黒の石を空きマスの上に重ねます。
+	 */
+	private static BufferedImage[] renderFlipFrames(final BufferedImage empty, final BufferedImage white, final BufferedImage black, final int size) {
+		BufferedImage[] frames = new BufferedImage[FLIP_FRAMES];
+		double disc = size * DISC_RATIO;
+		for (int k = 0; k < FLIP_FRAMES; k++) {
+			double t = (double) k / (FLIP_FRAMES - 1);
+			int width = (int) Math.round(size * Math.abs(Math.cos(Math.PI * t)));
+			BufferedImage frame = SpriteCache.createCompatibleImage(size, size);
+			Graphics2D g2d = frame.createGraphics();
+			g2d.drawImage(empty, 0, 0, null);
+			if (width > 0) {
+				// 縮めた石からマスの背景部分を楕円で切り抜いてから重ねる
+				BufferedImage layer = SpriteCache.createCompatibleImage(size, size);
+				Graphics2D lg = layer.createGraphics();
+				lg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				lg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				lg.drawImage(t < 0.5 ? white : black, (size - width) / 2, 0, width, size, null);
+				lg.setComposite(AlphaComposite.DstIn);
+				double discWidth = disc * width / size;
+				lg.fill(new Ellipse2D.Double((size - discWidth) / 2, (size - disc) / 2, discWidth, disc));
+				lg.dispose();
+				g2d.drawImage(layer, 0, 0, null);
+			}
+			g2d.dispose();
+			frames[k] = frame;
+		}
+		return frames;
+	}
+
+	/**
+	 * コンポーネントの大きさから、ボード全体が収まるセルサイズを計算します。
+	 */
+	private int currentCellSize() {
+		return Math.min(getWidth(), getHeight()) / boardSize;
+	}
+
+	/**
+	 * ボードを中央に配置したときの左端のx座標です。
+	 */
+	private int originX(final int size) {
+		return (getWidth() - size * boardSize) / 2;
+	}
+
+	/**
+	 * ボードを中央に配置したときの上端のy座標です。
+	 */
+	private int originY(final int size) {
+		return (getHeight() - size * boardSize) / 2;
+	}
+
+	/**
+	 * 同じセルサイズに拡大縮小した画像一式です（{@link CellState#ordinal()}で引く）。
+	 */
+	private static final class SpriteSet {
+		final int cellSize;
+		final BufferedImage[] images;
+		/** 白から黒へ裏返るコマ */
+		final BufferedImage[] flipFrames;
+
+		SpriteSet(final int cellSize, final BufferedImage[] images, final BufferedImage[] flipFrames) {
+			this.cellSize = cellSize;
+			this.images = images;
+			this.flipFrames = flipFrames;
+		}
+
+		/**
+		 * 経過時間に対応する裏返しのコマを返します。
+		 *
+		 * @param target  裏返った後の状態
+		 * @param elapsed アニメーション開始からの経過時間（ナノ秒）
+		 */
+		BufferedImage flipFrame(final CellState target, final long elapsed) {
+			int frame = (int) Math.min(FLIP_FRAMES - 1, Math.max(0, elapsed) * FLIP_FRAMES / FLIP_NANOS);
+			return target == CellState.BLACK_STONE ? flipFrames[frame] : flipFrames[FLIP_FRAMES - 1 - frame];
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package client.view;
+
+import model.*;
+
+/**
+ * ボード上の1マスの表示状態です。
+ */
+public enum CellState {
+	/** 空きマス */
+	EMPTY,
+	/** 白駒 */
+	WHITE_STONE,
+	/** 黒駒 */
+	BLACK_STONE,
+	/** 白駒（配置可能マス用ヒント） */
+	WHITE_MOVE_HINT,
+	/** 黒駒（配置可能マス用ヒント） */
+	BLACK_MOVE_HINT;
+
+	/**
+	 * 駒に対応する表示状態を返します。
+	 */
+	public static CellState stoneOf(final Piece piece) {
+		if (piece.isWhite()) return WHITE_STONE;
+		if (piece.isBlack()) return BLACK_STONE;
+		return EMPTY;
+	}
+
+	/**
+	 * 配置可能マスのヒントの表示状態を返します。
+	 *
+	 * @param piece 配置できるプレイヤーの色
+	 */
+	public static CellState hintOf(final Piece piece) {
+		if (piece.isWhite()) return WHITE_MOVE_HINT;
+		if (piece.isBlack()) return BLACK_MOVE_HINT;
+		return EMPTY;
+	}
+}
@@ -0,0 +1,219 @@
+package client.view;
+
+import javax.swing.*;
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * クライアントの診断情報を集計するクラスです。
+ * <p>
+ * {@code -Dothello.diagnostics=true}を指定した場合のみ有効で、次の値を計測します。
+ * <ul>
+ * <li>EDTのキュー待ち時間（プローブスレッドが定期的に{@link SwingUtilities#invokeLater}したタスクが実行されるまでの時間）</li>
+ * <li>パネルごとの描画回数と描画時間</li>
+ * <li>メッセージ受信から画面に描画されるまでの時間（受信処理・EDT待ち・描画の3区間に分けて計測）</li>
+ * <li>サーバーとの往復時間</li>
+ * </ul>
+ * 無効な場合、各記録メソッドは何もしません。
+ */
+public final class Diagnostics {
+	/** 診断モードが有効かどうか */
+	public static final boolean ENABLED = Boolean.getBoolean("othello.diagnostics");
+	/** EDTのプローブ間隔（ミリ秒） */
+	private static final long PROBE_INTERVAL_MILLIS = 100;
+	/** 分位数の計算に使う直近のサンプル数 */
+	private static final int SAMPLE_CAPACITY = 1024;
+
+	/** 計測項目ごとの集計（表示順を保つため挿入順） */
+	private static final Map<String, Metric> metrics = Collections.synchronizedMap(new LinkedHashMap<>());
+	/** 描画待ちの最初のメッセージの受信時刻（なければ0） */
+	private static volatile long pendingReceivedAt;
+	/** 描画待ちの最初のメッセージの受信処理が終わった時刻（なければ0） */
+	private static volatile long pendingHandledAt;
+	/** 描画待ちの変更がEDTで適用された時刻（なければ0） */
+	private static volatile long pendingAppliedAt;
+
+	static {
+		if (ENABLED) startProbe();
+	}
+
+	private Diagnostics() {
+	}
+
+	/**
+	 * 受信したメッセージの処理が終わったことを記録します（受信スレッド上で呼ばれます）。
+	 *
+	 * @param receivedAt 受信した時刻（{@link System#nanoTime()}）
+	 */
+	public static void markHandled(final long receivedAt) {
+		if (!ENABLED) return;
+		long now = System.nanoTime();
+		record("net.handle", now - receivedAt);
+		// 描画待ちの変更がまとめられる場合は最初のメッセージから計測する
+		if (pendingReceivedAt == 0) {
+			pendingReceivedAt = receivedAt;
+			pendingHandledAt = now;
+		}
+	}
+
+	/**
+	 * 受信した変更がEDTで適用されたことを記録します。
+	 */
+	public static void markApplied() {
+		if (!ENABLED || pendingHandledAt == 0 || pendingAppliedAt != 0) return;
+		long now = System.nanoTime();
+		record("net.queue", now - pendingHandledAt);
+		pendingAppliedAt = now;
+	}
+
+	/**
+	 * パネルの描画を記録し、適用済みの変更があれば受信から描画までの時間を記録します（EDT上で呼ばれます）。
+	 *
+	 * @param panel      パネル名
+	 * @param paintNanos 描画にかかった時間（ナノ秒）
+	 */
+	static void markPainted(final String panel, final long paintNanos) {
+		if (!ENABLED) return;
+		recordPaint(panel, paintNanos);
+		if (pendingAppliedAt == 0) return;
+		long now = System.nanoTime();
+		record("net.paint", now - pendingAppliedAt);
+		record("net.total", now - pendingReceivedAt);
+		pendingReceivedAt = 0;
+		pendingHandledAt = 0;
+		pendingAppliedAt = 0;
+	}
+
+	/**
+	 * パネルの描画回数と描画時間を記録します（EDT上で呼ばれます）。
+	 *
+	 * @param panel      パネル名
+	 * @param paintNanos 描画にかかった時間（ナノ秒）
+	 */
+	static void recordPaint(final String panel, final long paintNanos) {
+		if (ENABLED) record("paint." + panel, paintNanos);
+	}
+
+	/**
+	 * サーバーとの往復時間を記録します。
+	 */
+	public static void recordRoundTrip(final long nanos) {
+		if (ENABLED) record("net.rtt", nanos);
+	}
+
+	private static void record(final String name, final long nanos) {
+		Metric metric;
+		synchronized (metrics) {
+			metric = metrics.computeIfAbsent(name, Metric::new);
+		}
+		metric.record(nanos);
+	}
+
+	/**
+	 * EDTのキュー待ち時間を定期的に計測するスレッドを開始します。
+	 */
+	private static void startProbe() {
+		ScheduledExecutorService probe = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "edt-probe");
+			thread.setDaemon(true);
+			return thread;
+		});
+		probe.scheduleAtFixedRate(() -> {
+			long postedAt = System.nanoTime();
+			SwingUtilities.invokeLater(() -> record("edt.latency", System.nanoTime() - postedAt));
+		}, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * すべての計測項目の集計を返します。
+	 */
+	static List<Summary> summaries() {
+		List<Metric> snapshot;
+		synchronized (metrics) {
+			snapshot = new ArrayList<>(metrics.values());
+		}
+		List<Summary> result = new ArrayList<>();
+		for (Metric metric : snapshot) result.add(metric.summary());
+		return result;
+	}
+
+	/**
+	 * 集計をCSVファイルに書き出します。
+	 *
+	 * @return 書き出したファイル
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	static Path dumpCsv() throws IOException {
+		String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		Path path = Paths.get("diagnostics-" + timestamp + ".csv");
+		List<String> lines = new ArrayList<>();
+		lines.add("metric,count,mean_ms,p50_ms,p95_ms,max_ms");
+		for (Summary summary : summaries()) {
+			lines.add(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f", summary.name, summary.count,
+					summary.meanMillis, summary.p50Millis, summary.p95Millis, summary.maxMillis));
+		}
+		Files.write(path, lines, StandardCharsets.UTF_8);
+		return path;
+	}
+
+	/**
+	 * 1つの計測項目の集計です。件数・合計・最大値は全期間、分位数は直近のサンプルから求めます。
+	 */
+	private static final class Metric {
+		final String name;
+		/** 直近のサンプル（リングバッファ） */
+		final long[] samples = new long[SAMPLE_CAPACITY];
+		long count;
+		long totalNanos;
+		long maxNanos;
+
+		Metric(final String name) {
+			this.name = name;
+		}
+
+		synchronized void record(final long nanos) {
+			samples[(int) (count % SAMPLE_CAPACITY)] = nanos;
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		synchronized Summary summary() {
+			int size = (int) Math.min(count, SAMPLE_CAPACITY);
+			long[] sorted = Arrays.copyOf(samples, size);
+			Arrays.sort(sorted);
+			double mean = count == 0 ? 0 : (double) totalNanos / count;
+			return new Summary(name, count, mean / 1e6, percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.95) / 1e6, maxNanos / 1e6);
+		}
+
+		private static double percentile(final long[] sorted, final double p) {
+			if (sorted.length == 0) return 0;
+			return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+		}
+	}
+
+	/**
+	 * 計測項目の集計結果です（時間はミリ秒）。
+	 */
+	static final class Summary {
+		final String name;
+		final long count;
+		final double meanMillis;
+		final double p50Millis;
+		final double p95Millis;
+		final double maxMillis;
+
+		Summary(final String name, final long count, final double meanMillis, final double p50Millis, final double p95Millis, final double maxMillis) {
+			this.name = name;
+			this.count = count;
+			this.meanMillis = meanMillis;
+			this.p50Millis = p50Millis;
+			this.p95Millis = p95Millis;
+			this.maxMillis = maxMillis;
+		}
+	}
+}
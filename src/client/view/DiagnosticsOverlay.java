@@ -0,0 +1,119 @@
+package client.view;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * {@link Diagnostics}の集計をウィンドウの左上に重ねて表示するコンポーネントです。
+ * <p>
+ * F3キーで表示を切り替え、F4キーで集計をCSVファイルに書き出します。
+ * 表示中は0.5秒ごとに内容を更新します。下の画面の再描画を増やさないよう、不透明な矩形として描画します。
+ */
+class DiagnosticsOverlay extends JComponent {
+	// --------------- クラス定数 ---------------
+	private static final long serialVersionUID = 1L;
+	/** 表示の更新間隔（ミリ秒） */
+	private static final int REFRESH_MILLIS = 500;
+	/** 表示に使用するフォント */
+	private static final Font FONT = new Font("Monospaced", Font.PLAIN, 12);
+	/** 余白（ピクセル） */
+	private static final int PADDING = 6;
+
+	// --------------- フィールド ---------------
+	/** 表示を更新するタイマー */
+	private final Timer refreshTimer;
+	/** 表示中の行 */
+	private List<String> lines = Collections.emptyList();
+
+	/**
+	 * DiagnosticsOverlayを構築し、ウィンドウのレイヤーとキー操作に登録します。
+	 *
+	 * @param frame 表示先のウィンドウ
+	 */
+	DiagnosticsOverlay(final JFrame frame) {
+		setOpaque(true);
+		setVisible(false);
+		refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+		frame.getLayeredPane().add(this, JLayeredPane.DRAG_LAYER);
+
+		JRootPane root = frame.getRootPane();
+		root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F3"), "toggleDiagnostics");
+		root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F4"), "dumpDiagnostics");
+		root.getActionMap().put("toggleDiagnostics", new AbstractAction() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				toggle();
+			}
+		});
+		root.getActionMap().put("dumpDiagnostics", new AbstractAction() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				dump();
+			}
+		});
+	}
+
+	/**
+	 * 表示を切り替えます。
+	 */
+	private void toggle() {
+		if (isVisible()) {
+			refreshTimer.stop();
+			setVisible(false);
+		} else {
+			refresh();
+			setVisible(true);
+			refreshTimer.start();
+		}
+	}
+
+	/**
+	 * 集計をCSVファイルに書き出します。
+	 */
+	private void dump() {
+		try {
+			System.out.println("診断情報を書き出しました: " + Diagnostics.dumpCsv().toAbsolutePath());
+		} catch (final IOException e) {
+			System.err.println("診断情報の書き出しに失敗しました: " + e);
+		}
+	}
+
+	/**
+	 * 最新の集計から表示内容を作り直し、大きさを合わせます。
+	 */
+	private void refresh() {
+		List<String> next = new ArrayList<>();
+		next.add(String.format("%-20s %7s %8s %8s %8s", "metric(ms)", "count", "p50", "p95", "max"));
+		for (Diagnostics.Summary summary : Diagnostics.summaries()) {
+			next.add(String.format(Locale.ROOT, "%-20s %7d %8.2f %8.2f %8.2f", summary.name, summary.count,
+					summary.p50Millis, summary.p95Millis, summary.maxMillis));
+		}
+		next.add("F3: hide  F4: dump CSV");
+		lines = next;
+
+		FontMetrics fm = getFontMetrics(FONT);
+		int width = 0;
+		for (String line : lines) width = Math.max(width, fm.stringWidth(line));
+		setBounds(0, 0, width + PADDING * 2, fm.getHeight() * lines.size() + PADDING * 2);
+		repaint();
+	}
+
+	@Override
+	protected void paintComponent(final Graphics g) {
+		g.setColor(new Color(20, 20, 20));
+		g.fillRect(0, 0, getWidth(), getHeight());
+		g.setFont(FONT);
+		g.setColor(new Color(120, 255, 120));
+		FontMetrics fm = g.getFontMetrics();
+		int y = PADDING + fm.getAscent();
+		for (String line : lines) {
+			g.drawString(line, PADDING, y);
+			y += fm.getHeight();
+		}
+	}
+}
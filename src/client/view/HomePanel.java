@@ -1,12 +1,8 @@
 package client.view;
 
-import javax.imageio.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.*;
-import java.io.*;
-import java.util.*;
 
 /**
  * ゲームのホーム画面を表示するパネルです。
@@ -14,28 +10,11 @@
  */
 class HomePanel extends BaseBackgroundPanel {
 	// --------------- クラス定数 ---------------
-	/** スタートボタンの画像のパス */
-	private static final String START_IMAGE_PATH = "../assets/start.png";
-	/** 終了ボタンの画像のパス */
-	private static final String FINISH_IMAGE_PATH = "../assets/finish.png";
-	/** スタートボタンの画像 */
-	private static final BufferedImage START_IMAGE;
-	/** 終了ボタンの画像 */
-	private static final BufferedImage FINISH_IMAGE;
 	/** タイトルテキスト */
 	private static final String TITLE_TEXT = "Othello Game";
 	/** タイトルフォント */
 	private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 64);
 
-	static {
-		try {
-			START_IMAGE = ImageIO.read(Objects.requireNonNull(HomePanel.class.getResourceAsStream(START_IMAGE_PATH)));
-			FINISH_IMAGE = ImageIO.read(Objects.requireNonNull(HomePanel.class.getResourceAsStream(FINISH_IMAGE_PATH)));
-		} catch (final IOException | NullPointerException e) {
-			throw new RuntimeException("ボタン画像の読み込みに失敗しました", e);
-		}
-	}
-
 	// --------------- フィールド ---------------
 	/** 親GUIへの参照 */
 	private final OthelloGUI gui;
@@ -123,40 +102,20 @@ protected void paintComponent(final Graphics g) {
 		g2d.drawString(TITLE_TEXT, textX, textY);
 	}
 
-		/**
-		 * ボタン用の画像を事前生成してキャッシュします。
-		 * パフォーマンス最適化のため、クリックごとの画像生成を回避します。
-		 *
-		 * @param buttonSize ボタンサイズ
-		 */
+	/**
+	 * ボタン用の画像を事前生成してキャッシュします。
+	 * パフォーマンス最適化のため、クリックごとの画像生成を回避します。
+	 *
+	 * @param buttonSize ボタンサイズ
+	 */
 	private void prepareImages(final int buttonSize) {
-		int pressedSize = (int) (buttonSize * 0.95);
-
 		// スタート画像の生成
-		startIconNormal = new ImageIcon(START_IMAGE.getScaledInstance(buttonSize, buttonSize, Image.SCALE_SMOOTH));
-		startIconPressed = new ImageIcon(createPressedImage(START_IMAGE, pressedSize));
+		startIconNormal = new ImageIcon(SpriteCache.get(Asset.START, buttonSize, buttonSize, SpriteCache.Variant.NORMAL));
+		startIconPressed = new ImageIcon(SpriteCache.get(Asset.START, buttonSize, buttonSize, SpriteCache.Variant.PRESSED));
 
 		// 終了画像の生成
-		finishIconNormal = new ImageIcon(FINISH_IMAGE.getScaledInstance(buttonSize, buttonSize, Image.SCALE_SMOOTH));
-		finishIconPressed = new ImageIcon(createPressedImage(FINISH_IMAGE, pressedSize));
-	}
-
-	/**
-	 * 押下時の画像を生成します。
-	 * サイズ縮小と半透明化を適用します。
-	 *
-	 * @param source 元画像
-	 * @param size   縮小後のサイズ
-	 * @return 押下時の画像
-	 */
-	private Image createPressedImage(final BufferedImage source, final int size) {
-		Image scaled = source.getScaledInstance(size, size, Image.SCALE_SMOOTH);
-		BufferedImage result = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g2d = result.createGraphics();
-		g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.85f));
-		g2d.drawImage(scaled, 0, 0, null);
-		g2d.dispose();
-		return result;
+		finishIconNormal = new ImageIcon(SpriteCache.get(Asset.FINISH, buttonSize, buttonSize, SpriteCache.Variant.NORMAL));
+		finishIconPressed = new ImageIcon(SpriteCache.get(Asset.FINISH, buttonSize, buttonSize, SpriteCache.Variant.PRESSED));
 	}
 
 	/**
@@ -2,10 +2,13 @@
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * ゲーム起動時のロード画面を表示するパネルです。
- * ロード完了後にホーム画面へ遷移します。
+ * {@link Preloader}で画像のデコードなどの準備を行い、実際に終わった準備の割合をプログレスバーに表示します。
+ * すべての準備が終わるとすぐにホーム画面へ遷移します。
  */
 class LoadPanel extends BaseBackgroundPanel {
 	// --------------- クラス定数 ---------------
@@ -18,11 +21,11 @@ class LoadPanel extends BaseBackgroundPanel {
 	private final OthelloGUI gui;
 	/** プログレスバー */
 	private final JProgressBar progressBar;
-	/** アニメーション用タイマー */
-	private final Timer timer;
 
-	/** 現在の進捗値 */
-	private int progress = 0;
+	/** 準備の総数 */
+	private int total;
+	/** 準備を開始した時刻（ナノ秒） */
+	private long startNanos;
 
 	/**
 	 * LoadPanelを構築します。
@@ -47,18 +50,17 @@ public LoadPanel(final OthelloGUI gui) {
 		gbc.gridy = 0;
 		gbc.insets = new Insets(300, 0, 0, 0);
 		add(progressBar, gbc);
-
-		// ロードアニメーション用のタイマー
-		timer = new Timer(30, e -> updateProgress());
 	}
 
 	/**
 	 * ロード処理を開始します。
 	 */
 	public void startProgress() {
-		progress = 0;
-		progressBar.setValue(0);
-		timer.start();
+		startNanos = System.nanoTime();
+		List<Runnable> tasks = Preloader.tasks(gui.getSize(), getSize());
+		total = tasks.size();
+		updateProgress(0);
+		Preloader.run(tasks, this::updateProgress, this::finishProgress);
 	}
 
 	@Override
@@ -87,26 +89,26 @@ protected void paintComponent(final Graphics g) {
 
 	/**
 	 * プログレスバーを更新します。
+	 *
+	 * @param done 終わった準備の数
 	 */
-	private void updateProgress() {
-		progress++;
+	private void updateProgress(final int done) {
+		int progress = done * 100 / total;
 		progressBar.setValue(progress);
 
-		int dots = progress % 4;
+		int dots = done % 4;
 		StringBuilder loadStr = new StringBuilder("Loading");
 		for (int i = 0; i < dots; i++) loadStr.append('.');
 		String loadString = String.format("%-10s%3d%%", loadStr, progress);
 		progressBar.setString(loadString);
+	}
 
-		// 100%で画面遷移
-		if (progress >= 100) {
-			timer.stop();
-			Timer transitionTimer = new Timer(500, e -> {
-				gui.showHome();
-				((Timer) e.getSource()).stop();
-			});
-			transitionTimer.setRepeats(false);
-			transitionTimer.start();
-		}
+	/**
+	 * すべての準備が終わったらホーム画面へ遷移します。
+	 */
+	private void finishProgress() {
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		System.out.println("起動時の準備が完了しました（" + total + "件, " + elapsedMillis + " ms）");
+		gui.showHomeAfterLoad();
 	}
 }
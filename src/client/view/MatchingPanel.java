@@ -11,7 +11,7 @@
 class MatchingPanel extends JPanel {
 	// --------------- クラス定数 ---------------
 	/** ボードサイズの選択肢 */
-	private static final Integer[] BOARD_SIZES = {6, 8, 10, 12};
+	private static final Integer[] BOARD_SIZES = {6, 8, 10, 12, 14, 16, 18, 20};
 
 	// --------------- フィールド ---------------
 	/** 親GUIへの参照 */
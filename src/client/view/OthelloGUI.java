@@ -3,11 +3,9 @@
 import client.controller.*;
 import model.*;
 
-import javax.imageio.*;
 import javax.swing.*;
 import java.awt.*;
-import java.io.*;
-import java.util.*;
+import java.lang.management.*;
 
 /**
  * オセロゲームのメインウィンドウを管理するクラスです。
@@ -15,10 +13,6 @@
  */
 public class OthelloGUI extends JFrame {
 	// --------------- クラス定数 ---------------
-	/** アプリケーションアイコンの画像 */
-	private static final Image ICON_IMAGE;
-	/** アプリケーションアイコンの画像パス */
-	private static final String ICON_IMAGE_PATH = "../assets/icon.png";
 	// CardLayout用のパネル識別文字列
 	/** ロード画面の識別子 */
 	private static final String CARD_LOAD = "load";
@@ -29,17 +23,6 @@ public class OthelloGUI extends JFrame {
 	/** 結果画面の識別子 */
 	private static final String CARD_RESULT = "result";
 
-	static {
-		// アイコンは読み込み失敗してもアプリ動作には影響しないため、ログ出力のみで続行
-		Image image = null;
-		try {
-			image = ImageIO.read(Objects.requireNonNull(OthelloGUI.class.getResourceAsStream(ICON_IMAGE_PATH)));
-		} catch (final IOException | NullPointerException e) {
-			System.err.println("アイコン画像の読み込みに失敗しました。\n" + e);
-		}
-		ICON_IMAGE = image;
-	}
-
 	// --------------- フィールド ---------------
 	/** 画面切り替えレイアウトマネージャ */
 	private final CardLayout cardLayout;
@@ -47,12 +30,12 @@ public class OthelloGUI extends JFrame {
 	private final JPanel cardPanel;
 	/** ロード画面パネル */
 	private final LoadPanel loadPanel;
-	/** ホーム画面パネル */
-	private final HomePanel homePanel;
-	/** マッチング設定パネル */
-	private final MatchingPanel matchingPanel;
-	/** 結果画面パネル */
-	private final ResultPanel resultPanel;
+	/** ホーム画面パネル（ロード完了後に作成するため`final`でない） */
+	private HomePanel homePanel;
+	/** マッチング設定パネル（ロード完了後に作成するため`final`でない） */
+	private MatchingPanel matchingPanel;
+	/** 結果画面パネル（ロード完了後に作成するため`final`でない） */
+	private ResultPanel resultPanel;
 
 	/** ゲーム画面パネル（各ゲームごとに作成するため`final`でない） */
 	private GamePanel gamePanel;
@@ -66,7 +49,6 @@ public class OthelloGUI extends JFrame {
 	public OthelloGUI() {
 		// フレームの基本設定
 		setTitle("Othello");
-		if (ICON_IMAGE != null) setIconImage(ICON_IMAGE);
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
 		// 画面サイズの設定（デフォルト）
@@ -77,20 +59,18 @@ public OthelloGUI() {
 		setSize(screenSize);
 		setLocationRelativeTo(null);
 
-		// レイアウトとパネルの初期化
+		// レイアウトとパネルの初期化（ロード画面以外は画像の準備が終わってから作成する）
 		cardLayout = new CardLayout();
 		cardPanel = new JPanel(cardLayout);
 		loadPanel = new LoadPanel(this);
-		homePanel = new HomePanel(this);
-		resultPanel = new ResultPanel(this);
-		matchingPanel = new MatchingPanel(this);
 
 		// CardLayoutにパネルを追加
 		cardPanel.add(loadPanel, CARD_LOAD);
-		cardPanel.add(homePanel, CARD_HOME);
-		cardPanel.add(resultPanel, CARD_RESULT);
 		add(cardPanel);
 
+		// 診断モードではF3で表示できる計測結果のオーバーレイを用意する
+		if (Diagnostics.ENABLED) new DiagnosticsOverlay(this);
+
 		// ウィンドウを表示し、ロード画面を開始する
 		setVisible(true);
 		showLoad();
@@ -104,6 +84,30 @@ public void showLoad() {
 		loadPanel.startProgress();
 	}
 
+	/**
+	 * ロード完了後に残りの画面を作成し、ホーム画面を表示します。
+	 * 画像はロード中にデコード・拡大縮小済みのため、ここではキャッシュから取り出すだけです。
+	 */
+	void showHomeAfterLoad() {
+		// アイコンは読み込み失敗してもアプリ動作には影響しないため、ログ出力のみで続行
+		try {
+			setIconImage(Asset.ICON.image());
+		} catch (final RuntimeException e) {
+			System.err.println("アイコン画像の読み込みに失敗しました。\n" + e);
+		}
+
+		homePanel = new HomePanel(this);
+		resultPanel = new ResultPanel(this);
+		matchingPanel = new MatchingPanel(this);
+		cardPanel.add(homePanel, CARD_HOME);
+		cardPanel.add(resultPanel, CARD_RESULT);
+		showHome();
+
+		// 操作できるようになるまでの時間（JVMの起動から）を報告する
+		SwingUtilities.invokeLater(() -> System.out.println(
+				"ホーム画面を表示しました（起動から " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms）"));
+	}
+
 	/**
 	 * ホーム画面を表示します。
 	 */
@@ -165,25 +169,21 @@ public void showMessage(final String text) {
 	}
 
 	/**
-	 * ゲーム画面のセルを更新します。（TODO: この実装あんま良くない2）
+	 * ゲーム画面に差分（セルの変更とメッセージ）を適用します。
 	 *
-	 * @param piece 石の色
-	 * @param i     行
-	 * @param j     列
+	 * @param diff 適用する差分
 	 */
-	public void setPiece(final Piece piece, final int i, final int j) {
-		gamePanel.setPiece(piece, i, j);
+	public void applyDiff(final BoardDiff diff) {
+		gamePanel.applyDiff(diff);
 	}
 
 	/**
-	 * ゲーム画面のセルを更新します。（TODO: この実装あんま良くない2）
+	 * ゲーム画面にサーバーとの往復時間を表示します。
 	 *
-	 * @param piece 石の色
-	 * @param i     行
-	 * @param j     列
+	 * @param millis 往復時間（ミリ秒）
 	 */
-	public void setValidPiece(final Piece piece, final int i, final int j) {
-		gamePanel.setValidPiece(piece, i, j);
+	public void showRoundTripTime(final long millis) {
+		if (gamePanel != null) gamePanel.showRoundTripTime(millis);
 	}
 
 	/**
@@ -192,10 +192,37 @@ public void setValidPiece(final Piece piece, final int i, final int j) {
 	 * @param result 結果の文字列
 	 * @param whiteCount 白の駒数
 	 * @param blackCount 黒の駒数
+	 * @param analysisAvailable サーバーで対局が解析待ちになっている場合true
 	 */
-	public void showResult(final String result, final int whiteCount, final int blackCount) {
-		resultPanel.setResult(result, whiteCount, blackCount);
+	public void showResult(final String result, final int whiteCount, final int blackCount, final boolean analysisAvailable) {
+		resultPanel.setResult(result, whiteCount, blackCount, analysisAvailable);
 		cardLayout.show(cardPanel, CARD_RESULT);
 	}
 
+	/**
+	 * 終わった対局の解析結果を要求します。結果は{@link #showAnalysis}で結果画面に表示されます。
+	 */
+	void requestAnalysis() {
+		if (controller != null) controller.requestAnalysis();
+	}
+
+	/**
+	 * 結果画面に対局の解析結果を表示します。
+	 *
+	 * @param report  解析の応答
+	 * @param myColor 自分の色
+	 */
+	public void showAnalysis(final AnalysisReport report, final Piece myColor) {
+		resultPanel.setAnalysis(report, myColor);
+	}
+
+	/**
+	 * 結果画面に解析結果を取得できなかったことを表示します。
+	 *
+	 * @param message 表示する文字列
+	 */
+	public void showAnalysisError(final String message) {
+		resultPanel.setAnalysisError(message);
+	}
+
 }
@@ -0,0 +1,98 @@
+package client.view;
+
+import model.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * 起動時に必要な準備を並列に行うクラスです。
+ * <p>
+ * すべての画像のデコード、ボタンと背景の拡大縮小、およびモデル・通信クラスの初期化を
+ * CPUコア数分のバックグラウンドスレッドで実行し、EDTでは行いません。
+ * 進捗と完了はEDT上で通知します。
+ */
+final class Preloader {
+	/** 初期化しておくクラス（ゲーム開始時に初めて読み込まれるもの） */
+	private static final String[] WARM_CLASSES = {
+			"common.CommandType", "common.Protocol",
+			"client.controller.GameController", "client.controller.NetworkController",
+			"java.net.Socket", "java.io.PrintWriter", "java.io.BufferedReader"
+	};
+
+	private Preloader() {
+	}
+
+	/**
+	 * 起動時に行う準備の一覧を作成します。
+	 *
+	 * @param frameSize ウィンドウのサイズ（ボタンの大きさの計算に使用）
+	 * @param panelSize 各画面パネルのサイズ（背景の拡大縮小に使用）
+	 */
+	static List<Runnable> tasks(final Dimension frameSize, final Dimension panelSize) {
+		List<Runnable> tasks = new ArrayList<>();
+		// 画像のデコード
+		for (Asset asset : Asset.values()) tasks.add(asset::image);
+
+		// HomePanel・ResultPanelと同じ大きさのボタン画像
+		int buttonSize = Math.min(frameSize.width / 6, frameSize.height / 6);
+		for (Asset asset : new Asset[]{Asset.START, Asset.FINISH, Asset.HOME}) {
+			tasks.add(() -> SpriteCache.get(asset, buttonSize, buttonSize, SpriteCache.Variant.NORMAL));
+			tasks.add(() -> SpriteCache.get(asset, buttonSize, buttonSize, SpriteCache.Variant.PRESSED));
+		}
+
+		// 各画面の背景
+		if (panelSize.width > 0 && panelSize.height > 0) {
+			tasks.add(() -> SpriteCache.get(Asset.BACKGROUND, panelSize.width, panelSize.height, SpriteCache.Variant.COVER));
+		}
+
+		// モデルと通信クラスの初期化（盤面の計算も一度実行しておく）
+		tasks.add(() -> new Board(8).getValidMoveCells(Piece.WHITE));
+		for (String name : WARM_CLASSES) {
+			tasks.add(() -> {
+				try {
+					Class.forName(name, true, Preloader.class.getClassLoader());
+				} catch (final ClassNotFoundException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+		return tasks;
+	}
+
+	/**
+	 * 準備を並列に実行します。失敗した準備はログを出力して完了扱いにします（実際に使うときに改めて失敗します）。
+	 *
+	 * @param tasks      実行する準備
+	 * @param onProgress 準備が1つ終わるたびに、終わった数を受け取る処理（EDT上で呼ばれる）
+	 * @param onComplete すべての準備が終わったときの処理（EDT上で呼ばれる）
+	 */
+	static void run(final List<Runnable> tasks, final IntConsumer onProgress, final Runnable onComplete) {
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), tasks.size()));
+		AtomicInteger threadIdCounter = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "preload-" + threadIdCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		AtomicInteger completed = new AtomicInteger();
+		for (Runnable task : tasks) {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} catch (final RuntimeException e) {
+					System.err.println("起動時の準備に失敗しました: " + e);
+				}
+				int done = completed.incrementAndGet();
+				SwingUtilities.invokeLater(() -> onProgress.accept(done));
+				if (done == tasks.size()) SwingUtilities.invokeLater(onComplete);
+			});
+		}
+		executor.shutdown();
+	}
+}
@@ -1,41 +1,39 @@
 package client.view;
 
-import javax.imageio.*;
+import client.controller.*;
+import engine.*;
+import model.*;
+
 import javax.swing.*;
+import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.*;
-import java.io.*;
-import java.util.*;
 
 /**
  * ゲーム終了後の結果画面を表示するパネルです。
  * 勝敗結果、スコア、およびホームに戻るボタンを提供します。
+ * サーバーで対局が解析待ちになっている場合は、解析結果を取得するボタンと、その要約（悪手の数と損の大きかった手）を表示します。
  */
 class ResultPanel extends BaseBackgroundPanel {
 	// --------------- クラス定数 ---------------
-	/** ホームボタンの画像のパス */
-	private static final String HOME_IMAGE_PATH = "../assets/home.png";
-	/** ホームボタンの画像 */
-	private static final BufferedImage HOME_IMAGE;
 	/** 結果タイトルフォント */
 	private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 72);
 	/** スコア表示フォント */
 	private static final Font SCORE_FONT = new Font("Arial", Font.BOLD, 48);
-
-	static {
-		try {
-			HOME_IMAGE = ImageIO.read(Objects.requireNonNull(ResultPanel.class.getResourceAsStream(HOME_IMAGE_PATH)));
-		} catch (final IOException e) {
-			throw new RuntimeException("結果画面の画像読み込みに失敗しました", e);
-		}
-	}
+	/** 解析結果の表示フォント */
+	private static final Font ANALYSIS_FONT = new Font("Arial", Font.BOLD, 16);
+	/** 要約に載せる、損の大きかった自分の手の数 */
+	private static final int WORST_MOVES_SHOWN = 3;
 
 	// --------------- フィールド ---------------
 	/** 親GUIへの参照 */
 	private final OthelloGUI gui;
 	/** ホームに戻るボタン */
 	private final JButton homeButton;
+	/** 解析結果を取得するボタン */
+	private final JButton analysisButton;
+	/** 解析の状態または要約 */
+	private final JLabel analysisLabel;
 
 	/** ホームボタンの通常アイコン */
 	private ImageIcon homeIconNormal;
@@ -79,6 +77,21 @@ public ResultPanel(final OthelloGUI gui) {
 		gbc.gridx = 0;
 		gbc.gridy = 0;
 		add(homeButton, gbc);
+
+		// 解析ボタンの配置
+		analysisButton = createStyledButton("Analysis", new Color(70, 90, 150));
+		analysisButton.addActionListener(e -> onAnalysisClicked());
+		gbc.insets = new Insets(10, 0, 10, 0);
+		gbc.gridy = 1;
+		add(analysisButton, gbc);
+
+		// 解析結果の配置
+		analysisLabel = new JLabel();
+		analysisLabel.setFont(ANALYSIS_FONT);
+		analysisLabel.setForeground(Color.WHITE);
+		analysisLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		gbc.gridy = 2;
+		add(analysisLabel, gbc);
 	}
 
 	/**
@@ -88,13 +101,81 @@ public ResultPanel(final OthelloGUI gui) {
 	 * @param whiteCount 白の駒数
 	 * @param blackCount 黒の駒数
 	 */
-	public void setResult(final String result, final int whiteCount, final int blackCount) {
+	public void setResult(final String result, final int whiteCount, final int blackCount, final boolean analysisAvailable) {
 		this.result = result;
 		this.whiteCount = whiteCount;
 		this.blackCount = blackCount;
+		analysisButton.setVisible(analysisAvailable);
+		analysisButton.setEnabled(true);
+		analysisLabel.setText("");
 		repaint();
 	}
 
+	/**
+	 * 対局の解析の応答を表示します。
+	 *
+	 * @param report  解析待ち・不明な対局・解析結果のいずれか
+	 * @param myColor 自分の色
+	 */
+	public void setAnalysis(final AnalysisReport report, final Piece myColor) {
+		switch (report.getStatus()) {
+			case PENDING:
+				// まだ解析中なので、後でもう一度要求できるようにする
+				analysisButton.setEnabled(true);
+				analysisLabel.setText("The analysis is not ready yet. Try again later.");
+				break;
+			case UNKNOWN:
+				analysisButton.setVisible(false);
+				analysisLabel.setText("The analysis for this game is not available.");
+				break;
+			case READY:
+				analysisButton.setVisible(false);
+				analysisLabel.setText(summarize(report, myColor));
+				break;
+		}
+	}
+
+	/**
+	 * 解析結果を取得できなかったことを表示します。もう一度要求できるようにします。
+	 *
+	 * @param message 表示する文字列
+	 */
+	public void setAnalysisError(final String message) {
+		analysisButton.setEnabled(true);
+		analysisLabel.setText(message);
+	}
+
+	/**
+	 * 解析ボタンが押された時の処理です。
+	 */
+	private void onAnalysisClicked() {
+		analysisButton.setEnabled(false);
+		analysisLabel.setText("Analyzing...");
+		gui.requestAnalysis();
+	}
+
+	/**
+	 * 解析結果の要約（双方の悪手の数と、損の大きかった自分の手と最善手）をHTMLで作ります。
+	 */
+	private static String summarize(final AnalysisReport report, final Piece myColor) {
+		Piece opponent = myColor.opposite();
+		StringBuilder sb = new StringBuilder("<html><center>");
+		sb.append("You: ").append(report.countGrade(myColor, GameAnalysis.MISTAKE)).append(" mistakes (")
+				.append(report.countGrade(myColor, GameAnalysis.BLUNDER)).append(" blunders)");
+		sb.append(" / Opponent: ").append(report.countGrade(opponent, GameAnalysis.MISTAKE)).append(" mistakes (")
+				.append(report.countGrade(opponent, GameAnalysis.BLUNDER)).append(" blunders)");
+		for (int ply : report.worstMoves(myColor, WORST_MOVES_SHOWN)) {
+			sb.append("<br>Move ").append(ply + 1).append(": ").append(cellText(report, report.getPlayed(ply)));
+			if (report.getBest(ply) >= 0) sb.append(" (best ").append(cellText(report, report.getBest(ply))).append(")");
+			sb.append(" -").append(report.getLossPercent(ply)).append("%");
+		}
+		return sb.append("</center></html>").toString();
+	}
+
+	private static String cellText(final AnalysisReport report, final int cell) {
+		return "(" + cell / report.getSize() + ", " + cell % report.getSize() + ")";
+	}
+
 	/**
 	 * 背景画像と結果表示を描画します。
 	 */
@@ -174,28 +255,45 @@ protected void paintComponent(final Graphics g) {
 	 * @param buttonSize ボタンサイズ
 	 */
 	private void prepareImages(final int buttonSize) {
-		int pressedSize = (int) (buttonSize * 0.95);
-
 		// ホーム画像の生成
-		homeIconNormal = new ImageIcon(HOME_IMAGE.getScaledInstance(buttonSize, buttonSize, Image.SCALE_SMOOTH));
-		homeIconPressed = new ImageIcon(createPressedImage(HOME_IMAGE, pressedSize));
+		homeIconNormal = new ImageIcon(SpriteCache.get(Asset.HOME, buttonSize, buttonSize, SpriteCache.Variant.NORMAL));
+		homeIconPressed = new ImageIcon(SpriteCache.get(Asset.HOME, buttonSize, buttonSize, SpriteCache.Variant.PRESSED));
 	}
 
 	/**
-	 * 押下時の視覚効果用画像を生成します。
+	 * スタイル付きのボタンを作成します。
 	 *
-	 * @param source 元画像
-	 * @param size   縮小後のサイズ
-	 * @return 視覚効果が適用された画像
+	 * @param text  ボタンのテキスト
+	 * @param color ボタンの背景色
+	 * @return 作成したボタン
 	 */
-	private Image createPressedImage(final BufferedImage source, final int size) {
-		Image scaled = source.getScaledInstance(size, size, Image.SCALE_SMOOTH);
-		BufferedImage result = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g2d = result.createGraphics();
-		g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.85f));
-		g2d.drawImage(scaled, 0, 0, null);
-		g2d.dispose();
-		return result;
+	private JButton createStyledButton(final String text, final Color color) {
+		JButton button = new JButton(text);
+		button.setFont(new Font("Arial", Font.BOLD, 14));
+		button.setForeground(Color.WHITE);
+		button.setBackground(color);
+		button.setPreferredSize(new Dimension(100, 35));
+		button.setFocusPainted(false);
+		button.setBorder(new CompoundBorder(
+				new LineBorder(color.darker(), 1),
+				new EmptyBorder(5, 15, 5, 15)
+		));
+		button.setCursor(new Cursor(Cursor.HAND_CURSOR));
+
+		// ホバーエフェクト
+		button.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseEntered(final MouseEvent e) {
+				button.setBackground(color.brighter());
+			}
+
+			@Override
+			public void mouseExited(final MouseEvent e) {
+				button.setBackground(color);
+			}
+		});
+
+		return button;
 	}
 
 	/**
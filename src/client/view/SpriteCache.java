@@ -0,0 +1,212 @@
+package client.view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 拡大縮小済みの画像（スプライト）を共有するキャッシュです。
+ * <p>
+ * 画像は画面の{@link GraphicsConfiguration}に合わせた形式で生成するため、描画時に変換が発生しません。
+ * キーは「画像リソース・サイズ・種類」で、件数または合計サイズが上限を超えると最近使われていないものから破棄します（LRU）。
+ * {@link #request}を使うと拡大縮小はバックグラウンドスレッドで行われ、完了時にEDTでコールバックされます。
+ */
+final class SpriteCache {
+	/** キャッシュする最大数 */
+	private static final int MAX_ENTRIES = 64;
+	/** キャッシュする画像の合計サイズの上限（バイト、1ピクセル4バイトで概算） */
+	private static final long MAX_BYTES = 64L * 1024 * 1024;
+	/** 押下時の画像の縮小率 */
+	private static final double PRESSED_SCALE = 0.95;
+	/** 押下時の画像の不透明度 */
+	private static final float PRESSED_ALPHA = 0.85f;
+
+	/** 生成済みのスプライト（アクセス順） */
+	private static final LinkedHashMap<Key, BufferedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+	/** キャッシュしている画像の合計サイズ（バイト、cacheのロック中のみ変更） */
+	private static long cachedBytes;
+	/** 生成中のキー（同じスプライトを重複して生成しないため） */
+	private static final Set<Key> pending = ConcurrentHashMap.newKeySet();
+	/** 拡大縮小を行うバックグラウンドスレッド */
+	private static final ExecutorService scaler = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "sprite-scaler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private SpriteCache() {
+	}
+
+	/**
+	 * スプライトの種類です。
+	 */
+	enum Variant {
+		/** 指定サイズに拡大縮小した画像 */
+		NORMAL,
+		/** ボタン押下時用に少し縮小し、半透明にした画像（画像自体も縮小後のサイズになる） */
+		PRESSED,
+		/** 縦横比を保ったまま指定サイズを覆うように拡大縮小し、はみ出した部分を切り取った画像（背景用） */
+		COVER
+	}
+
+	/**
+	 * スプライトを返します。キャッシュになければ呼び出したスレッドで生成します。
+	 */
+	static BufferedImage get(final Asset asset, final int width, final int height, final Variant variant) {
+		Key key = new Key(asset, width, height, variant);
+		BufferedImage sprite = lookup(key);
+		if (sprite != null) return sprite;
+		sprite = render(key);
+		store(key, sprite);
+		return sprite;
+	}
+
+	/**
+	 * キャッシュにあるスプライトを返します。なければ生成せずにnullを返します。
+	 */
+	static BufferedImage peek(final Asset asset, final int width, final int height, final Variant variant) {
+		return lookup(new Key(asset, width, height, variant));
+	}
+
+	/**
+	 * スプライトを返します。キャッシュになければバックグラウンドで生成を開始してnullを返し、
+	 * 生成が完了したらEDTで{@code onReady}を呼び出します。
+	 */
+	static BufferedImage request(final Asset asset, final int width, final int height, final Variant variant, final Runnable onReady) {
+		Key key = new Key(asset, width, height, variant);
+		BufferedImage sprite = lookup(key);
+		if (sprite != null) return sprite;
+		if (pending.add(key)) {
+			scaler.execute(() -> {
+				try {
+					store(key, render(key));
+				} finally {
+					pending.remove(key);
+				}
+				SwingUtilities.invokeLater(onReady);
+			});
+		}
+		return null;
+	}
+
+	private static BufferedImage lookup(final Key key) {
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+
+	private static void store(final Key key, final BufferedImage sprite) {
+		synchronized (cache) {
+			BufferedImage previous = cache.put(key, sprite);
+			if (previous != null) cachedBytes -= bytesOf(previous);
+			cachedBytes += bytesOf(sprite);
+			// 最近使われていないものから破棄する（今追加したものは残す）
+			Iterator<BufferedImage> eldest = cache.values().iterator();
+			while ((cache.size() > MAX_ENTRIES || cachedBytes > MAX_BYTES) && cache.size() > 1) {
+				cachedBytes -= bytesOf(eldest.next());
+				eldest.remove();
+			}
+		}
+	}
+
+	private static long bytesOf(final BufferedImage image) {
+		return 4L * image.getWidth() * image.getHeight();
+	}
+
+	/**
+	 * キーに対応するスプライトを生成します。
+	 */
+	private static BufferedImage render(final Key key) {
+		BufferedImage source = key.asset.image();
+		if (key.variant == Variant.PRESSED) {
+			int width = (int) (key.width * PRESSED_SCALE), height = (int) (key.height * PRESSED_SCALE);
+			BufferedImage result = createCompatibleImage(width, height);
+			Graphics2D g2d = result.createGraphics();
+			g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, PRESSED_ALPHA));
+			g2d.drawImage(scale(source, width, height), 0, 0, null);
+			g2d.dispose();
+			return result;
+		}
+
+		BufferedImage result = createCompatibleImage(key.width, key.height);
+		Graphics2D g2d = result.createGraphics();
+		switch (key.variant) {
+			case COVER: {
+				// パネルの方が横長なら横幅を、縦長なら縦幅を合わせ、はみ出した部分を切り取る
+				double scale = Math.max((double) key.width / source.getWidth(), (double) key.height / source.getHeight());
+				int drawWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+				int drawHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+				g2d.drawImage(scale(source, drawWidth, drawHeight), (key.width - drawWidth) / 2, (key.height - drawHeight) / 2, null);
+				break;
+			}
+			default:
+				g2d.drawImage(scale(source, key.width, key.height), 0, 0, null);
+				break;
+		}
+		g2d.dispose();
+		return result;
+	}
+
+	/**
+	 * 画像を指定サイズに拡大縮小します。
+	 * 縮小は半分ずつ段階的にバイリニア補間で行い、{@code SCALE_SMOOTH}に近い品質をより短時間で得ます。
+	 */
+	static BufferedImage scale(final BufferedImage source, final int width, final int height) {
+		BufferedImage current = source;
+		int w = source.getWidth(), h = source.getHeight();
+		do {
+			w = w / 2 >= width ? w / 2 : width;
+			h = h / 2 >= height ? h / 2 : height;
+			BufferedImage next = createCompatibleImage(w, h);
+			Graphics2D g2d = next.createGraphics();
+			g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g2d.drawImage(current, 0, 0, w, h, null);
+			g2d.dispose();
+			current = next;
+		} while (w != width || h != height);
+		return current;
+	}
+
+	/**
+	 * 画面の形式に合わせた透過つきの画像を作成します。ヘッドレス環境ではARGB形式で作成します。
+	 */
+	static BufferedImage createCompatibleImage(final int width, final int height) {
+		int w = Math.max(1, width), h = Math.max(1, height);
+		if (GraphicsEnvironment.isHeadless()) return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		return config.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+	}
+
+	/**
+	 * キャッシュのキーです。
+	 */
+	private static final class Key {
+		final Asset asset;
+		final int width;
+		final int height;
+		final Variant variant;
+
+		Key(final Asset asset, final int width, final int height, final Variant variant) {
+			this.asset = asset;
+			this.width = width;
+			this.height = height;
+			this.variant = variant;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return asset == other.asset && width == other.width && height == other.height && variant == other.variant;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(asset, width, height, variant);
+		}
+	}
+}
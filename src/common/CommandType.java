@@ -12,6 +12,10 @@ public enum CommandType {
 	GAME_OVER("GAME_OVER"),
 	OPPONENT_RESIGNED("OPPONENT_RESIGNED"),
 	OPPONENT_DISCONNECTED("OPPONENT_DISCONNECTED"),
+	LEADERBOARD("LEADERBOARD"),
+	ANALYSIS("ANALYSIS"),
+	PING("PING"),
+	PONG("PONG"),
 	ERROR("ERROR"),
 	UNKNOWN("UNKNOWN");
 
@@ -2,6 +2,8 @@
 
 import model.*;
 
+import java.util.*;
+
 public final class Protocol {
 	private Protocol() {
 	}
@@ -58,6 +60,91 @@ public static String opponentDisconnected() {
 		return CommandType.OPPONENT_DISCONNECTED.command();
 	}
 
+	public static String leaderboardRequest(int count) {
+		return CommandType.LEADERBOARD.command() + " " + count;
+	}
+
+	/**
+	 * LEADERBOARD rank total name1 rating1 name2 rating2 ...
+	 *
+	 * @param rank  要求したプレイヤーの順位（未登録なら0）
+	 * @param total 順位表の人数
+	 * @param top   上位プレイヤーの名前とレーティング（順位順）
+	 */
+	public static String leaderboard(int rank, int total, Map<String, Integer> top) {
+		StringBuilder sb = new StringBuilder(CommandType.LEADERBOARD.command()).append(' ').append(rank).append(' ').append(total);
+		for (Map.Entry<String, Integer> entry : top.entrySet()) {
+			sb.append(' ').append(entry.getKey()).append(' ').append(entry.getValue());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * ANALYSIS gameId（終わった対局の解析結果を要求する。CONNECTの代わりに最初のメッセージとしても送れる）
+	 */
+	public static String analysisRequest(String gameId) {
+		return CommandType.ANALYSIS.command() + " " + gameId;
+	}
+
+	/**
+	 * ANALYSIS gameId PENDING（解析待ち。対局終了時にも送り、クライアントはこのgameIdで後から要求する）
+	 */
+	public static String analysisPending(String gameId) {
+		return CommandType.ANALYSIS.command() + " " + gameId + " PENDING";
+	}
+
+	/**
+	 * ANALYSIS gameId UNKNOWN（解析待ちにも解析結果にもない対局）
+	 */
+	public static String analysisUnknown(String gameId) {
+		return CommandType.ANALYSIS.command() + " " + gameId + " UNKNOWN";
+	}
+
+	/**
+	 * ANALYSIS gameId READY plies i,j:bi,bj:win:loss:grade ...
+	 * <p>
+	 * 1手ごとに、実際の手、最善手、打つ前の白の勝率（%）、失った勝率（%）、悪手の程度（0: 問題なし、1: 疑問手、2: 悪手、3: 大悪手）を
+	 * コロン区切りで並べます。最善手や勝率が不明な場合は{@code -}です。
+	 *
+	 * @param size            ボードサイズ
+	 * @param played          実際に打った手（i * size + j）
+	 * @param best            最善手（i * size + j、不明な場合は負の値）
+	 * @param whiteWinPercent 打つ前の白の勝率（%、不明な場合は負の値）
+	 * @param lossPercent     失った勝率（%）
+	 * @param grades          悪手の程度
+	 */
+	public static String analysisReport(String gameId, int size, int[] played, int[] best, int[] whiteWinPercent, int[] lossPercent,
+										int[] grades) {
+		StringBuilder sb = new StringBuilder(CommandType.ANALYSIS.command()).append(' ').append(gameId).append(" READY ").append(played.length);
+		for (int ply = 0; ply < played.length; ply++) {
+			sb.append(' ').append(played[ply] / size).append(',').append(played[ply] % size).append(':');
+			if (best[ply] < 0) sb.append('-');
+			else sb.append(best[ply] / size).append(',').append(best[ply] % size);
+			sb.append(':');
+			if (whiteWinPercent[ply] < 0) sb.append('-');
+			else sb.append(whiteWinPercent[ply]);
+			sb.append(':').append(lossPercent[ply]).append(':').append(grades[ply]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * PING token（受信側は同じtokenでPONGを返す）
+	 *
+	 * @param token 送信側が往復時間の計算に使う値（送信時刻など）
+	 */
+	public static String ping(long token) {
+		return CommandType.PING.command() + " " + token;
+	}
+
+	public static String pong(String token) {
+		return CommandType.PONG.command() + " " + token;
+	}
+
+	public static String error(String message) {
+		return CommandType.ERROR.command() + " " + message;
+	}
+
 	private static String formatResult(String result, int whiteCount, int blackCount) {
 		return CommandType.GAME_OVER.command() + " " + result + " " + whiteCount + " " + blackCount;
 	}
@@ -0,0 +1,274 @@
+package engine;
+
+import model.*;
+
+import java.util.*;
+
+/**
+ * 反復深化つきのアルファベータ探索（ネガマックス形式）です。
+ * <p>
+ * 指定された{@link Deadline}を過ぎると探索を打ち切り、最後に完了した深さの最善手を返します。
+ * {@link TranspositionTable}を渡した場合は、探索済みの局面の値と最善手を表に記録して枝刈りと手の並べ替えに使います。
+ * 表は複数の探索で共有できます。探索は表の世代を進めないため、表の持ち主が対局ごとなどの区切りで
+ * {@link TranspositionTable#newSearch()}を呼び出してください。
+ * インスタンスはスレッドセーフではないため、探索ごとに作成してください。
+ */
+public final class AlphaBetaSearch {
+	/** 評価値の上限（終局の評価値より大きい値） */
+	private static final int INFINITY = 1_000_000;
+	/** 終局時の石差1つあたりの評価値 */
+	private static final int WIN_SCORE = 10_000;
+	/** 打ち切り判定を行うノード間隔（2のべき乗-1） */
+	private static final int CHECK_INTERVAL_MASK = 0xFF;
+	/** 反復深化の最大深さ */
+	private static final int MAX_DEPTH = 64;
+
+	private final Evaluator evaluator;
+	private final Deadline deadline;
+	/** 置換表（使わない場合はnull） */
+	private final TranspositionTable table;
+	/** 探索したノード数 */
+	private long nodes;
+	/** 最後に完了した深さ（完了した深さがなければ0） */
+	private int completedDepth;
+	/** 最後に完了した深さでの最善手の評価値 */
+	private int bestScore;
+	/** {@link #searchRoot}で求めた最善手の評価値 */
+	private int rootScore;
+
+	/**
+	 * @param evaluator 末端で使用する評価関数
+	 * @param deadline  探索の打ち切り時刻
+	 */
+	public AlphaBetaSearch(final Evaluator evaluator, final Deadline deadline) {
+		this(evaluator, deadline, null);
+	}
+
+	/**
+	 * @param evaluator 末端で使用する評価関数
+	 * @param deadline  探索の打ち切り時刻
+	 * @param table     置換表（使わない場合はnull）
+	 */
+	public AlphaBetaSearch(final Evaluator evaluator, final Deadline deadline, final TranspositionTable table) {
+		this.evaluator = evaluator;
+		this.deadline = deadline;
+		this.table = table;
+	}
+
+	/**
+	 * 制限時間内で最善と判断した手を返します。
+	 *
+	 * @param board  現在の盤面（変更されません）
+	 * @param player 手番のプレイヤー
+	 * @return 着手する座標（i * size + j）。置ける場所がない場合は-1
+	 */
+	public int bestMove(final Board board, final Piece player) {
+		return search(board, player, true);
+	}
+
+	/**
+	 * {@link #bestMove}と同様に探索しますが、置ける場所が1つしかない場合も探索して評価値を求めます。
+	 * 探索後の評価値と深さは{@link #getBestScore()}、{@link #getCompletedDepth()}で取得できます。
+	 *
+	 * @param board  現在の盤面（変更されません）
+	 * @param player 手番のプレイヤー
+	 * @return 着手する座標（i * size + j）。置ける場所がない場合は-1
+	 */
+	public int analyze(final Board board, final Piece player) {
+		return search(board, player, false);
+	}
+
+	private int search(final Board board, final Piece player, final boolean skipForced) {
+		completedDepth = 0;
+		List<Integer> moves = board.getValidMoveCells(player);
+		if (moves.isEmpty()) return -1;
+		int best = moves.get(0);
+		if (skipForced && moves.size() == 1) return best;
+
+		try {
+			for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+				// 前回の最善手から調べることで枝刈りを効かせる
+				moves.remove(Integer.valueOf(best));
+				moves.add(0, best);
+				best = searchRoot(board, player, moves, depth);
+				bestScore = rootScore;
+				completedDepth = depth;
+			}
+		} catch (SearchTimeout e) {
+			// 打ち切り時点で完了している深さの最善手を使う
+		}
+		return best;
+	}
+
+	/**
+	 * 置けるすべての手を評価し、深さを1つずつ増やしながら結果を{@code listener}に通知します。
+	 * <p>
+	 * 最善手以外の評価値も正確に求めるため、各手を全幅の窓で探索します。
+	 * 通知は手の探索が終わるたびに探索スレッド上で行われます。{@link Deadline}を過ぎると、探索途中の手は通知せずに終了します。
+	 *
+	 * @param board    現在の盤面（変更されません）
+	 * @param player   手番のプレイヤー
+	 * @param listener 各手の評価値の通知先
+	 */
+	public void scoreMoves(final Board board, final Piece player, final ScoreListener listener) {
+		List<Integer> moves = board.getValidMoveCells(player);
+		if (moves.isEmpty()) return;
+		int size = board.getSize();
+		try {
+			for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+				for (int move : moves) {
+					Board child = new Board(board);
+					child.applyMove(player, move / size, move % size);
+					int score = -negamax(child, player.opposite(), depth - 1, -INFINITY, INFINITY);
+					listener.onScore(move, score, depth);
+				}
+			}
+		} catch (SearchTimeout e) {
+			// 探索途中の手の結果は通知しない
+		}
+	}
+
+	/**
+	 * 探索したノード数を返します。
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 直近の探索で最後に完了した深さを返します（完了した深さがなければ0）。
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * 直近の探索で最後に完了した深さでの、手番のプレイヤーから見た最善手の評価値を返します。
+	 */
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	/**
+	 * 終局した盤面の、指定されたプレイヤーから見た評価値を返します。
+	 */
+	static int terminalScore(final Board board, final Piece player) {
+		return WIN_SCORE * (board.getStoneCount(player) - board.getStoneCount(player.opposite()));
+	}
+
+	private int searchRoot(final Board board, final Piece player, final List<Integer> moves, final int depth) {
+		int size = board.getSize();
+		int alpha = -INFINITY;
+		int best = moves.get(0);
+		for (int move : moves) {
+			Board child = new Board(board);
+			child.applyMove(player, move / size, move % size);
+			int score = -negamax(child, player.opposite(), depth - 1, -INFINITY, -alpha);
+			if (score > alpha) {
+				alpha = score;
+				best = move;
+			}
+		}
+		rootScore = alpha;
+		return best;
+	}
+
+	private int negamax(final Board board, final Piece player, final int depth, int alpha, final int beta) {
+		if ((++nodes & CHECK_INTERVAL_MASK) == 0 && deadline.expired()) throw SearchTimeout.INSTANCE;
+
+		Piece opponent = player.opposite();
+		List<Integer> moves = board.getValidMoveCells(player);
+		if (moves.isEmpty()) {
+			// 両者とも置けなければ終局、そうでなければパス
+			if (board.countValidMoves(opponent) == 0) {
+				return terminalScore(board, player);
+			}
+			return -negamax(board, opponent, depth, -beta, -alpha);
+		}
+		if (depth <= 0) return evaluator.evaluate(board, player);
+
+		// 置換表に十分な深さの値があればそれを使い、なければ記録されている最善手から調べる
+		long hash = 0;
+		int hashMove = -1;
+		int alphaOrigin = alpha;
+		if (table != null) {
+			hash = board.getHash() ^ (player.isBlack() ? Zobrist.BLACK_TO_MOVE : 0);
+			long entry = table.probe(hash);
+			if (entry != TranspositionTable.MISS) {
+				if (TranspositionTable.depth(entry) >= depth) {
+					int score = TranspositionTable.score(entry);
+					int bound = TranspositionTable.bound(entry);
+					if (bound == TranspositionTable.EXACT
+							|| (bound == TranspositionTable.LOWER && score >= beta)
+							|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+						return score;
+					}
+				}
+				int move = TranspositionTable.move(entry);
+				if (moves.contains(move)) hashMove = move;
+			}
+		}
+
+		int best = -INFINITY;
+		int bestMove = -1;
+		if (hashMove >= 0) {
+			best = searchChild(board, player, hashMove, depth, alpha, beta);
+			bestMove = hashMove;
+			if (best > alpha) alpha = best;
+		}
+		if (alpha < beta) {
+			for (int move : moves) {
+				if (move == hashMove) continue;
+				int score = searchChild(board, player, move, depth, alpha, beta);
+				if (score > best) {
+					best = score;
+					bestMove = move;
+				}
+				if (score > alpha) alpha = score;
+				if (alpha >= beta) break;
+			}
+		}
+		if (table != null) {
+			int bound = best <= alphaOrigin ? TranspositionTable.UPPER : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(hash, bestMove, best, depth, bound);
+		}
+		return best;
+	}
+
+	/**
+	 * 手を1つ打った局面を探索し、手番のプレイヤーから見た評価値を返します。
+	 */
+	private int searchChild(final Board board, final Piece player, final int move, final int depth, final int alpha, final int beta) {
+		int size = board.getSize();
+		Board child = new Board(board);
+		child.applyMove(player, move / size, move % size);
+		return -negamax(child, player.opposite(), depth - 1, -beta, -alpha);
+	}
+
+	/**
+	 * {@link #scoreMoves}の結果を受け取るインターフェースです。
+	 */
+	public interface ScoreListener {
+		/**
+		 * 1つの手の評価が終わったときに呼ばれます。
+		 *
+		 * @param move  手の座標（i * size + j）
+		 * @param score 手番のプレイヤーから見た評価値
+		 * @param depth 探索した深さ
+		 */
+		void onScore(int move, int score, int depth);
+	}
+
+	/**
+	 * 探索の打ち切りを伝える例外です。スタックトレースは生成しません。
+	 */
+	private static final class SearchTimeout extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		static final SearchTimeout INSTANCE = new SearchTimeout();
+
+		private SearchTimeout() {
+			super(null, null, false, false);
+		}
+	}
+}
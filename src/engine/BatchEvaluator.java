@@ -0,0 +1,214 @@
+package engine;
+
+import model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * 複数の局面をまとめて並列に評価するクラスです。
+ * <p>
+ * 各局面を{@link AlphaBetaSearch}で制限時間まで探索し、最善手と評価値を終わった局面から順に{@link ResultListener}に通知します。
+ * すべての局面の探索で1つの{@link TranspositionTable}を共有するため、1局の各手番の局面のように関連した局面は
+ * 互いの探索結果を再利用できます。1局分の局面を渡す場合は終盤の局面から探索を始め、
+ * 手数が少なくすぐに終わる局面の結果を序盤の局面の探索で使えるようにします。
+ * 局面の探索は置換表の世代を進めないため、1局分の局面は同じ世代のエントリとして残ります。
+ * 世代はバッチを投入する前に呼び出し元が{@link TranspositionTable#newSearch()}で進めてください。
+ * <p>
+ * 探索は呼び出し元が渡す{@link Executor}上で行います。インスタンスはスレッドセーフで、複数のバッチを同時に投入できます。
+ */
+public final class BatchEvaluator {
+	private final Evaluator evaluator;
+	/** すべての探索で共有する置換表（使わない場合はnull） */
+	private final TranspositionTable table;
+	private final Executor executor;
+
+	/**
+	 * @param evaluator 末端で使用する評価関数（スレッド間で共有できるもの）
+	 * @param table     共有する置換表（使わない場合はnull。世代は進めない）
+	 * @param executor  探索を実行するスレッドプール
+	 */
+	public BatchEvaluator(final Evaluator evaluator, final TranspositionTable table, final Executor executor) {
+		this.evaluator = evaluator;
+		this.table = table;
+		this.executor = executor;
+	}
+
+	/**
+	 * 局面の評価結果を受け取るインターフェースです。通知は探索したスレッド上で行われます。
+	 */
+	public interface ResultListener {
+		/**
+		 * 1つの局面の評価が終わったときに呼ばれます。
+		 *
+		 * @param index 局面の番号（投入した順、0始まり）
+		 * @param move  最善手（i * size + j）。置ける場所がない場合は-1
+		 * @param score 手番のプレイヤーから見た評価値
+		 * @param depth 探索を完了した深さ（終局の場合は0）
+		 */
+		void onResult(int index, int move, int score, int depth);
+	}
+
+	/**
+	 * 局面を評価する処理を投入します。
+	 *
+	 * @param boards      局面（評価中に変更しないこと）
+	 * @param players     各局面の手番
+	 * @param budgetNanos 1局面に使ってよいCPU時間（ナノ秒）
+	 * @param listener    結果の通知先（制限時間内に深さ1の探索も終わらなかった局面は通知しない）
+	 * @return 投入したバッチ
+	 */
+	public Batch submit(final List<Board> boards, final List<Piece> players, final long budgetNanos, final ResultListener listener) {
+		if (boards.size() != players.size()) throw new IllegalArgumentException("boards and players differ in length");
+		Batch batch = new Batch(boards.size());
+		// 終盤の局面から探索し、その結果を前の局面の探索で再利用する
+		for (int index = boards.size() - 1; index >= 0; index--) {
+			int target = index;
+			try {
+				executor.execute(() -> evaluate(batch, target, boards.get(target), players.get(target), budgetNanos, listener));
+			} catch (RejectedExecutionException e) {
+				batch.finish();
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * 1局分の棋譜を再生し、各手を打つ前の局面を評価する処理を投入します。局面の番号は何手目か（0始まり）と一致します。
+	 *
+	 * @param size        ボードサイズ
+	 * @param moves       着手の座標（i * size + j）の並び。手番のプレイヤーが置けない場合はパスとして扱う
+	 * @param budgetNanos 1局面に使ってよいCPU時間（ナノ秒）
+	 * @param listener    結果の通知先
+	 * @return 投入したバッチ
+	 * @throws IllegalArgumentException 棋譜に置けない手が含まれている場合
+	 */
+	public Batch submitGame(final int size, final List<Integer> moves, final long budgetNanos, final ResultListener listener) {
+		List<Board> boards = new ArrayList<>(moves.size());
+		List<Piece> players = new ArrayList<>(moves.size());
+		Board board = new Board(size);
+		Piece turn = Piece.WHITE;
+		for (int ply = 0; ply < moves.size(); ply++) {
+			if (board.countValidMoves(turn) == 0) turn = turn.opposite();
+			int move = moves.get(ply);
+			if (move < 0 || move >= size * size || !board.isValidMove(turn, move / size, move % size)) {
+				throw new IllegalArgumentException("illegal move at ply " + (ply + 1) + ": " + move);
+			}
+			boards.add(new Board(board));
+			players.add(turn);
+			board.applyMove(turn, move / size, move % size);
+			turn = turn.opposite();
+		}
+		return submit(boards, players, budgetNanos, listener);
+	}
+
+	/**
+	 * ワーカースレッド上で1つの局面を探索します。
+	 */
+	private void evaluate(final Batch batch, final int index, final Board board, final Piece player, final long budgetNanos,
+						  final ResultListener listener) {
+		try {
+			if (batch.isCancelled()) return;
+			// Deadlineは探索するスレッドのCPU時間で判定するため、ここで作成する
+			Deadline deadline = Deadline.cpuTime(budgetNanos);
+			if (!batch.register(index, deadline)) return;
+
+			Piece opponent = player.opposite();
+			boolean terminal = board.countValidMoves(player) == 0 && board.countValidMoves(opponent) == 0;
+			int move, score, depth;
+			if (terminal) {
+				move = -1;
+				score = AlphaBetaSearch.terminalScore(board, player);
+				depth = 0;
+			} else if (board.countValidMoves(player) == 0) {
+				// パスの局面は相手の手番として探索する
+				AlphaBetaSearch search = new AlphaBetaSearch(evaluator, deadline, table);
+				search.analyze(board, opponent);
+				move = -1;
+				score = -search.getBestScore();
+				depth = search.getCompletedDepth();
+			} else {
+				AlphaBetaSearch search = new AlphaBetaSearch(evaluator, deadline, table);
+				move = search.analyze(board, player);
+				score = search.getBestScore();
+				depth = search.getCompletedDepth();
+			}
+			// 終局でないのに1手も読み終わらないうちに打ち切られた場合は通知しない
+			if (batch.isCancelled() || (depth == 0 && !terminal)) return;
+			listener.onResult(index, move, score, depth);
+		} catch (RuntimeException e) {
+			System.err.println("局面の評価中にエラーが発生しました: " + e);
+		} finally {
+			batch.unregister(index);
+			batch.finish();
+		}
+	}
+
+	/**
+	 * 投入した局面の集まりです。完了を待ったり、まだ終わっていない探索を打ち切ったりできます。
+	 */
+	public static final class Batch {
+		/** 探索中の局面の打ち切り時刻（探索中でなければnull） */
+		private final AtomicReferenceArray<Deadline> running;
+		private final CountDownLatch remaining;
+		private volatile boolean cancelled;
+
+		private Batch(final int size) {
+			this.running = new AtomicReferenceArray<>(size);
+			this.remaining = new CountDownLatch(size);
+		}
+
+		/**
+		 * 探索を始める局面を登録します。すでに打ち切られている場合はfalseを返します。
+		 */
+		private boolean register(final int index, final Deadline deadline) {
+			running.set(index, deadline);
+			// cancel()と同時に登録された場合に備えて、登録後にもう一度確認する
+			if (cancelled) deadline.cancel();
+			return !cancelled;
+		}
+
+		private void unregister(final int index) {
+			running.set(index, null);
+		}
+
+		private void finish() {
+			remaining.countDown();
+		}
+
+		/**
+		 * 未着手の局面を取りやめ、探索中の局面を打ち切ります。打ち切った局面の結果は通知されません。
+		 */
+		public void cancel() {
+			cancelled = true;
+			for (int index = 0; index < running.length(); index++) {
+				Deadline deadline = running.get(index);
+				if (deadline != null) deadline.cancel();
+			}
+		}
+
+		/**
+		 * {@link #cancel()}が呼ばれたかを返します。
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * すべての局面の処理が終わったかを返します。
+		 */
+		public boolean isDone() {
+			return remaining.getCount() == 0;
+		}
+
+		/**
+		 * すべての局面の処理が終わるまで待ちます。
+		 *
+		 * @return 時間内に終わった場合true
+		 */
+		public boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+			return remaining.await(timeout, unit);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package engine;
+
+import model.*;
+
+import java.util.*;
+
+/**
+ * 盤面の8つの対称形（回転4通り×鏡映）を同一視するハッシュです。
+ * <p>
+ * 対称形ごとにZobristハッシュを計算し、最小のものを代表（正規形）とします。
+ * 乱数表はボードサイズごとに固定の種から作るため、ブックの作成時と参照時で同じ値になります。
+ * 戻り値の下位3ビットには正規形を与えた対称変換の番号を入れるため、キーとして使うときは{@link #key}で取り除きます。
+ */
+final class CanonicalHash {
+	/** 対称変換の数 */
+	static final int SYMMETRIES = 8;
+	/** 下位3ビット（対称変換の番号） */
+	private static final long SYMMETRY_MASK = SYMMETRIES - 1;
+	/** 乱数表の種 */
+	private static final long SEED = 0x4F74_6865_6C6C_6FL;
+
+	private final int size;
+	/** 各マスに白石がある場合の乱数 */
+	private final long[] white;
+	/** 各マスに黒石がある場合の乱数 */
+	private final long[] black;
+	/** 黒の手番の場合の乱数（対称変換で変わらない） */
+	private final long blackToMove;
+	/** transform[s][i * size + j]: 対称変換sで移る先の座標 */
+	private final int[][] transform;
+	/** inverse[s][k]: 対称変換sで座標kに移る元の座標 */
+	private final int[][] inverse;
+
+	CanonicalHash(final int size) {
+		this.size = size;
+		int squares = size * size;
+		SplittableRandom random = new SplittableRandom(SEED + size);
+		white = new long[squares];
+		black = new long[squares];
+		for (int k = 0; k < squares; k++) {
+			white[k] = random.nextLong();
+			black[k] = random.nextLong();
+		}
+		blackToMove = random.nextLong();
+
+		transform = new int[SYMMETRIES][squares];
+		inverse = new int[SYMMETRIES][squares];
+		int n = size - 1;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				int[] images = {
+						i * size + j, j * size + (n - i), (n - i) * size + (n - j), (n - j) * size + i,
+						i * size + (n - j), j * size + i, (n - i) * size + j, (n - j) * size + (n - i)
+				};
+				for (int s = 0; s < SYMMETRIES; s++) {
+					transform[s][i * size + j] = images[s];
+					inverse[s][images[s]] = i * size + j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 正規形のハッシュと対称変換の番号を返します。オブジェクトは生成しません。
+	 *
+	 * @param board  盤面
+	 * @param player 手番のプレイヤー
+	 * @return 上位61ビットが正規形のハッシュ、下位3ビットが正規形を与えた対称変換の番号
+	 */
+	long hash(final Board board, final Piece player) {
+		long best = Long.MAX_VALUE;
+		int bestSymmetry = 0;
+		for (int s = 0; s < SYMMETRIES; s++) {
+			long hash = player.isBlack() ? blackToMove : 0;
+			int[] map = transform[s];
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					Piece piece = board.getPiece(i, j);
+					if (piece.isWhite()) hash ^= white[map[i * size + j]];
+					else if (piece.isBlack()) hash ^= black[map[i * size + j]];
+				}
+			}
+			hash &= ~SYMMETRY_MASK;
+			if (hash < best) {
+				best = hash;
+				bestSymmetry = s;
+			}
+		}
+		return best | bestSymmetry;
+	}
+
+	/**
+	 * {@link #hash}の戻り値からキー（正規形のハッシュ）を取り出します。
+	 */
+	static long key(final long hash) {
+		return hash & ~SYMMETRY_MASK;
+	}
+
+	/**
+	 * {@link #hash}の戻り値から対称変換の番号を取り出します。
+	 */
+	static int symmetry(final long hash) {
+		return (int) (hash & SYMMETRY_MASK);
+	}
+
+	/**
+	 * 実際の盤面の座標を正規形の座標に変換します。
+	 */
+	int toCanonical(final int symmetry, final int move) {
+		return transform[symmetry][move];
+	}
+
+	/**
+	 * 正規形の座標を実際の盤面の座標に変換します。
+	 */
+	int fromCanonical(final int symmetry, final int move) {
+		return inverse[symmetry][move];
+	}
+}
@@ -0,0 +1,70 @@
+package engine;
+
+import java.lang.management.*;
+
+/**
+ * 探索の打ち切り時刻を表すクラスです。
+ * <p>
+ * CPU時間による制限は、このインスタンスを作成したスレッドのCPU時間で判定します。
+ * そのため探索を実行するスレッド上で作成してください。
+ * {@link #cancel()}は任意のスレッドから呼び出せ、呼び出し以降は時刻にかかわらず打ち切りとして扱います。
+ */
+public final class Deadline {
+	/** スレッドのCPU時間を取得するためのMXBean */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/** CPU時間で判定する場合true、経過時間で判定する場合false */
+	private final boolean cpuTime;
+	/** 打ち切り時刻（ナノ秒） */
+	private final long limit;
+	/** 外部から打ち切られた場合true */
+	private volatile boolean cancelled;
+
+	private Deadline(final boolean cpuTime, final long limit) {
+		this.cpuTime = cpuTime;
+		this.limit = limit;
+	}
+
+	/**
+	 * 現在のスレッドのCPU時間で制限するDeadlineを作成します。
+	 * CPU時間を計測できない環境では経過時間で代用します。
+	 *
+	 * @param budgetNanos 使用してよいCPU時間（ナノ秒）
+	 */
+	public static Deadline cpuTime(final long budgetNanos) {
+		if (!THREADS.isCurrentThreadCpuTimeSupported()) return wallClock(budgetNanos);
+		return new Deadline(true, THREADS.getCurrentThreadCpuTime() + budgetNanos);
+	}
+
+	/**
+	 * 経過時間で制限するDeadlineを作成します。
+	 *
+	 * @param budgetNanos 使用してよい時間（ナノ秒）
+	 */
+	public static Deadline wallClock(final long budgetNanos) {
+		return new Deadline(false, System.nanoTime() + budgetNanos);
+	}
+
+	/**
+	 * 打ち切り時刻を過ぎているかを返します。
+	 */
+	public boolean expired() {
+		if (cancelled) return true;
+		long now = cpuTime ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+		return now - limit >= 0;
+	}
+
+	/**
+	 * 制限時間を待たずに打ち切ります。
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * {@link #cancel()}で打ち切られたかを返します。
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,18 @@
+package engine;
+
+import model.*;
+
+/**
+ * 盤面の評価関数です。
+ */
+public interface Evaluator {
+
+	/**
+	 * 指定されたプレイヤーから見た盤面の評価値を返します（大きいほど有利）。
+	 *
+	 * @param board  評価する盤面
+	 * @param player 評価する側のプレイヤー
+	 * @return 評価値
+	 */
+	int evaluate(Board board, Piece player);
+}
@@ -0,0 +1,200 @@
+package engine;
+
+import model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 終わった1局を解析した結果です。
+ * <p>
+ * 各手について、打つ前の局面の最善手、白の勝率、実際の手で失った勝率、悪手の程度を持ちます。
+ * 勝率は評価値をロジスティック関数で0〜100%に変換した値で、悪手は最善手を打った場合と比べて
+ * 手番のプレイヤーの勝率がどれだけ下がったかで判定します。インスタンスは不変です。
+ */
+public final class GameAnalysis {
+	/** 悪手の程度: 問題なし */
+	public static final int GOOD = 0;
+	/** 悪手の程度: 疑問手（勝率の低下が{@link #INACCURACY_PERCENT}以上） */
+	public static final int INACCURACY = 1;
+	/** 悪手の程度: 悪手（勝率の低下が{@link #MISTAKE_PERCENT}以上） */
+	public static final int MISTAKE = 2;
+	/** 悪手の程度: 大悪手（勝率の低下が{@link #BLUNDER_PERCENT}以上） */
+	public static final int BLUNDER = 3;
+	/** 勝率が不明な場合の値 */
+	public static final int UNKNOWN = -1;
+
+	/** 疑問手とみなす勝率の低下（%） */
+	private static final int INACCURACY_PERCENT = 10;
+	/** 悪手とみなす勝率の低下（%） */
+	private static final int MISTAKE_PERCENT = 20;
+	/** 大悪手とみなす勝率の低下（%） */
+	private static final int BLUNDER_PERCENT = 30;
+	/** 勝率に変換するときの評価値の尺度（この評価値の差で勝率の対数オッズが1変わる。石4つ分） */
+	private static final double WIN_PROBABILITY_SCALE = 400.0;
+
+	private final int size;
+	/** 実際に打った手（i * size + j） */
+	private final int[] played;
+	/** 最善手（i * size + j）。不明な場合は-1 */
+	private final int[] best;
+	/** 打つ前の局面での白の勝率（%）。不明な場合は{@link #UNKNOWN} */
+	private final int[] whiteWinPercent;
+	/** 実際の手で手番のプレイヤーが失った勝率（%） */
+	private final int[] lossPercent;
+
+	private GameAnalysis(final int size, final int[] played, final int[] best, final int[] whiteWinPercent, final int[] lossPercent) {
+		this.size = size;
+		this.played = played;
+		this.best = best;
+		this.whiteWinPercent = whiteWinPercent;
+		this.lossPercent = lossPercent;
+	}
+
+	/**
+	 * 1局を解析します。各手を打つ前の局面を{@link BatchEvaluator}で評価し、すべて終わるまで待ちます。
+	 *
+	 * @param evaluator   局面を評価するバッチ
+	 * @param size        ボードサイズ
+	 * @param moves       着手の座標（i * size + j）の並び。パスは含まない
+	 * @param budgetNanos 1局面に使ってよいCPU時間（ナノ秒）
+	 * @throws InterruptedException     待っている間に割り込まれた場合（評価は打ち切られる）
+	 * @throws IllegalArgumentException 棋譜に置けない手が含まれている場合
+	 */
+	public static GameAnalysis analyze(final BatchEvaluator evaluator, final int size, final List<Integer> moves, final long budgetNanos)
+			throws InterruptedException {
+		int plies = moves.size();
+		// 各手の手番と終局時の石差を求めるため、棋譜を再生する
+		Piece[] movers = new Piece[plies];
+		Board board = new Board(size);
+		Piece turn = Piece.WHITE;
+		for (int ply = 0; ply < plies; ply++) {
+			if (board.countValidMoves(turn) == 0) turn = turn.opposite();
+			int move = moves.get(ply);
+			if (move < 0 || move >= size * size || !board.isValidMove(turn, move / size, move % size)) {
+				throw new IllegalArgumentException("illegal move at ply " + (ply + 1) + ": " + move);
+			}
+			movers[ply] = turn;
+			board.applyMove(turn, move / size, move % size);
+			turn = turn.opposite();
+		}
+		int finalWhiteScore = AlphaBetaSearch.terminalScore(board, Piece.WHITE);
+
+		int[] best = new int[plies];
+		int[] scores = new int[plies];
+		boolean[] known = new boolean[plies];
+		Arrays.fill(best, -1);
+		BatchEvaluator.Batch batch = evaluator.submitGame(size, moves, budgetNanos, (index, move, score, depth) -> {
+			// 局面ごとに別のスレッドから通知されるが、書き込む要素が重ならないうえ完了を待ってから読むため同期は不要
+			best[index] = move;
+			scores[index] = score;
+			known[index] = true;
+		});
+		try {
+			while (!batch.await(1, TimeUnit.SECONDS)) {
+				// 完了するまで待つ（割り込まれた場合は打ち切る）
+			}
+		} catch (InterruptedException e) {
+			batch.cancel();
+			throw e;
+		}
+
+		int[] played = new int[plies];
+		int[] whiteWinPercent = new int[plies];
+		int[] lossPercent = new int[plies];
+		for (int ply = 0; ply < plies; ply++) {
+			played[ply] = moves.get(ply);
+			Piece mover = movers[ply];
+			if (!known[ply]) {
+				whiteWinPercent[ply] = UNKNOWN;
+				continue;
+			}
+			double before = winProbability(scores[ply]);
+			whiteWinPercent[ply] = (int) Math.round(100 * (mover == Piece.WHITE ? before : 1 - before));
+			if (best[ply] == played[ply]) continue;
+
+			// 打った後の局面の評価値を、この手の手番のプレイヤーから見た値に直す
+			int after;
+			if (ply + 1 == plies) {
+				after = mover == Piece.WHITE ? finalWhiteScore : -finalWhiteScore;
+			} else if (known[ply + 1]) {
+				after = movers[ply + 1] == mover ? scores[ply + 1] : -scores[ply + 1];
+			} else {
+				continue;
+			}
+			// 別々の探索の値を比べるため、実際の手の方が良く見える場合もある
+			lossPercent[ply] = Math.max(0, (int) Math.round(100 * (before - winProbability(after))));
+		}
+		return new GameAnalysis(size, played, best, whiteWinPercent, lossPercent);
+	}
+
+	/**
+	 * 手番のプレイヤーから見た評価値を勝率（0〜1）に変換します。
+	 */
+	static double winProbability(final int score) {
+		return 1 / (1 + Math.exp(-score / WIN_PROBABILITY_SCALE));
+	}
+
+	/**
+	 * ボードサイズを返します。
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * 手数を返します。
+	 */
+	public int getPlies() {
+		return played.length;
+	}
+
+	/**
+	 * 実際に打った手（i * size + j）を返します。
+	 *
+	 * @param ply 何手目か（0始まり）
+	 */
+	public int getPlayed(final int ply) {
+		return played[ply];
+	}
+
+	/**
+	 * 打つ前の局面の最善手（i * size + j）を返します。不明な場合は-1を返します。
+	 *
+	 * @param ply 何手目か（0始まり）
+	 */
+	public int getBest(final int ply) {
+		return best[ply];
+	}
+
+	/**
+	 * 打つ前の局面での白の勝率（%）を返します。不明な場合は{@link #UNKNOWN}を返します。
+	 *
+	 * @param ply 何手目か（0始まり）
+	 */
+	public int getWhiteWinPercent(final int ply) {
+		return whiteWinPercent[ply];
+	}
+
+	/**
+	 * 実際の手で手番のプレイヤーが失った勝率（%）を返します。
+	 *
+	 * @param ply 何手目か（0始まり）
+	 */
+	public int getLossPercent(final int ply) {
+		return lossPercent[ply];
+	}
+
+	/**
+	 * 悪手の程度（{@link #GOOD}、{@link #INACCURACY}、{@link #MISTAKE}、{@link #BLUNDER}）を返します。
+	 *
+	 * @param ply 何手目か（0始まり）
+	 */
+	public int getGrade(final int ply) {
+		int loss = lossPercent[ply];
+		if (loss >= BLUNDER_PERCENT) return BLUNDER;
+		if (loss >= MISTAKE_PERCENT) return MISTAKE;
+		if (loss >= INACCURACY_PERCENT) return INACCURACY;
+		return GOOD;
+	}
+}
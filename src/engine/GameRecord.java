@@ -0,0 +1,48 @@
+package engine;
+
+import java.util.*;
+
+/**
+ * 1局分の棋譜です。
+ * <p>
+ * 棋譜ファイルは1行1局で、{@code size i,j i,j ...}の形式です（パスは書かない）。
+ * {@link OpeningBookBuilder}と{@link PatternTrainer}が共通で読み込みます。
+ */
+final class GameRecord {
+	/** ボードサイズ */
+	final int size;
+	/** 着手の座標（i * size + j）の並び */
+	final List<Integer> moves;
+
+	private GameRecord(final int size, final List<Integer> moves) {
+		this.size = size;
+		this.moves = moves;
+	}
+
+	/**
+	 * 棋譜ファイルの1行が棋譜を含むかを返します（空行と{@code #}で始まる行は含まない）。
+	 */
+	static boolean isRecord(final String line) {
+		String trimmed = line.trim();
+		return !trimmed.isEmpty() && !trimmed.startsWith("#");
+	}
+
+	/**
+	 * 棋譜ファイルの1行を読み込みます。着手が置ける手かどうかは確認しません。
+	 *
+	 * @throws IllegalArgumentException 形式が正しくない場合
+	 */
+	static GameRecord parse(final String line) {
+		String[] tokens = line.trim().split("\\s+");
+		int size = Integer.parseInt(tokens[0]);
+		List<Integer> moves = new ArrayList<>(tokens.length - 1);
+		for (int k = 1; k < tokens.length; k++) {
+			String[] coordinate = tokens[k].split(",");
+			if (coordinate.length != 2) throw new IllegalArgumentException("invalid move: " + tokens[k]);
+			int i = Integer.parseInt(coordinate[0]), j = Integer.parseInt(coordinate[1]);
+			if (i < 0 || i >= size || j < 0 || j >= size) throw new IllegalArgumentException("move out of board: " + tokens[k]);
+			moves.add(i * size + j);
+		}
+		return new GameRecord(size, moves);
+	}
+}
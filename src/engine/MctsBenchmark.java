@@ -0,0 +1,44 @@
+package engine;
+
+import model.*;
+
+import java.util.concurrent.*;
+
+/**
+ * {@link MctsSearch}のスレッド数ごとのプレイアウト速度を計測するプログラムです。
+ * <p>
+ * 使い方: {@code java engine.MctsBenchmark [秒数] [ボードサイズ...]}（既定は2秒、8と12）
+ * スレッド数は1からCPUコア数まで2倍ずつ増やし、初期局面の探索1回あたりのプレイアウト数/秒を表示します。
+ */
+public final class MctsBenchmark {
+	/** アリーナのノード数 */
+	private static final int CAPACITY = 1 << 20;
+
+	private MctsBenchmark() {
+	}
+
+	public static void main(final String[] args) {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+		int[] sizes = {8, 12};
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int k = 1; k < args.length; k++) sizes[k - 1] = Integer.parseInt(args[k]);
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		for (int size : sizes) {
+			Board board = new Board(size);
+			// JITコンパイルを済ませるため、最初に短く1回探索する
+			new MctsSearch(1, CAPACITY).bestMove(board, Piece.WHITE, Deadline.wallClock(TimeUnit.MILLISECONDS.toNanos(500)));
+			for (int threads = 1; threads <= cores; threads *= 2) {
+				MctsSearch search = new MctsSearch(threads, CAPACITY);
+				long start = System.nanoTime();
+				int move = search.bestMove(board, Piece.WHITE, Deadline.wallClock(TimeUnit.SECONDS.toNanos(seconds)));
+				double elapsed = (System.nanoTime() - start) / 1e9;
+				double rate = search.getPlayouts() / elapsed;
+				System.out.printf("size=%d threads=%d playouts/s=%.0f (per thread %.0f) nodes=%d move=(%d, %d)%n",
+						size, threads, rate, rate / threads, search.getNodeCount(), move / size, move % size);
+			}
+		}
+	}
+}
@@ -0,0 +1,395 @@
+package engine;
+
+import model.*;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * モンテカルロ木探索（UCT）です。
+ * <p>
+ * 探索木のノードは事前に確保した配列（アリーナ）上に置き、ノードごとのオブジェクトは生成しません。
+ * 複数のスレッドが1つの木を共有して探索し（木並列化）、ノードを選択した時点で訪問回数だけを先に加算することで
+ * 仮想損失とし、スレッドが同じ経路に集中しないようにします。
+ * 局面は{@link Board}と同じビット集合（白と黒の語の配列）で表し、着手と合法手の生成には{@link BitBoard}を使うため、
+ * ルールの実装は盤面と共通です。プレイアウトは各スレッドが持つ語の配列上で行い、オブジェクトを生成しません。
+ * <p>
+ * 1つのインスタンスで同時に実行できる探索は1つだけです。
+ */
+public final class MctsSearch {
+	/** UCTの探索係数（√2） */
+	private static final double EXPLORATION = Math.sqrt(2);
+	/** この回数訪問されたノードを展開する */
+	private static final int EXPAND_VISITS = 2;
+	/** パスを表す手 */
+	private static final int PASS = -1;
+	/** 白の石の配列の番号 */
+	private static final int WHITE = 0;
+	/** 黒の石の配列の番号 */
+	private static final int BLACK = 1;
+	/** プレイアウトが引き分けだったことを表す勝者 */
+	private static final int DRAW = -1;
+	/** 根ノードの番号 */
+	private static final int ROOT = 0;
+	/** 未展開 */
+	private static final int UNEXPANDED = 0;
+	/** 他のスレッドが展開中 */
+	private static final int EXPANDING = 1;
+	/** 展開済み（子ノードの情報が確定している） */
+	private static final int EXPANDED = 2;
+	/** アリーナが尽きたため展開しない（以降はプレイアウトのみ行う葉） */
+	private static final int FULL = 3;
+
+	/** 探索スレッド数 */
+	private final int threads;
+	/** アリーナに確保できるノード数 */
+	private final int capacity;
+	/** ノードに至る手（マス番号 i * size + j または{@link #PASS}） */
+	private final int[] move;
+	/** 最初の子ノードの番号（子ノードは連続して確保する） */
+	private final int[] firstChild;
+	/** 子ノードの数（終局のノードは0） */
+	private final int[] childCount;
+	/** 訪問回数（選択時に加算するため、プレイアウト中の訪問を含む） */
+	private final AtomicIntegerArray visits;
+	/** そのノードに至る手を打った側から見た勝ち点の合計（勝ち2、引き分け1） */
+	private final AtomicIntegerArray wins;
+	/** 展開の状態 */
+	private final AtomicIntegerArray state;
+	/** 確保済みのノード数（上限を超えて加算されることがある） */
+	private final AtomicInteger allocated = new AtomicInteger();
+	/** 直近の探索のプレイアウト数 */
+	private final AtomicLong playouts = new AtomicLong();
+
+	/**
+	 * @param threads  探索スレッド数
+	 * @param capacity アリーナに確保するノード数（1ノードあたり24バイト）
+	 */
+	public MctsSearch(final int threads, final int capacity) {
+		if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+		this.threads = threads;
+		this.capacity = capacity;
+		move = new int[capacity];
+		firstChild = new int[capacity];
+		childCount = new int[capacity];
+		visits = new AtomicIntegerArray(capacity);
+		wins = new AtomicIntegerArray(capacity);
+		state = new AtomicIntegerArray(capacity);
+	}
+
+	/**
+	 * 制限時間まで探索し、最も多く訪問された手を返します。
+	 * <p>
+	 * {@link Deadline}は全スレッドで共有するため、{@link Deadline#wallClock}で作成したものを渡してください。
+	 *
+	 * @param board    現在の盤面（変更されません）
+	 * @param player   手番のプレイヤー
+	 * @param deadline 探索の打ち切り時刻
+	 * @return 着手する座標（i * size + j）。置ける場所がない場合は-1
+	 */
+	public int bestMove(final Board board, final Piece player, final Deadline deadline) {
+		int size = board.getSize();
+		BitBoard bits = BitBoard.of(size);
+		long[][] root = {new long[bits.getWords()], new long[bits.getWords()]};
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				Piece piece = board.getPiece(i, j);
+				if (piece != Piece.EMPTY) BitBoard.toggle(root[piece == Piece.WHITE ? WHITE : BLACK], i * size + j);
+			}
+		}
+		int color = player == Piece.WHITE ? WHITE : BLACK;
+		long[] moveBits = new long[bits.getWords()];
+		int[] moves = new int[size * size];
+		int count = bits.generateMoves(root[color], root[1 - color], moveBits);
+		if (count == 0) return -1;
+		if (count == 1) {
+			toCells(moveBits, moves);
+			return moves[0];
+		}
+
+		reset();
+		expand(ROOT, bits, root, color, moveBits, null, moves);
+
+		// 呼び出し元のスレッドも探索に参加する
+		Worker[] workers = new Worker[threads];
+		Thread[] helpers = new Thread[threads - 1];
+		for (int k = 0; k < threads; k++) workers[k] = new Worker(bits, size, root, color, deadline, k);
+		for (int k = 0; k < helpers.length; k++) {
+			helpers[k] = new Thread(workers[k + 1], "mcts-" + (k + 1));
+			helpers[k].setDaemon(true);
+			helpers[k].start();
+		}
+		workers[0].run();
+		joinAll(helpers, deadline);
+
+		// 最も多く訪問された子ノードの手を選ぶ
+		int first = firstChild[ROOT];
+		int best = first;
+		for (int c = first; c < first + childCount[ROOT]; c++) {
+			if (visits.get(c) > visits.get(best)) best = c;
+		}
+		return move[best];
+	}
+
+	/**
+	 * 直近の探索のプレイアウト数を返します。
+	 */
+	public long getPlayouts() {
+		return playouts.get();
+	}
+
+	/**
+	 * 直近の探索で使用したノード数を返します。
+	 */
+	public int getNodeCount() {
+		return Math.min(allocated.get(), capacity);
+	}
+
+	/**
+	 * アリーナを空にして根ノードだけを確保します。
+	 */
+	private void reset() {
+		int used = getNodeCount();
+		for (int node = 0; node < used; node++) {
+			visits.set(node, 0);
+			wins.set(node, 0);
+			state.set(node, UNEXPANDED);
+		}
+		playouts.set(0);
+		move[ROOT] = PASS;
+		childCount[ROOT] = 0;
+		allocated.set(1);
+	}
+
+	/**
+	 * ノードの子ノードを確保します。アリーナが足りない場合は展開しません。
+	 *
+	 * @param node     展開するノード（呼び出し元が{@link #EXPANDING}にしているか、探索開始前であること）
+	 * @param bits     局面のビット集合の形式
+	 * @param position ノードの局面（白と黒の石）
+	 * @param color    ノードの局面での手番
+	 * @param moveBits 合法手のビット集合の作業用配列
+	 * @param work     合法手の生成に使う作業用配列（nullの場合は必要なときに確保する）
+	 * @param moves    合法手のマス番号の作業用配列
+	 */
+	private void expand(final int node, final BitBoard bits, final long[][] position, final int color, final long[] moveBits, final long[] work, final int[] moves) {
+		if (allocated.get() >= capacity) {
+			// 合法手を生成する前に、アリーナが尽きていれば葉として確定する
+			state.set(node, FULL);
+			return;
+		}
+		int count = bits.generateMoves(position[color], position[1 - color], moveBits, work);
+		if (count == 0) {
+			if (bits.generateMoves(position[1 - color], position[color], moveBits, work) == 0) {
+				// 両者とも置けなければ終局
+				childCount[node] = 0;
+				state.set(node, EXPANDED);
+				return;
+			}
+			moves[0] = PASS;
+			count = 1;
+		} else {
+			toCells(moveBits, moves);
+		}
+		// 足りる場合だけ確保する（足りない場合にも加算すると、確保済みの数が増え続けてあふれる）
+		int first;
+		do {
+			first = allocated.get();
+			if (first + count > capacity) {
+				// アリーナが尽きた場合は葉として確定し、以降は展開を試みない
+				state.set(node, FULL);
+				return;
+			}
+		} while (!allocated.compareAndSet(first, first + count));
+		for (int k = 0; k < count; k++) {
+			move[first + k] = moves[k];
+			childCount[first + k] = 0;
+		}
+		firstChild[node] = first;
+		childCount[node] = count;
+		// 子ノードの情報を書き終えてから公開する
+		state.set(node, EXPANDED);
+	}
+
+	/**
+	 * UCTの値が最大の子ノードを選びます。未訪問の子ノードがあればそれを優先します。
+	 */
+	private int select(final int node) {
+		int first = firstChild[node];
+		int end = first + childCount[node];
+		double logParent = Math.log(Math.max(1, visits.get(node)));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int c = first; c < end; c++) {
+			int n = visits.get(c);
+			if (n == 0) return c;
+			double value = wins.get(c) / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n);
+			if (value > bestValue) {
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * 合法手のビット集合をマス番号の配列に書き出します。
+	 */
+	private static void toCells(final long[] moveBits, final int[] cells) {
+		int count = 0;
+		for (int w = 0; w < moveBits.length; w++) {
+			for (long rest = moveBits[w]; rest != 0; rest &= rest - 1) cells[count++] = w * 64 + Long.numberOfTrailingZeros(rest);
+		}
+	}
+
+	/**
+	 * 合法手のビット集合のうち{@code n}番目（0始まり）のマス番号を返します。
+	 */
+	private static int nthCell(final long[] moveBits, int n) {
+		for (int w = 0; ; w++) {
+			int inWord = Long.bitCount(moveBits[w]);
+			if (n < inWord) {
+				long rest = moveBits[w];
+				for (; n > 0; n--) rest &= rest - 1;
+				return w * 64 + Long.numberOfTrailingZeros(rest);
+			}
+			n -= inWord;
+		}
+	}
+
+	private static void joinAll(final Thread[] helpers, final Deadline deadline) {
+		boolean interrupted = false;
+		for (Thread helper : helpers) {
+			while (true) {
+				try {
+					helper.join();
+					break;
+				} catch (InterruptedException e) {
+					// 割り込まれたら探索を打ち切り、終了を待ってから割り込み状態を戻す
+					interrupted = true;
+					deadline.cancel();
+				}
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * 1つの探索スレッドの処理です。作業用の盤面と配列は探索の開始時に1度だけ確保します。
+	 */
+	private final class Worker implements Runnable {
+		private final BitBoard bits;
+		private final long[][] root;
+		private final int rootColor;
+		private final Deadline deadline;
+		/** 作業用の盤面（白と黒の石） */
+		private final long[][] position;
+		/** 合法手のビット集合の作業用配列 */
+		private final long[] moveBits;
+		/** 合法手の生成に使う作業用配列 */
+		private final long[] work;
+		/** 合法手のマス番号の作業用配列 */
+		private final int[] moves;
+		/** 根から選択したノードの経路 */
+		private final int[] path;
+		/** 乱数の状態（xorshift） */
+		private long seed;
+
+		Worker(final BitBoard bits, final int size, final long[][] root, final int rootColor, final Deadline deadline, final int id) {
+			this.bits = bits;
+			this.root = root;
+			this.rootColor = rootColor;
+			this.deadline = deadline;
+			int words = bits.getWords();
+			int squares = size * size;
+			this.position = new long[2][words];
+			this.moveBits = new long[words];
+			this.work = new long[words * 2];
+			this.moves = new int[squares];
+			// パスを含めても1局の手数は空きマス数の2倍を超えない
+			this.path = new int[squares * 2 + 2];
+			this.seed = System.nanoTime() ^ (0x9E3779B97F4A7C15L * (id + 1));
+		}
+
+		@Override
+		public void run() {
+			long count = 0;
+			while (!deadline.expired()) {
+				iterate();
+				count++;
+			}
+			playouts.addAndGet(count);
+		}
+
+		/**
+		 * 選択・展開・プレイアウト・逆伝播を1回行います。
+		 */
+		private void iterate() {
+			System.arraycopy(root[WHITE], 0, position[WHITE], 0, position[WHITE].length);
+			System.arraycopy(root[BLACK], 0, position[BLACK], 0, position[BLACK].length);
+			int node = ROOT;
+			int color = rootColor;
+			int depth = 0;
+			path[depth++] = ROOT;
+			visits.incrementAndGet(ROOT);
+
+			// 選択（訪問回数を先に加算して仮想損失とする）
+			while (true) {
+				int st = state.get(node);
+				if (st != EXPANDED) {
+					if (st != UNEXPANDED || visits.get(node) < EXPAND_VISITS || !state.compareAndSet(node, UNEXPANDED, EXPANDING)) break;
+					expand(node, bits, position, color, moveBits, work, moves);
+					if (state.get(node) != EXPANDED) break;
+				}
+				if (childCount[node] == 0) break;
+				int child = select(node);
+				visits.incrementAndGet(child);
+				if (move[child] != PASS) bits.play(position[color], position[1 - color], move[child]);
+				color = 1 - color;
+				node = child;
+				path[depth++] = child;
+			}
+
+			// プレイアウトと逆伝播（経路上のノードは手番が交互に入れ替わる）
+			int winner = playout(color);
+			int mover = 1 - rootColor;
+			for (int k = 0; k < depth; k++) {
+				if (winner == mover) wins.addAndGet(path[k], 2);
+				else if (winner == DRAW) wins.incrementAndGet(path[k]);
+				mover = 1 - mover;
+			}
+		}
+
+		/**
+		 * 作業用の盤面で終局までランダムに打ち、勝った色を返します（引き分けは{@link #DRAW}）。
+		 */
+		private int playout(int color) {
+			int passes = 0;
+			while (passes < 2) {
+				int count = bits.generateMoves(position[color], position[1 - color], moveBits, work);
+				if (count == 0) {
+					passes++;
+				} else {
+					passes = 0;
+					bits.play(position[color], position[1 - color], nthCell(moveBits, nextInt(count)));
+				}
+				color = 1 - color;
+			}
+			int white = count(position[WHITE]), black = count(position[BLACK]);
+			if (white == black) return DRAW;
+			return white > black ? WHITE : BLACK;
+		}
+
+		private int count(final long[] stones) {
+			int count = 0;
+			for (long word : stones) count += Long.bitCount(word);
+			return count;
+		}
+
+		private int nextInt(final int bound) {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			return (int) ((seed >>> 1) % bound);
+		}
+	}
+}
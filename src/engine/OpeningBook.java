@@ -0,0 +1,132 @@
+package engine;
+
+import model.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * 読み取り専用の定石ブックです。
+ * <p>
+ * ファイルはボードサイズごとに1つ（{@code book-<size>.bin}）で、メモリマップして参照します。
+ * 開く処理はヘッダを読むだけなので、ブックの大きさにかかわらずすぐに終わります。
+ * 局面は{@link CanonicalHash}で8つの対称形を同一視したキーで引き、キー順に並んだエントリを二分探索します。
+ * 参照時にオブジェクトは生成せず、複数のスレッドから同時に参照できます。
+ * <p>
+ * ファイル形式（ビッグエンディアン）:
+ * <pre>
+ * ヘッダ   : int magic, int version, int size, int count
+ * エントリ : long key, int move（正規形の座標 i * size + j）, int games（その手が打たれた対局数）
+ * </pre>
+ */
+public final class OpeningBook {
+	/** ファイルの識別子（"OBK1"） */
+	static final int MAGIC = 0x4F424B31;
+	/** ファイル形式のバージョン */
+	static final int VERSION = 1;
+	/** ヘッダの大きさ（バイト） */
+	static final int HEADER_BYTES = 16;
+	/** 1エントリの大きさ（バイト） */
+	static final int ENTRY_BYTES = 16;
+
+	private final int size;
+	private final CanonicalHash hasher;
+	/** エントリ部分のマップ */
+	private final MappedByteBuffer entries;
+	/** エントリ数 */
+	private final int count;
+
+	private OpeningBook(final int size, final MappedByteBuffer entries, final int count) {
+		this.size = size;
+		this.hasher = new CanonicalHash(size);
+		this.entries = entries;
+		this.count = count;
+	}
+
+	/**
+	 * 指定ディレクトリにあるボードサイズのブックファイルのパスを返します。
+	 */
+	public static Path fileFor(final Path directory, final int size) {
+		return directory.resolve("book-" + size + ".bin");
+	}
+
+	/**
+	 * ブックファイルをメモリマップして開きます。
+	 *
+	 * @throws IOException ファイルが読めない場合や形式が正しくない場合
+	 */
+	public static OpeningBook open(final Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_BYTES || length > Integer.MAX_VALUE) throw new IOException("invalid book file length: " + file);
+			// マップはチャネルを閉じた後も有効
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) throw new IOException("not an opening book: " + file);
+			int size = map.getInt(8);
+			int count = map.getInt(12);
+			if (!Board.isValidSize(size) || (long) count * ENTRY_BYTES != length - HEADER_BYTES) {
+				throw new IOException("corrupt opening book: " + file);
+			}
+			return new OpeningBook(size, map, count);
+		}
+	}
+
+	/**
+	 * 指定ディレクトリからボードサイズのブックを開きます。ファイルがない場合や読めない場合はnullを返します。
+	 */
+	public static OpeningBook openIfExists(final Path directory, final int size) {
+		Path file = fileFor(directory, size);
+		if (!Files.isRegularFile(file)) return null;
+		try {
+			OpeningBook book = open(file);
+			if (book.size != size) throw new IOException("board size mismatch: " + file);
+			return book;
+		} catch (IOException e) {
+			System.err.println("定石ブックを開けませんでした: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 局面に対する定石の手を返します。
+	 *
+	 * @param board  盤面（ブックと同じサイズ）
+	 * @param player 手番のプレイヤー
+	 * @return 着手する座標（i * size + j）。ブックにない場合は-1
+	 */
+	public int probe(final Board board, final Piece player) {
+		if (board.getSize() != size || count == 0) return -1;
+		long hash = hasher.hash(board, player);
+		long key = CanonicalHash.key(hash);
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midKey = entries.getLong(HEADER_BYTES + mid * ENTRY_BYTES);
+			if (midKey < key) {
+				low = mid + 1;
+			} else if (midKey > key) {
+				high = mid - 1;
+			} else {
+				int move = entries.getInt(HEADER_BYTES + mid * ENTRY_BYTES + 8);
+				return hasher.fromCanonical(CanonicalHash.symmetry(hash), move);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * ブックのボードサイズを返します。
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * ブックに登録されている局面の数を返します。
+	 */
+	public int getEntryCount() {
+		return count;
+	}
+}
@@ -0,0 +1,180 @@
+package engine;
+
+import model.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * 棋譜から{@link OpeningBook}のファイルを作成するクラスです。
+ * <p>
+ * 1つのボードサイズごとにインスタンスを作り、{@link #addGame}で棋譜を1局ずつ読み込んでから{@link #write}で書き出します。
+ * 各局面（対称形を同一視）で打たれた手を集計し、最も多く打たれた手（同数なら勝率の高い手）をその局面の定石とします。
+ * <p>
+ * コマンドラインから使う場合の棋譜ファイルの形式は{@link GameRecord}を参照してください。
+ * <pre>
+ * java engine.OpeningBookBuilder records.txt book [maxPly] [minGames]
+ * </pre>
+ */
+public final class OpeningBookBuilder {
+	/** ブックに登録する序盤の手数（デフォルト） */
+	private static final int DEFAULT_MAX_PLY = 20;
+	/** ブックに登録するために必要な対局数（デフォルト） */
+	private static final int DEFAULT_MIN_GAMES = 2;
+
+	private final int size;
+	/** 1局のうちブックに登録する手数 */
+	private final int maxPly;
+	private final CanonicalHash hasher;
+	/** 局面のキー → 正規形の手 → {対局数, 勝ち点の合計（勝ち2、引き分け1）} */
+	private final Map<Long, Map<Integer, long[]>> stats = new HashMap<>();
+	/** 読み込んだ対局数 */
+	private int games;
+
+	/**
+	 * @param size   ボードサイズ
+	 * @param maxPly 1局のうちブックに登録する手数
+	 */
+	public OpeningBookBuilder(final int size, final int maxPly) {
+		if (!Board.isValidSize(size)) throw new IllegalArgumentException("invalid board size: " + size);
+		this.size = size;
+		this.maxPly = maxPly;
+		this.hasher = new CanonicalHash(size);
+	}
+
+	/**
+	 * 1局分の棋譜を読み込みます。手番のプレイヤーが置けない場合はパスとして扱います。
+	 *
+	 * @param moves 着手の座標（i * size + j）の並び
+	 * @throws IllegalArgumentException 棋譜に置けない手が含まれている場合
+	 */
+	public void addGame(final List<Integer> moves) {
+		Board board = new Board(size);
+		Piece turn = Piece.WHITE;
+		long[] keys = new long[Math.min(maxPly, moves.size())];
+		int[] canonicalMoves = new int[keys.length];
+		Piece[] movers = new Piece[keys.length];
+
+		for (int ply = 0; ply < moves.size(); ply++) {
+			if (board.countValidMoves(turn) == 0) turn = turn.opposite();
+			int move = moves.get(ply);
+			if (move < 0 || move >= size * size || !board.isValidMove(turn, move / size, move % size)) {
+				throw new IllegalArgumentException("illegal move at ply " + (ply + 1) + ": " + move);
+			}
+			if (ply < keys.length) {
+				long hash = hasher.hash(board, turn);
+				keys[ply] = CanonicalHash.key(hash);
+				canonicalMoves[ply] = hasher.toCanonical(CanonicalHash.symmetry(hash), move);
+				movers[ply] = turn;
+			}
+			board.applyMove(turn, move / size, move % size);
+			turn = turn.opposite();
+		}
+
+		// 最終局面の石数で勝敗を決める（途中までの棋譜はその時点の石数）
+		int white = board.getStoneCount(Piece.WHITE), black = board.getStoneCount(Piece.BLACK);
+		for (int ply = 0; ply < keys.length; ply++) {
+			int mine = movers[ply].isWhite() ? white : black;
+			int theirs = movers[ply].isWhite() ? black : white;
+			long[] entry = stats.computeIfAbsent(keys[ply], k -> new HashMap<>()).computeIfAbsent(canonicalMoves[ply], k -> new long[2]);
+			entry[0]++;
+			entry[1] += mine > theirs ? 2 : mine == theirs ? 1 : 0;
+		}
+		games++;
+	}
+
+	/**
+	 * 読み込んだ対局数を返します。
+	 */
+	public int getGames() {
+		return games;
+	}
+
+	/**
+	 * ブックファイルを書き出します。一時ファイルに書いてから置き換えるため、参照中のブックが壊れることはありません。
+	 *
+	 * @param file     書き出すファイル
+	 * @param minGames ブックに登録するために必要な対局数
+	 * @return 登録した局面の数
+	 */
+	public int write(final Path file, final int minGames) throws IOException {
+		// 局面ごとに定石の手を選び、キー順に並べる
+		List<long[]> entries = new ArrayList<>();
+		for (Map.Entry<Long, Map<Integer, long[]>> position : stats.entrySet()) {
+			int bestMove = -1;
+			long[] best = null;
+			for (Map.Entry<Integer, long[]> candidate : position.getValue().entrySet()) {
+				long[] s = candidate.getValue();
+				if (best == null || s[0] > best[0] || (s[0] == best[0] && s[1] > best[1])) {
+					best = s;
+					bestMove = candidate.getKey();
+				}
+			}
+			if (best[0] >= minGames) entries.add(new long[]{position.getKey(), bestMove, best[0]});
+		}
+		entries.sort((a, b) -> Long.compare(a[0], b[0]));
+
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) Files.createDirectories(parent);
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(size).putInt(entries.size());
+			for (long[] entry : entries) {
+				if (buffer.remaining() < OpeningBook.ENTRY_BYTES) flush(channel, buffer);
+				buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) Math.min(Integer.MAX_VALUE, entry[2]));
+			}
+			flush(channel, buffer);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return entries.size();
+	}
+
+	private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * 棋譜ファイルからボードサイズごとのブックを作成します。
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java engine.OpeningBookBuilder <records> <outputDir> [maxPly] [minGames]");
+			System.exit(1);
+		}
+		Path records = Paths.get(args[0]);
+		Path outputDir = Paths.get(args[1]);
+		int maxPly = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_PLY;
+		int minGames = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MIN_GAMES;
+
+		Map<Integer, OpeningBookBuilder> builders = new TreeMap<>();
+		int lineNumber = 0, skipped = 0;
+		try (BufferedReader reader = Files.newBufferedReader(records, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (!GameRecord.isRecord(line)) continue;
+				try {
+					GameRecord record = GameRecord.parse(line);
+					builders.computeIfAbsent(record.size, s -> new OpeningBookBuilder(s, maxPly)).addGame(record.moves);
+				} catch (RuntimeException e) {
+					skipped++;
+					System.err.println(lineNumber + "行目の棋譜を読み飛ばしました: " + e.getMessage());
+				}
+			}
+		}
+
+		for (Map.Entry<Integer, OpeningBookBuilder> entry : builders.entrySet()) {
+			Path file = OpeningBook.fileFor(outputDir, entry.getKey());
+			int positions = entry.getValue().write(file, minGames);
+			System.out.println(file + ": " + entry.getValue().getGames() + "局から" + positions + "局面を登録しました");
+		}
+		if (skipped > 0) System.out.println("読み飛ばした棋譜: " + skipped + "件");
+	}
+}
@@ -0,0 +1,37 @@
+package engine;
+
+import model.*;
+
+/**
+ * 盤面のパターンごとの重みの表による評価関数です。
+ * <p>
+ * {@link Board}が差分で保持しているパターンのインデックスで{@link PatternWeights}の表を引くだけなので、
+ * 評価1回あたりのコストはパターンの数（24個）の配列参照で済み、盤面を走査しません。
+ * 状態を持たないため、複数のスレッドで共有できます。
+ */
+public final class PatternEvaluator implements Evaluator {
+	private final PatternWeights weights;
+	/** パターンごとのファミリー（{@link PatternLayout#getFamily}の写し） */
+	private final int[] families;
+
+	/**
+	 * @param weights 重みの表（評価する盤面と同じボードサイズのもの）
+	 */
+	public PatternEvaluator(final PatternWeights weights) {
+		this.weights = weights;
+		PatternLayout layout = weights.getLayout();
+		this.families = new int[layout.getPatternCount()];
+		for (int p = 0; p < families.length; p++) families[p] = layout.getFamily(p);
+	}
+
+	@Override
+	public int evaluate(final Board board, final Piece player) {
+		if (board.getSize() != weights.getSize()) throw new IllegalArgumentException("board size mismatch: " + board.getSize());
+		int phase = weights.phaseOf(board);
+		short[][] tables = weights.tables[phase];
+		int score = 0;
+		for (int p = 0; p < families.length; p++) score += tables[families[p]][board.getPatternIndex(p)];
+		score += weights.mobility[phase] * (board.countValidMoves(Piece.WHITE) - board.countValidMoves(Piece.BLACK));
+		return player.isWhite() ? score : -score;
+	}
+}
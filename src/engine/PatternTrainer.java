@@ -0,0 +1,464 @@
+package engine;
+
+import model.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * 棋譜から{@link PatternWeights}を学習するツールです。
+ * <p>
+ * 棋譜ファイルは先頭から順に読み込み、メモリに保持するのは{@link #BATCH_GAMES}局分の行だけです。
+ * 読み込んだバッチは{@link ForkJoinPool}で分割し、各スレッドが{@link Board}で棋譜を再生して各局面のパターンを取り出し、
+ * 最終局面の石差を目標値として確率的勾配降下法（正規化LMS）で重みを更新します。
+ * 重みはスレッド間でロックせずに共有します（Hogwild方式）。1つのバッチを学習している間に、呼び出し元のスレッドが次のバッチを読み込みます。
+ * <p>
+ * 一定時間ごとと各エポックの終わりに、学習途中の重みと読み終えた行数をチェックポイント（{@code weights-<size>.ckpt}）に保存し、
+ * 同じ引数で再実行すると続きから学習します。Ctrl-Cで止めた場合も、学習中のバッチを終えてから保存します。
+ * チェックポイントと同時に、その時点の重みを{@code weights-<size>.bin}に書き出します。
+ * <pre>
+ * java engine.PatternTrainer size weightsDir records...
+ * </pre>
+ * 棋譜ファイルの形式は{@link GameRecord}を参照してください。ファイル名が{@code .gz}で終わる場合はgzipを展開しながら読み込みます。
+ * 指定したサイズ以外の棋譜は読み飛ばします。
+ * <p>
+ * 設定はシステムプロパティで変更できます。
+ * <ul>
+ *     <li>{@code othello.train.epochs}: 棋譜全体を学習する回数</li>
+ *     <li>{@code othello.train.rate}: 最初のエポックの学習率（1局面ごとに誤差のこの割合だけ評価値を目標値に近づける）。エポックごとに半分にする</li>
+ *     <li>{@code othello.train.threads}: 学習スレッド数（デフォルトはCPUコア数）</li>
+ *     <li>{@code othello.train.checkpointMinutes}: チェックポイントを保存する間隔（分）</li>
+ * </ul>
+ */
+public final class PatternTrainer {
+	/** 棋譜全体を学習する回数（デフォルト） */
+	private static final int DEFAULT_EPOCHS = 2;
+	/** 最初のエポックの学習率（デフォルト） */
+	private static final double DEFAULT_RATE = 0.01;
+	/** チェックポイントを保存する間隔（デフォルト、分） */
+	private static final int DEFAULT_CHECKPOINT_MINUTES = 10;
+	/** 進捗を表示する間隔（ナノ秒） */
+	private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+	/** 1度に読み込む棋譜の行数 */
+	private static final int BATCH_GAMES = 16384;
+	/** これ以下の棋譜数になるまでタスクを分割する */
+	private static final int LEAF_GAMES = 64;
+	/** 石差1つあたりの目標値 */
+	static final int DISC_SCORE = 100;
+	/** チェックポイントの識別子（"PTC1"） */
+	private static final int CHECKPOINT_MAGIC = 0x50544331;
+	/** チェックポイントの形式のバージョン */
+	private static final int CHECKPOINT_VERSION = 1;
+
+	private final int size;
+	/** 進行度の計算と書き出しに使用する重み（学習中は参照しない） */
+	private final PatternWeights output;
+	/** パターンごとのファミリー */
+	private final int[] families;
+	/** 学習中の重み（[phase][family][index]、白から見た値） */
+	private final float[][][] tables = new float[PatternWeights.PHASES][PatternLayout.FAMILY_COUNT][];
+	/** 学習中の着手可能数の差1つあたりの重み */
+	private final float[] mobility = new float[PatternWeights.PHASES];
+	private final ForkJoinPool pool;
+
+	/** 学習中のエポック（0始まり） */
+	private int epoch;
+	/** 現在のエポックで読み終えた行数 */
+	private long linesDone;
+	/** 学習した局面の総数 */
+	private long positions;
+	/** 停止の要求（シャットダウンフックから設定される） */
+	private volatile boolean stopping;
+
+	// 進捗表示用の集計（表示のたびに0に戻す）
+	private final LongAdder gameCounter = new LongAdder();
+	private final LongAdder positionCounter = new LongAdder();
+	private final LongAdder skipCounter = new LongAdder();
+	private final DoubleAdder squaredError = new DoubleAdder();
+
+	/**
+	 * @param initial 学習を始める重み
+	 * @param threads 学習スレッド数
+	 */
+	PatternTrainer(final PatternWeights initial, final int threads) {
+		this.size = initial.getSize();
+		this.output = new PatternWeights(size);
+		PatternLayout layout = initial.getLayout();
+		this.families = new int[layout.getPatternCount()];
+		for (int p = 0; p < families.length; p++) families[p] = layout.getFamily(p);
+		for (int phase = 0; phase < PatternWeights.PHASES; phase++) {
+			for (int family = 0; family < PatternLayout.FAMILY_COUNT; family++) {
+				short[] source = initial.tables[phase][family];
+				float[] table = new float[source.length];
+				for (int index = 0; index < table.length; index++) table[index] = source[index];
+				tables[phase][family] = table;
+			}
+			mobility[phase] = initial.mobility[phase];
+		}
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * 棋譜を指定したエポック数まで学習します。停止を要求された場合はチェックポイントを保存して途中で戻ります。
+	 *
+	 * @return 最後まで学習した場合true
+	 */
+	boolean train(final List<Path> records, final int epochs, final double rate, final long checkpointNanos, final Path checkpoint, final Path weightsFile) throws IOException {
+		String fingerprint = fingerprint(records);
+		long lastCheckpoint = System.nanoTime();
+		long lastProgress = lastCheckpoint;
+		while (epoch < epochs) {
+			double epochRate = rate / (1L << epoch);
+			try (RecordReader reader = new RecordReader(records)) {
+				reader.skip(linesDone);
+				Batch batch = reader.read(BATCH_GAMES);
+				while (batch.lineCount > 0) {
+					ForkJoinTask<Void> task = pool.submit(new Learn(batch.records, 0, batch.records.size(), epochRate));
+					// 学習している間に次のバッチを読み込む
+					Batch next = stopping ? Batch.EMPTY : reader.read(BATCH_GAMES);
+					task.join();
+					linesDone += batch.lineCount;
+					batch = next;
+
+					long now = System.nanoTime();
+					boolean saving = stopping || now - lastCheckpoint >= checkpointNanos;
+					if (saving || now - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+						printProgress(now - lastProgress);
+						lastProgress = now;
+					}
+					if (saving) {
+						saveCheckpoint(checkpoint, fingerprint, weightsFile);
+						lastCheckpoint = now;
+						if (stopping) return false;
+					}
+				}
+			}
+			printProgress(System.nanoTime() - lastProgress);
+			lastProgress = System.nanoTime();
+			System.out.println("エポック" + (epoch + 1) + "/" + epochs + "が終わりました（学習した局面: " + positions + "）");
+			epoch++;
+			linesDone = 0;
+			saveCheckpoint(checkpoint, fingerprint, weightsFile);
+			lastCheckpoint = System.nanoTime();
+		}
+		return true;
+	}
+
+	/**
+	 * バッチの一部の棋譜を学習するタスクです。
+	 */
+	private final class Learn extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> records;
+		private final int from, to;
+		private final double rate;
+
+		Learn(final List<String> records, final int from, final int to, final double rate) {
+			this.records = records;
+			this.from = from;
+			this.to = to;
+			this.rate = rate;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > LEAF_GAMES) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Learn(records, from, mid, rate), new Learn(records, mid, to, rate));
+				return;
+			}
+			learnGames(records, from, to, rate);
+		}
+	}
+
+	/**
+	 * 棋譜を再生して各局面の重みを更新します。
+	 * <p>
+	 * 着手可能数の重みは全局面で共有されて書き込みが集中するため、タスクの中で集計してから最後に1度だけ加えます。
+	 */
+	private void learnGames(final List<String> records, final int from, final int to, final double rate) {
+		int patternCount = families.length;
+		int maxPlies = size * size;
+		int[] indices = new int[maxPlies * patternCount];
+		int[] phases = new int[maxPlies];
+		int[] mobilities = new int[maxPlies];
+		float[] mobilityDelta = new float[PatternWeights.PHASES];
+		int games = 0, skipped = 0;
+		long trained = 0;
+		double error = 0;
+
+		for (int r = from; r < to; r++) {
+			// 棋譜を再生して各着手後の局面の特徴を記録する
+			int plies = 0;
+			Board board;
+			try {
+				GameRecord record = GameRecord.parse(records.get(r));
+				if (record.size != size) continue;
+				board = new Board(size);
+				Piece turn = Piece.WHITE;
+				for (int move : record.moves) {
+					if (board.countValidMoves(turn) == 0) turn = turn.opposite();
+					if (!board.isValidMove(turn, move / size, move % size)) throw new IllegalArgumentException("illegal move: " + move);
+					board.applyMove(turn, move / size, move % size);
+					turn = turn.opposite();
+					for (int p = 0; p < patternCount; p++) indices[plies * patternCount + p] = board.getPatternIndex(p);
+					phases[plies] = output.phaseOf(board);
+					mobilities[plies] = board.countValidMoves(Piece.WHITE) - board.countValidMoves(Piece.BLACK);
+					plies++;
+				}
+			} catch (RuntimeException e) {
+				skipped++;
+				continue;
+			}
+
+			// 最終局面の石差（途中までの棋譜はその時点の石差）を目標値とする
+			float target = DISC_SCORE * (board.getStoneCount(Piece.WHITE) - board.getStoneCount(Piece.BLACK));
+			for (int ply = 0; ply < plies; ply++) {
+				float[][] phaseTables = tables[phases[ply]];
+				int base = ply * patternCount;
+				float predicted = mobility[phases[ply]] * mobilities[ply];
+				for (int p = 0; p < patternCount; p++) predicted += phaseTables[families[p]][indices[base + p]];
+				float diff = target - predicted;
+				// 1回の更新で評価値が誤差のrateの割合だけ目標値に近づくよう、特徴の二乗和で正規化する
+				float step = (float) (rate * diff / (patternCount + mobilities[ply] * mobilities[ply]));
+				for (int p = 0; p < patternCount; p++) phaseTables[families[p]][indices[base + p]] += step;
+				mobilityDelta[phases[ply]] += step * mobilities[ply];
+				error += (double) diff * diff;
+			}
+			trained += plies;
+			games++;
+		}
+
+		synchronized (mobility) {
+			for (int phase = 0; phase < mobility.length; phase++) mobility[phase] += mobilityDelta[phase];
+		}
+		gameCounter.add(games);
+		positionCounter.add(trained);
+		skipCounter.add(skipped);
+		squaredError.add(error);
+	}
+
+	private void printProgress(final long elapsedNanos) {
+		long games = gameCounter.sumThenReset();
+		long trained = positionCounter.sumThenReset();
+		long skipped = skipCounter.sumThenReset();
+		double error = squaredError.sumThenReset();
+		positions += trained;
+		if (games == 0 && skipped == 0) return;
+		double seconds = elapsedNanos / 1e9;
+		double rmse = trained == 0 ? 0 : Math.sqrt(error / trained) / DISC_SCORE;
+		System.out.printf("エポック%d: %d行目まで %.0f局/秒 誤差(RMSE) %.2f石%s%n", epoch + 1, linesDone, games / seconds, rmse,
+				skipped > 0 ? " 読み飛ばした棋譜 " + skipped + "件" : "");
+	}
+
+	/**
+	 * 学習中の重みを{@link PatternWeights}に丸めます。
+	 */
+	PatternWeights toWeights() {
+		for (int phase = 0; phase < PatternWeights.PHASES; phase++) {
+			for (int family = 0; family < PatternLayout.FAMILY_COUNT; family++) {
+				float[] source = tables[phase][family];
+				short[] table = output.tables[phase][family];
+				for (int index = 0; index < table.length; index++) {
+					table[index] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(source[index])));
+				}
+			}
+			output.mobility[phase] = Math.round(mobility[phase]);
+		}
+		return output;
+	}
+
+	/**
+	 * チェックポイントと現在の重みを保存します。どちらも一時ファイルに書き込んでから置き換えます。
+	 */
+	private void saveCheckpoint(final Path checkpoint, final String fingerprint, final Path weightsFile) throws IOException {
+		Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeInt(CHECKPOINT_VERSION);
+			out.writeInt(size);
+			out.writeUTF(fingerprint);
+			out.writeInt(epoch);
+			out.writeLong(linesDone);
+			out.writeLong(positions);
+			for (int phase = 0; phase < PatternWeights.PHASES; phase++) {
+				out.writeFloat(mobility[phase]);
+				for (float[] table : tables[phase]) {
+					for (float value : table) out.writeFloat(value);
+				}
+			}
+		}
+		Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		toWeights().save(weightsFile);
+		System.out.println("チェックポイントを保存しました: " + checkpoint + "（" + epoch + "エポックと" + linesDone + "行を学習済み）");
+	}
+
+	/**
+	 * チェックポイントから学習の状態を読み込みます。
+	 *
+	 * @throws IOException 読めない場合や、別の棋譜・サイズのチェックポイントの場合
+	 */
+	private void loadCheckpoint(final Path checkpoint, final String fingerprint) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+			if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) throw new IOException("not a checkpoint: " + checkpoint);
+			if (in.readInt() != size) throw new IOException("board size mismatch: " + checkpoint);
+			if (!in.readUTF().equals(fingerprint)) throw new IOException("records have changed since the checkpoint was saved: " + checkpoint);
+			epoch = in.readInt();
+			linesDone = in.readLong();
+			positions = in.readLong();
+			for (int phase = 0; phase < PatternWeights.PHASES; phase++) {
+				mobility[phase] = in.readFloat();
+				for (float[] table : tables[phase]) {
+					for (int index = 0; index < table.length; index++) table[index] = in.readFloat();
+				}
+			}
+		} catch (EOFException e) {
+			throw new IOException("truncated checkpoint: " + checkpoint, e);
+		}
+	}
+
+	/**
+	 * 棋譜ファイルの一覧を識別する文字列（パスと大きさ）を返します。
+	 */
+	private static String fingerprint(final List<Path> records) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (Path file : records) {
+			if (builder.length() > 0) builder.append('|');
+			builder.append(file.toAbsolutePath().normalize()).append(':').append(Files.size(file));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 読み込んだ棋譜の行の集まりです。
+	 */
+	private static final class Batch {
+		static final Batch EMPTY = new Batch(Collections.emptyList(), 0);
+
+		/** 棋譜を含む行 */
+		final List<String> records;
+		/** 読み込んだ行数（空行とコメントを含む） */
+		final int lineCount;
+
+		Batch(final List<String> records, final int lineCount) {
+			this.records = records;
+			this.lineCount = lineCount;
+		}
+	}
+
+	/**
+	 * 複数の棋譜ファイルを1つの続いた行の並びとして読み込みます。
+	 */
+	private static final class RecordReader implements Closeable {
+		private final Iterator<Path> files;
+		private BufferedReader current;
+
+		RecordReader(final List<Path> records) {
+			this.files = records.iterator();
+		}
+
+		/**
+		 * 次の1行を返します。すべてのファイルを読み終えた場合はnullを返します。
+		 */
+		String readLine() throws IOException {
+			while (true) {
+				if (current == null) {
+					if (!files.hasNext()) return null;
+					Path file = files.next();
+					InputStream in = Files.newInputStream(file);
+					if (file.getFileName().toString().endsWith(".gz")) in = new GZIPInputStream(in, 64 * 1024);
+					current = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+				}
+				String line = current.readLine();
+				if (line != null) return line;
+				current.close();
+				current = null;
+			}
+		}
+
+		/**
+		 * 先頭から指定した行数を読み飛ばします。
+		 */
+		void skip(final long lines) throws IOException {
+			for (long k = 0; k < lines; k++) {
+				if (readLine() == null) return;
+			}
+		}
+
+		/**
+		 * 最大{@code maxRecords}局分の棋譜を読み込みます。
+		 */
+		Batch read(final int maxRecords) throws IOException {
+			List<String> records = new ArrayList<>(maxRecords);
+			int lineCount = 0;
+			String line;
+			while (records.size() < maxRecords && (line = readLine()) != null) {
+				lineCount++;
+				if (GameRecord.isRecord(line)) records.add(line);
+			}
+			return new Batch(records, lineCount);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (current != null) current.close();
+		}
+	}
+
+	/**
+	 * 棋譜から重みを学習します。
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("usage: java engine.PatternTrainer <size> <weightsDir> <records>...");
+			System.exit(1);
+		}
+		int size = Integer.parseInt(args[0]);
+		if (!Board.isValidSize(size)) {
+			System.err.println("invalid board size: " + size);
+			System.exit(1);
+		}
+		Path weightsDir = Paths.get(args[1]);
+		List<Path> records = new ArrayList<>();
+		for (int k = 2; k < args.length; k++) records.add(Paths.get(args[k]));
+		int epochs = Integer.getInteger("othello.train.epochs", DEFAULT_EPOCHS);
+		double rate = Double.parseDouble(System.getProperty("othello.train.rate", String.valueOf(DEFAULT_RATE)));
+		int threads = Integer.getInteger("othello.train.threads", Runtime.getRuntime().availableProcessors());
+		long checkpointNanos = TimeUnit.MINUTES.toNanos(Integer.getInteger("othello.train.checkpointMinutes", DEFAULT_CHECKPOINT_MINUTES));
+
+		Files.createDirectories(weightsDir);
+		Path weightsFile = PatternWeights.fileFor(weightsDir, size);
+		Path checkpoint = weightsDir.resolve("weights-" + size + ".ckpt");
+		// 既存の重み（なければ初期値）から学習を始める
+		PatternTrainer trainer = new PatternTrainer(PatternWeights.loadOrInitial(weightsDir, size), threads);
+		if (Files.isRegularFile(checkpoint)) {
+			trainer.loadCheckpoint(checkpoint, fingerprint(records));
+			System.out.println("チェックポイントから再開します: エポック" + (trainer.epoch + 1) + "、" + trainer.linesDone + "行目から");
+		}
+
+		// Ctrl-Cなどで終了するときは、学習中のバッチを終えてチェックポイントを保存するまで待つ
+		Thread mainThread = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			trainer.stopping = true;
+			try {
+				mainThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+
+		long start = System.nanoTime();
+		if (trainer.train(records, epochs, rate, checkpointNanos, checkpoint, weightsFile)) {
+			Files.deleteIfExists(checkpoint);
+			System.out.println("学習が終わりました: " + weightsFile + "（" + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + "秒）");
+		} else {
+			System.out.println("学習を中断しました。同じ引数で再実行すると続きから学習します");
+		}
+	}
+}
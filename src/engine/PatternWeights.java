@@ -0,0 +1,183 @@
+package engine;
+
+import model.*;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * {@link PatternEvaluator}が使用する重みの表です。
+ * <p>
+ * ボードサイズごとに1組で、ゲームの進行度（置かれた石の数）を{@link #PHASES}段階に分け、段階ごとに別の重みを持ちます。
+ * 各段階は{@link PatternLayout}のファミリーごとの表（パターンのインデックス→白から見た評価値）と、
+ * 着手可能数の差（白-黒）1つあたりの評価値からなります。
+ * <p>
+ * ファイル形式（ビッグエンディアン、{@code weights-<size>.bin}）:
+ * <pre>
+ * ヘッダ : int magic, int version, int size, int phases
+ * 段階ごと : int mobility, ファミリーごとに short[3^長さ]
+ * </pre>
+ */
+public final class PatternWeights {
+	/** 進行度の段階数 */
+	public static final int PHASES = 8;
+	/** ファイルの識別子（"PWT1"） */
+	static final int MAGIC = 0x50575431;
+	/** ファイル形式のバージョン */
+	static final int VERSION = 1;
+
+	private final int size;
+	private final PatternLayout layout;
+	/** 段階・ファミリーごとの重み（[phase][family][index]、白から見た値） */
+	final short[][][] tables;
+	/** 段階ごとの着手可能数の差1つあたりの重み */
+	final int[] mobility;
+
+	/**
+	 * すべての重みが0の表を作成します。
+	 */
+	PatternWeights(final int size) {
+		this.size = size;
+		this.layout = PatternLayout.of(size);
+		this.tables = new short[PHASES][PatternLayout.FAMILY_COUNT][];
+		this.mobility = new int[PHASES];
+		for (int phase = 0; phase < PHASES; phase++) {
+			for (int family = 0; family < PatternLayout.FAMILY_COUNT; family++) {
+				tables[phase][family] = new short[layout.getTableSize(family)];
+			}
+		}
+	}
+
+	/**
+	 * 学習済みの重みがない場合の初期値を作成します。
+	 * <p>
+	 * {@link PositionalEvaluator}のマスの重みを、そのマスを含むパターンの数で割って各パターンに配分するため、
+	 * 全段階で{@link PositionalEvaluator}とほぼ同じ評価になります。
+	 */
+	public static PatternWeights initial(final int size) {
+		PatternWeights weights = new PatternWeights(size);
+		PatternLayout layout = weights.layout;
+		int[] coverage = new int[size * size];
+		for (int p = 0; p < layout.getPatternCount(); p++) {
+			for (int cell : layout.getCells(p)) coverage[cell]++;
+		}
+		for (int family = 0; family < PatternLayout.FAMILY_COUNT; family++) {
+			// 同じファミリーのパターンは対称変換で移り合うため、最初のパターンのマスで重みを決める
+			int[] cells = null;
+			for (int p = 0; cells == null; p++) {
+				if (layout.getFamily(p) == family) cells = layout.getCells(p);
+			}
+			double[] cellWeights = new double[cells.length];
+			for (int k = 0; k < cells.length; k++) {
+				int cell = cells[k];
+				cellWeights[k] = (double) PositionalEvaluator.weightOf(cell / size, cell % size, size) / coverage[cell];
+			}
+			short[] table = weights.tables[0][family];
+			for (int index = 0; index < table.length; index++) {
+				double value = 0;
+				for (int k = 0, rest = index; k < cells.length; k++, rest /= 3) {
+					int digit = rest % 3;
+					if (digit == 1) value += cellWeights[k];
+					else if (digit == 2) value -= cellWeights[k];
+				}
+				table[index] = (short) Math.round(value);
+			}
+			for (int phase = 1; phase < PHASES; phase++) weights.tables[phase][family] = table.clone();
+		}
+		for (int phase = 0; phase < PHASES; phase++) weights.mobility[phase] = PositionalEvaluator.MOBILITY;
+		return weights;
+	}
+
+	/**
+	 * 指定ディレクトリにあるボードサイズの重みファイルのパスを返します。
+	 */
+	public static Path fileFor(final Path directory, final int size) {
+		return directory.resolve("weights-" + size + ".bin");
+	}
+
+	/**
+	 * 重みファイルを読み込みます。
+	 *
+	 * @throws IOException ファイルが読めない場合や形式が正しくない場合
+	 */
+	public static PatternWeights load(final Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("not a weights file: " + file);
+			int size = in.readInt();
+			int phases = in.readInt();
+			if (!Board.isValidSize(size) || phases != PHASES) throw new IOException("corrupt weights file: " + file);
+			PatternWeights weights = new PatternWeights(size);
+			for (int phase = 0; phase < PHASES; phase++) {
+				weights.mobility[phase] = in.readInt();
+				for (short[] table : weights.tables[phase]) {
+					for (int index = 0; index < table.length; index++) table[index] = in.readShort();
+				}
+			}
+			if (in.read() != -1) throw new IOException("corrupt weights file: " + file);
+			return weights;
+		} catch (EOFException e) {
+			throw new IOException("truncated weights file: " + file, e);
+		}
+	}
+
+	/**
+	 * 指定ディレクトリからボードサイズの重みを読み込みます。ファイルがない場合や読めない場合は{@link #initial}の値を返します。
+	 */
+	public static PatternWeights loadOrInitial(final Path directory, final int size) {
+		Path file = fileFor(directory, size);
+		if (Files.isRegularFile(file)) {
+			try {
+				PatternWeights weights = load(file);
+				if (weights.size != size) throw new IOException("board size mismatch: " + file);
+				return weights;
+			} catch (IOException e) {
+				System.err.println("評価関数の重みを読めませんでした: " + e.getMessage());
+			}
+		}
+		return initial(size);
+	}
+
+	/**
+	 * 重みをファイルに書き込みます。一時ファイルに書き込んでから置き換えるため、書き込み中に読まれても壊れたファイルは見えません。
+	 */
+	public void save(final Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) Files.createDirectories(parent);
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeInt(PHASES);
+			for (int phase = 0; phase < PHASES; phase++) {
+				out.writeInt(mobility[phase]);
+				for (short[] table : tables[phase]) {
+					for (short value : table) out.writeShort(value);
+				}
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 盤面の進行度の段階を返します。
+	 */
+	public int phaseOf(final Board board) {
+		int stones = board.getStoneCount(Piece.WHITE) + board.getStoneCount(Piece.BLACK);
+		return Math.min(PHASES - 1, (stones - 4) * PHASES / (size * size - 4));
+	}
+
+	/**
+	 * ボードサイズを返します。
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * パターンの配置を返します。
+	 */
+	public PatternLayout getLayout() {
+		return layout;
+	}
+}
@@ -0,0 +1,51 @@
+package engine;
+
+import model.*;
+
+/**
+ * マスごとの重みと着手可能数（モビリティ）による簡易的な評価関数です。
+ * 角を高く、角に隣接するマスを低く評価します。
+ */
+public final class PositionalEvaluator implements Evaluator {
+	/** 角の重み */
+	private static final int CORNER = 100;
+	/** 角の斜め隣（Xマス）の重み */
+	private static final int X_SQUARE = -50;
+	/** 角の縦横隣（Cマス）の重み */
+	private static final int C_SQUARE = -20;
+	/** 辺の重み */
+	private static final int EDGE = 10;
+	/** 内側のマスの重み */
+	private static final int INNER = 1;
+	/** 着手可能数1つあたりの重み */
+	static final int MOBILITY = 5;
+
+	@Override
+	public int evaluate(final Board board, final Piece player) {
+		int size = board.getSize();
+		int score = 0;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				Piece piece = board.getPiece(i, j);
+				if (piece.isEmpty()) continue;
+				int weight = weightOf(i, j, size);
+				score += piece == player ? weight : -weight;
+			}
+		}
+		score += MOBILITY * (board.countValidMoves(player) - board.countValidMoves(player.opposite()));
+		return score;
+	}
+
+	/**
+	 * マス(i, j)の重みを返します。
+	 */
+	static int weightOf(final int i, final int j, final int size) {
+		int di = Math.min(i, size - 1 - i);
+		int dj = Math.min(j, size - 1 - j);
+		if (di == 0 && dj == 0) return CORNER;
+		if (di == 1 && dj == 1) return X_SQUARE;
+		if (di + dj == 1) return C_SQUARE;
+		if (di == 0 || dj == 0) return EDGE;
+		return INNER;
+	}
+}
@@ -0,0 +1,372 @@
+package engine;
+
+import model.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * 2つのエンジンを{@link Board}上で多数対局させるプログラムです。ソケットは使わず、すべて同じプロセス内で対局します。
+ * <p>
+ * 対局は2局ずつの組にし、組の2局は同じランダムな序盤から先後を入れ替えて打ちます。
+ * ワーカースレッドは対局番号を順に取り出して対局し、終わった対局から順に結果と棋譜をファイルに追記します。
+ * <ul>
+ *     <li>{@code <prefix>.txt}: 棋譜（{@link GameRecord}の形式。{@link PatternTrainer}や{@link OpeningBookBuilder}にそのまま渡せる）</li>
+ *     <li>{@code <prefix>.csv}: 1局ごとの結果</li>
+ * </ul>
+ * SPRT（逐次確率比検定）を指定すると、エンジン1がエンジン2に対してelo1以上強い（H1）か、elo0以下である（H0）かが
+ * 決まった時点で残りの対局を打ち切ります。
+ * <pre>
+ * java engine.SelfPlayTournament engine1 engine2 prefix
+ * </pre>
+ * エンジンの指定:
+ * <ul>
+ *     <li>{@code random}: 合法手からランダムに選ぶ（合法手生成の負荷試験用）</li>
+ *     <li>{@code alphabeta}: {@link AlphaBetaSearch}と{@link PositionalEvaluator}</li>
+ *     <li>{@code pattern[:dir]}: {@link AlphaBetaSearch}と{@link PatternEvaluator}（重みは{@code dir}から読む。既定は{@code weights}）</li>
+ *     <li>{@code mcts}: 1スレッドの{@link MctsSearch}</li>
+ * </ul>
+ * 設定はシステムプロパティで変更できます。
+ * <ul>
+ *     <li>{@code othello.selfplay.games}: 対局数（偶数に切り上げる）</li>
+ *     <li>{@code othello.selfplay.size}: ボードサイズ</li>
+ *     <li>{@code othello.selfplay.openingPlies}: ランダムに打つ序盤の手数</li>
+ *     <li>{@code othello.selfplay.moveMillis}: 1手に使ってよい時間（ミリ秒）。{@code mcts}は経過時間、それ以外はCPU時間</li>
+ *     <li>{@code othello.selfplay.threads}: 同時に対局する数（既定はCPUコア数）</li>
+ *     <li>{@code othello.selfplay.seed}: 序盤を決める乱数の種</li>
+ *     <li>{@code othello.selfplay.sprt}: SPRTの仮説（{@code elo0,elo1}、例: {@code 0,10}）。指定しなければ全局打つ</li>
+ *     <li>{@code othello.selfplay.ttMb}: {@code alphabeta}と{@code pattern}が使う置換表の大きさ（MB）。0で使わない。
+ *     表はエンジンごとに確保し、全対局で共有する。評価関数の違う値を読み合わないよう、同じ指定のエンジンどうしだけが同じ表を使う</li>
+ * </ul>
+ */
+public final class SelfPlayTournament {
+	private static final int DEFAULT_GAMES = 1000;
+	private static final int DEFAULT_SIZE = 8;
+	private static final int DEFAULT_OPENING_PLIES = 8;
+	private static final int DEFAULT_MOVE_MILLIS = 10;
+	private static final int DEFAULT_TT_MB = 64;
+	/** SPRTの第1種・第2種の誤り率 */
+	private static final double SPRT_ALPHA = 0.05, SPRT_BETA = 0.05;
+	/** SPRTの分散を見積もるときに勝ちと負けに加える仮の対局数（全勝・全敗でも分散が0にならないようにする） */
+	private static final double SPRT_PSEUDO_GAMES = 0.5;
+	/** {@code mcts}のアリーナのノード数（1スレッドあたり） */
+	private static final int MCTS_CAPACITY = 1 << 18;
+	/** 進捗を表示する間隔（ナノ秒） */
+	private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+	/** 出力ファイルをフラッシュする間隔（ナノ秒） */
+	private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final int size;
+	private final int games;
+	private final int openingPlies;
+	private final long moveBudgetNanos;
+	private final long seed;
+	private final String[] names;
+	private final List<Supplier<Engine>> factories;
+	/** SPRTの仮説（{elo0, elo1}）。使わない場合はnull */
+	private final double[] sprt;
+	/** エンジンごとに全対局で共有する置換表（使わないエンジンはnull。同じ指定のエンジンどうしは同じ表） */
+	private final TranspositionTable[] tables;
+
+	/** 次に打つ対局の番号 */
+	private final AtomicInteger nextGame = new AtomicInteger();
+	/** SPRTで結論が出たなどの理由で打ち切る場合true */
+	private volatile boolean stopped;
+
+	// 以下はrecordで更新する（thisで同期）
+	private final PrintWriter records;
+	private final PrintWriter results;
+	/** エンジン1から見た勝ち・引き分け・負けの数 */
+	private int wins, draws, losses;
+	private long totalPlies;
+	private long lastFlush = System.nanoTime();
+	private long lastProgress = System.nanoTime();
+	private final long start = System.nanoTime();
+	/** SPRTの結論（未決定ならnull） */
+	private String verdict;
+
+	private SelfPlayTournament(final String[] specs, final int size, final int games, final int openingPlies, final long moveBudgetNanos,
+							   final long seed, final double[] sprt, final int tableMegabytes, final PrintWriter records, final PrintWriter results) {
+		this.size = size;
+		this.games = games;
+		this.openingPlies = openingPlies;
+		this.moveBudgetNanos = moveBudgetNanos;
+		this.seed = seed;
+		this.sprt = sprt;
+		this.names = specs.clone();
+		this.tables = new TranspositionTable[2];
+		for (int k = 0; k < 2; k++) {
+			if (tableMegabytes <= 0 || !usesTable(specs[k])) continue;
+			tables[k] = k == 1 && specs[1].equals(specs[0]) ? tables[0] : new TranspositionTable(tableMegabytes, false);
+		}
+		this.factories = Arrays.asList(engineFactory(specs[0], size, tables[0]), engineFactory(specs[1], size, tables[1]));
+		this.records = records;
+		this.results = results;
+	}
+
+	/**
+	 * 1手を選ぶエンジンです。インスタンスは1つのワーカースレッドだけが使用します。
+	 */
+	private interface Engine {
+		/**
+		 * @return 着手する座標（i * size + j）
+		 */
+		int bestMove(Board board, Piece player, long budgetNanos);
+	}
+
+	/**
+	 * エンジンの指定が置換表を使う探索かを返します。
+	 */
+	private static boolean usesTable(final String spec) {
+		String kind = spec.split(":", 2)[0];
+		return kind.equals("alphabeta") || kind.equals("pattern");
+	}
+
+	/**
+	 * エンジンの指定から、ワーカースレッドごとのエンジンを作成する関数を返します。
+	 *
+	 * @throws IllegalArgumentException 不明な指定の場合
+	 */
+	private static Supplier<Engine> engineFactory(final String spec, final int size, final TranspositionTable table) {
+		String[] parts = spec.split(":", 2);
+		switch (parts[0]) {
+			case "random":
+				return () -> (board, player, budgetNanos) -> {
+					List<Integer> moves = board.getValidMoveCells(player);
+					return moves.get(ThreadLocalRandom.current().nextInt(moves.size()));
+				};
+			case "alphabeta": {
+				Evaluator evaluator = new PositionalEvaluator();
+				return () -> (board, player, budgetNanos) -> new AlphaBetaSearch(evaluator, Deadline.cpuTime(budgetNanos), table).bestMove(board, player);
+			}
+			case "pattern": {
+				Path dir = Paths.get(parts.length > 1 ? parts[1] : "weights");
+				Evaluator evaluator = new PatternEvaluator(PatternWeights.loadOrInitial(dir, size));
+				return () -> (board, player, budgetNanos) -> new AlphaBetaSearch(evaluator, Deadline.cpuTime(budgetNanos), table).bestMove(board, player);
+			}
+			case "mcts":
+				return () -> {
+					MctsSearch search = new MctsSearch(1, MCTS_CAPACITY);
+					return (board, player, budgetNanos) -> search.bestMove(board, player, Deadline.wallClock(budgetNanos));
+				};
+			default:
+				throw new IllegalArgumentException("unknown engine: " + spec);
+		}
+	}
+
+	/**
+	 * ワーカースレッドを起動し、すべての対局が終わるか打ち切られるまで待ちます。
+	 */
+	private void run(final int threads) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		for (int k = 0; k < threads; k++) {
+			workers[k] = new Thread(this::work, "selfplay-" + (k + 1));
+			workers[k].setDaemon(true);
+			workers[k].start();
+		}
+		for (Thread worker : workers) worker.join();
+		synchronized (this) {
+			printProgress(System.nanoTime());
+			records.flush();
+			results.flush();
+		}
+	}
+
+	/**
+	 * ワーカースレッドの処理です。エンジンはスレッドごとに作成します。
+	 */
+	private void work() {
+		Engine[] engines = {factories.get(0).get(), factories.get(1).get()};
+		int game;
+		while (!stopped && (game = nextGame.getAndIncrement()) < games) {
+			// 置換表の世代は、同時に打っている対局数に応じて表が進める
+			if (tables[0] != null) tables[0].beginGame();
+			if (tables[1] != null && tables[1] != tables[0]) tables[1].beginGame();
+			try {
+				playGame(game, engines);
+			} catch (RuntimeException e) {
+				// エンジンや合法手生成の不具合は、残りの対局を続けずに知らせる
+				System.err.println("対局" + game + "でエラーが発生したため打ち切ります: " + e);
+				e.printStackTrace();
+				stopped = true;
+			} finally {
+				if (tables[0] != null) tables[0].endGame();
+				if (tables[1] != null && tables[1] != tables[0]) tables[1].endGame();
+			}
+		}
+	}
+
+	/**
+	 * 1局を打ちます。対局番号が偶数ならエンジン1が白（先手）、奇数ならエンジン2が白です。
+	 */
+	private void playGame(final int game, final Engine[] engines) {
+		int pair = game / 2;
+		int white = game % 2;
+		Board board = new Board(size);
+		Piece turn = Piece.WHITE;
+		StringBuilder moves = new StringBuilder().append(size);
+		int plies = 0;
+		long begin = System.nanoTime();
+
+		// 組ごとに同じ序盤を打つ
+		Random random = new Random(seed * 31 + pair);
+		while (true) {
+			if (board.countValidMoves(turn) == 0) {
+				turn = turn.opposite();
+				if (board.countValidMoves(turn) == 0) break;
+			}
+			int move;
+			if (plies < openingPlies) {
+				List<Integer> candidates = board.getValidMoveCells(turn);
+				Collections.sort(candidates);
+				move = candidates.get(random.nextInt(candidates.size()));
+			} else {
+				Engine engine = engines[turn.isWhite() ? white : 1 - white];
+				move = engine.bestMove(board, turn, moveBudgetNanos);
+				if (move < 0 || !board.isValidMove(turn, move / size, move % size)) {
+					throw new IllegalStateException(names[turn.isWhite() ? white : 1 - white] + " played an illegal move: " + move);
+				}
+			}
+			board.applyMove(turn, move / size, move % size);
+			moves.append(' ').append(move / size).append(',').append(move % size);
+			plies++;
+			turn = turn.opposite();
+		}
+		record(game, white, board.getStoneCount(Piece.WHITE), board.getStoneCount(Piece.BLACK), plies, moves, System.nanoTime() - begin);
+	}
+
+	/**
+	 * 終わった対局の結果を集計してファイルに追記し、SPRTの判定を行います。
+	 */
+	private synchronized void record(final int game, final int white, final int whiteStones, final int blackStones, final int plies,
+									 final CharSequence moves, final long elapsedNanos) {
+		if (verdict != null) return;
+		// エンジン1から見た石差
+		int diff = white == 0 ? whiteStones - blackStones : blackStones - whiteStones;
+		if (diff > 0) wins++;
+		else if (diff < 0) losses++;
+		else draws++;
+		totalPlies += plies;
+		records.println(moves);
+		results.printf("%d,%d,%s,%s,%d,%d,%d,%d%n", game, game / 2, names[white], names[1 - white], whiteStones, blackStones, plies,
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+
+		if (sprt != null) {
+			double llr = logLikelihoodRatio(wins, draws, losses, sprt[0], sprt[1]);
+			if (llr >= Math.log((1 - SPRT_BETA) / SPRT_ALPHA)) verdict = "H1を採択（" + names[0] + "はelo" + sprt[1] + "以上強い）";
+			else if (llr <= Math.log(SPRT_BETA / (1 - SPRT_ALPHA))) verdict = "H0を採択（" + names[0] + "との差はelo" + sprt[0] + "以下）";
+			if (verdict != null) stopped = true;
+		}
+		long now = System.nanoTime();
+		if (now - lastFlush >= FLUSH_INTERVAL_NANOS) {
+			records.flush();
+			results.flush();
+			lastFlush = now;
+		}
+		if (now - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+			printProgress(now);
+			lastProgress = now;
+		}
+	}
+
+	private void printProgress(final long now) {
+		int played = wins + draws + losses;
+		if (played == 0) return;
+		double seconds = (now - start) / 1e9;
+		double score = (wins + draws / 2.0) / played;
+		double deviation = Math.sqrt(variance(wins, draws, losses) / played);
+		StringBuilder line = new StringBuilder();
+		line.append(String.format("%d/%d局 %.1f局/秒 %.0f手/秒 %s: +%d =%d -%d elo %+.1f ±%.1f", played, games, played / seconds,
+				totalPlies / seconds, names[0], wins, draws, losses, elo(score), elo(score + 1.96 * deviation) - elo(score)));
+		if (sprt != null) {
+			line.append(String.format(" LLR %.2f [%.2f, %.2f]", logLikelihoodRatio(wins, draws, losses, sprt[0], sprt[1]),
+					Math.log(SPRT_BETA / (1 - SPRT_ALPHA)), Math.log((1 - SPRT_BETA) / SPRT_ALPHA)));
+		}
+		if (verdict != null) line.append(' ').append(verdict);
+		System.out.println(line);
+		if (tables[0] != null) System.out.println("  " + names[0] + ": " + tables[0].describeStats());
+		if (tables[1] != null && tables[1] != tables[0]) System.out.println("  " + names[1] + ": " + tables[1].describeStats());
+	}
+
+	/**
+	 * 期待得点をelo差に変換します。
+	 */
+	static double elo(final double score) {
+		double clamped = Math.max(1e-6, Math.min(1 - 1e-6, score));
+		return -400 * Math.log10(1 / clamped - 1);
+	}
+
+	/**
+	 * elo差を期待得点に変換します。
+	 */
+	static double expectedScore(final double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	/**
+	 * 1局あたりの得点（勝ち1、引き分け0.5、負け0）の分散を返します。
+	 */
+	private static double variance(final double wins, final double draws, final double losses) {
+		double n = wins + draws + losses;
+		double score = (wins + draws / 2.0) / n;
+		return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / n;
+	}
+
+	/**
+	 * 勝ち・引き分け・負けの数から、H1（elo差がelo1）とH0（elo差がelo0）の対数尤度比を正規近似で求めます。
+	 * 分散は勝ちと負けに{@link #SPRT_PSEUDO_GAMES}局ずつ加えて見積もるため、全勝や全敗の一方的な対戦でも判定できます。
+	 */
+	static double logLikelihoodRatio(final int wins, final int draws, final int losses, final double elo0, final double elo1) {
+		int n = wins + draws + losses;
+		if (n == 0) return 0;
+		double score = (wins + draws / 2.0) / n;
+		double s0 = expectedScore(elo0), s1 = expectedScore(elo1);
+		double variance = variance(wins + SPRT_PSEUDO_GAMES, draws, losses + SPRT_PSEUDO_GAMES);
+		return n * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length < 3) {
+			System.err.println("usage: java engine.SelfPlayTournament <engine1> <engine2> <outputPrefix>");
+			System.err.println("engines: random, alphabeta, pattern[:weightsDir], mcts");
+			System.exit(1);
+		}
+		int size = Integer.getInteger("othello.selfplay.size", DEFAULT_SIZE);
+		if (!Board.isValidSize(size)) {
+			System.err.println("invalid board size: " + size);
+			System.exit(1);
+		}
+		int games = Integer.getInteger("othello.selfplay.games", DEFAULT_GAMES);
+		games += games % 2;
+		int openingPlies = Integer.getInteger("othello.selfplay.openingPlies", DEFAULT_OPENING_PLIES);
+		long moveBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("othello.selfplay.moveMillis", DEFAULT_MOVE_MILLIS));
+		int threads = Integer.getInteger("othello.selfplay.threads", Runtime.getRuntime().availableProcessors());
+		long seed = Long.getLong("othello.selfplay.seed", System.currentTimeMillis());
+		int tableMegabytes = Integer.getInteger("othello.selfplay.ttMb", DEFAULT_TT_MB);
+		double[] sprt = null;
+		String sprtSpec = System.getProperty("othello.selfplay.sprt");
+		if (sprtSpec != null) {
+			String[] bounds = sprtSpec.split(",");
+			sprt = new double[]{Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1])};
+		}
+
+		Path prefix = Paths.get(args[2]).toAbsolutePath();
+		if (prefix.getParent() != null) Files.createDirectories(prefix.getParent());
+		try (PrintWriter records = new PrintWriter(Files.newBufferedWriter(prefix.resolveSibling(prefix.getFileName() + ".txt"), StandardCharsets.UTF_8));
+			 PrintWriter results = new PrintWriter(Files.newBufferedWriter(prefix.resolveSibling(prefix.getFileName() + ".csv"), StandardCharsets.UTF_8))) {
+			String config = String.format("%s vs %s size=%d games=%d openingPlies=%d moveMillis=%d threads=%d seed=%d", args[0], args[1], size, games,
+					openingPlies, TimeUnit.NANOSECONDS.toMillis(moveBudgetNanos), threads, seed);
+			records.println("# " + config);
+			results.println("game,pair,white,black,whiteStones,blackStones,plies,millis");
+			System.out.println("対局を開始します: " + config);
+			SelfPlayTournament tournament = new SelfPlayTournament(new String[]{args[0], args[1]}, size, games, openingPlies, moveBudgetNanos,
+					seed, sprt, tableMegabytes, records, results);
+			tournament.run(threads);
+		}
+	}
+}
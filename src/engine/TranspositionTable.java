@@ -0,0 +1,259 @@
+package engine;
+
+import java.nio.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * 複数の探索スレッド・複数の対局で共有する置換表です。
+ * <p>
+ * 作成時に確保した{@code long}の配列（ヒープ上またはヒープ外）だけを使い、探索中にオブジェクトを生成しません。
+ * 1エントリは2つの{@code long}（キーとデータのXOR、データ）で、4エントリ（64バイト）を1つのバケットとします。
+ * ロックは使わず、読み出し時に{@code キー ^ データ}が探しているハッシュ値と一致するかで検証するため、
+ * 別のスレッドの書き込みと重なって壊れたエントリは単に見つからないものとして扱われます。
+ * <p>
+ * バケットが埋まっている場合は、古い世代のエントリを優先し、同じ世代なら最も浅い深さのエントリを置き換えます。
+ * 世代は{@link #newSearch()}で進めます。表の持ち主が対局の開始ごとなどの区切りで呼び出してください。
+ * 探索の開始ごとに進めると、表を共有している他の対局のエントリまで古い世代として追い出されやすくなります。
+ * 複数の対局が同時に表を使う場合は、{@link #beginGame()}と{@link #endGame()}で対局の開始と終了を知らせると、
+ * 世代はおよそ1局の長さに1つだけ進みます。
+ * <p>
+ * データのビット配置: 評価値（0〜31）、手+1（32〜47）、深さ（48〜55）、値の種類（56〜57）、世代（58〜63）
+ */
+public final class TranspositionTable {
+	/** 値の種類: 正確な値 */
+	public static final int EXACT = 1;
+	/** 値の種類: 下限（βカットした値） */
+	public static final int LOWER = 2;
+	/** 値の種類: 上限（どの手もαを超えなかった値） */
+	public static final int UPPER = 3;
+	/** 見つからなかった場合の{@link #probe}の戻り値 */
+	public static final long MISS = 0;
+
+	/** 1バケットのエントリ数 */
+	private static final int BUCKET_ENTRIES = 4;
+	/** 1エントリの{@code long}の数 */
+	private static final int ENTRY_LONGS = 2;
+	/** 1エントリの大きさ（バイト） */
+	private static final int ENTRY_BYTES = ENTRY_LONGS * 8;
+	/** 世代のビット数 */
+	private static final int AGE_BITS = 6;
+	private static final int AGE_MASK = (1 << AGE_BITS) - 1;
+	/** 置き換え先を選ぶときに、世代1つの古さを何手分の深さとみなすか */
+	private static final int AGE_WEIGHT = 4;
+	/** 使用率を見積もるときに調べるバケット数 */
+	private static final int SAMPLE_BUCKETS = 1000;
+
+	/** エントリの配列 */
+	private final LongBuffer slots;
+	/** バケット数-1（バケット数は2のべき乗） */
+	private final int bucketMask;
+	private final boolean offHeap;
+	/** 現在の世代 */
+	private volatile int age;
+	/** 表を使っている対局の数（{@link #beginGame()}から{@link #endGame()}まで） */
+	private final AtomicInteger activeGames = new AtomicInteger();
+	/** 前回世代を進めてから始まった対局の数 */
+	private final AtomicInteger startsSinceAdvance = new AtomicInteger();
+
+	// 統計（スレッド間で共有するためLongAdderで数える）
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	/** 現在の世代の別の局面を上書きした回数 */
+	private final LongAdder overwrites = new LongAdder();
+	/** 書き込み直後に別のスレッドに上書きされていた回数 */
+	private final LongAdder races = new LongAdder();
+
+	/**
+	 * @param megabytes 大きさ（MB）。バケット数が2のべき乗になるよう切り下げる
+	 * @param offHeap   trueの場合はヒープ外（ダイレクトバッファ）に確保する
+	 * @throws IllegalArgumentException 大きさが1MB未満の場合や、ヒープ外に2GB以上を確保しようとした場合
+	 */
+	public TranspositionTable(final int megabytes, final boolean offHeap) {
+		if (megabytes < 1) throw new IllegalArgumentException("megabytes must be >= 1");
+		long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / (ENTRY_BYTES * BUCKET_ENTRIES));
+		long longs = buckets * BUCKET_ENTRIES * ENTRY_LONGS;
+		long bytes = longs * 8;
+		if (longs > Integer.MAX_VALUE) throw new IllegalArgumentException("table too large: " + megabytes + "MB");
+		// ダイレクトバッファの大きさはintのバイト数で指定するため、ヒープ外は2GB未満に限る
+		if (offHeap && bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("off-heap table too large: " + megabytes + "MB");
+		this.bucketMask = (int) buckets - 1;
+		this.offHeap = offHeap;
+		this.slots = offHeap
+				? ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asLongBuffer()
+				: LongBuffer.wrap(new long[(int) longs]);
+	}
+
+	/**
+	 * 世代を進めます。以前の世代のエントリは置き換えの対象になりやすくなります。
+	 */
+	public void newSearch() {
+		age = (age + 1) & AGE_MASK;
+	}
+
+	/**
+	 * 表を使う対局の開始を知らせます。対局が終わったら{@link #endGame()}を呼び出してください。
+	 * <p>
+	 * 世代は、同時に進行中の対局数と同じ数の対局が始まるたびに1つ進めます。
+	 * N局が同時に表を使っているときに対局の開始ごとに進めると、進行中の対局のエントリが1局の間に約N世代古くなって
+	 * 追い出され、64局で世代が一周して古いエントリが現在の世代に見えてしまうためです。
+	 */
+	public void beginGame() {
+		int active = activeGames.incrementAndGet();
+		int starts = startsSinceAdvance.incrementAndGet();
+		if (starts >= active && startsSinceAdvance.compareAndSet(starts, 0)) newSearch();
+	}
+
+	/**
+	 * {@link #beginGame()}で知らせた対局の終了を知らせます。
+	 */
+	public void endGame() {
+		activeGames.decrementAndGet();
+	}
+
+	/**
+	 * 局面のエントリを探します。
+	 *
+	 * @param hash 手番を含めた局面のハッシュ値
+	 * @return エントリのデータ。見つからなければ{@link #MISS}
+	 */
+	public long probe(final long hash) {
+		probes.increment();
+		int base = bucketOf(hash);
+		for (int k = 0; k < BUCKET_ENTRIES; k++) {
+			int slot = base + k * ENTRY_LONGS;
+			long data = slots.get(slot + 1);
+			if ((slots.get(slot) ^ data) == hash && data != MISS) {
+				hits.increment();
+				return data;
+			}
+		}
+		return MISS;
+	}
+
+	/**
+	 * 局面の探索結果を書き込みます。
+	 *
+	 * @param hash  手番を含めた局面のハッシュ値
+	 * @param move  最善手（i * size + j）。ない場合は-1
+	 * @param score 評価値
+	 * @param depth 探索した深さ（0〜255）
+	 * @param bound 値の種類（{@link #EXACT}、{@link #LOWER}、{@link #UPPER}）
+	 */
+	public void store(final long hash, final int move, final int score, final int depth, final int bound) {
+		stores.increment();
+		int base = bucketOf(hash);
+		int current = age;
+		int victim = base;
+		int victimPriority = Integer.MAX_VALUE;
+		for (int k = 0; k < BUCKET_ENTRIES; k++) {
+			int slot = base + k * ENTRY_LONGS;
+			long data = slots.get(slot + 1);
+			if (data == MISS) {
+				victim = slot;
+				victimPriority = Integer.MIN_VALUE;
+				break;
+			}
+			if ((slots.get(slot) ^ data) == hash) {
+				// 同じ局面は、より浅い探索で正確な値を失わないようにする
+				if (depth < depth(data) && bound != EXACT && age(data) == current) return;
+				// 手がなければ以前の手を引き継ぐ
+				int kept = move >= 0 ? move : move(data);
+				write(slot, hash, pack(kept, score, depth, bound, current));
+				return;
+			}
+			int distance = (current - age(data)) & AGE_MASK;
+			int priority = depth(data) - AGE_WEIGHT * distance;
+			if (priority < victimPriority) {
+				victimPriority = priority;
+				victim = slot;
+			}
+		}
+		if (victimPriority != Integer.MIN_VALUE && age(slots.get(victim + 1)) == current) overwrites.increment();
+		write(victim, hash, pack(move, score, depth, bound, current));
+	}
+
+	private void write(final int slot, final long hash, final long data) {
+		slots.put(slot, hash ^ data);
+		slots.put(slot + 1, data);
+		// 書き込み直後に読み直し、別のスレッドの書き込みと重なったかを数える
+		if ((slots.get(slot) ^ slots.get(slot + 1)) != hash) races.increment();
+	}
+
+	private int bucketOf(final long hash) {
+		// 下位ビットはZobristの性質上偏らないが、念のため上位ビットを混ぜる
+		return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_ENTRIES * ENTRY_LONGS;
+	}
+
+	private static long pack(final int move, final int score, final int depth, final int bound, final int age) {
+		return (score & 0xFFFFFFFFL)
+				| ((long) ((move + 1) & 0xFFFF) << 32)
+				| ((long) Math.min(depth, 0xFF) << 48)
+				| ((long) bound << 56)
+				| ((long) age << 58);
+	}
+
+	/**
+	 * エントリのデータから評価値を取り出します。
+	 */
+	public static int score(final long data) {
+		return (int) data;
+	}
+
+	/**
+	 * エントリのデータから最善手（i * size + j、ない場合は-1）を取り出します。
+	 */
+	public static int move(final long data) {
+		return (int) ((data >>> 32) & 0xFFFF) - 1;
+	}
+
+	/**
+	 * エントリのデータから探索した深さを取り出します。
+	 */
+	public static int depth(final long data) {
+		return (int) ((data >>> 48) & 0xFF);
+	}
+
+	/**
+	 * エントリのデータから値の種類を取り出します。
+	 */
+	public static int bound(final long data) {
+		return (int) ((data >>> 56) & 0x3);
+	}
+
+	private static int age(final long data) {
+		return (int) (data >>> 58) & AGE_MASK;
+	}
+
+	/**
+	 * 大きさ（バイト）を返します。
+	 */
+	public long getBytes() {
+		return (long) slots.capacity() * 8;
+	}
+
+	/**
+	 * 先頭のバケットを調べて、現在の世代のエントリの割合を見積もります。
+	 */
+	public double getUsage() {
+		int buckets = Math.min(SAMPLE_BUCKETS, bucketMask + 1);
+		int used = 0, current = age;
+		for (int b = 0; b < buckets; b++) {
+			for (int k = 0; k < BUCKET_ENTRIES; k++) {
+				long data = slots.get((b * BUCKET_ENTRIES + k) * ENTRY_LONGS + 1);
+				if (data != MISS && age(data) == current) used++;
+			}
+		}
+		return (double) used / (buckets * BUCKET_ENTRIES);
+	}
+
+	/**
+	 * 統計を1行の文字列で返します。
+	 */
+	public String describeStats() {
+		long probeCount = probes.sum(), storeCount = stores.sum();
+		return String.format("置換表 %dMB%s 使用率%.0f%% 参照%d ヒット率%.1f%% 書き込み%d 上書き%d 競合%d",
+				getBytes() >> 20, offHeap ? "(ヒープ外)" : "", getUsage() * 100, probeCount,
+				probeCount == 0 ? 0.0 : hits.sum() * 100.0 / probeCount, storeCount, overwrites.sum(), races.sum());
+	}
+}
@@ -0,0 +1,414 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 色ごとの石の配置を、複数の{@code long}に詰めたビット集合で扱うための補助クラスです。
+ * <p>
+ * マス{@code (i, j)}はビット番号{@code i * size + j}に対応し、{@code size * size}ビットを{@code ceil(size * size / 64)}語で表します。
+ * 合法手は8方向それぞれについて、自分の石をずらしながら相手の石の連なりを伸ばしていく方法（ビット並列の塗りつぶし）で求めるため、
+ * 1回の生成にかかる手間は語数×ボードサイズ×8方向で抑えられ、空きマスごとに盤面を走査する必要がありません。
+ * 連なりが伸びなくなった時点でその方向の処理を打ち切るため、実際の盤面ではほとんどの方向が数回のずらしで終わります。
+ * <p>
+ * 合法手の生成は語数に応じて次の実装から実行時に選びます。
+ * <ul>
+ *     <li>1語（6x6、8x8）: 1つの{@code long}で処理する</li>
+ *     <li>2〜4語（10x10〜16x16）: 4語を256ビットのレジスタのように局所変数に並べ、語をまたぐずらしを展開して処理する</li>
+ *     <li>5語以上: 語数に依存しない配列ベースの実装（汎用の実装）</li>
+ * </ul>
+ * システムプロパティ{@code othello.board.kernel}に{@code generic}を指定すると、すべてのサイズで汎用の実装を使います。
+ * 各実装の速度は{@link MoveGenBenchmark}で比較できます。
+ * <p>
+ * ずらし量と列の折り返しを防ぐマスクはボードサイズごとに1つを共有します。インスタンスは不変です。
+ * <p>
+ * {@link Board}を介さずに語の配列のまま局面を進めたい探索（モンテカルロ木探索のプレイアウトなど）のために、
+ * 合法手の生成と着手は公開しています。作業用の配列を渡せば、どちらもオブジェクトを生成しません。
+ */
+public final class BitBoard {
+	/** 探索する8方向（行の差、列の差） */
+	private static final int[][] DIRECTIONS = {
+			{-1, -1}, {1, 1},   // 左上, 右下
+			{-1, 1}, {1, -1},   // 右上, 左下
+			{0, -1}, {0, 1},    // 左, 右
+			{-1, 0}, {1, 0}     // 上, 下
+	};
+
+	/** 4語を並べて処理する実装で扱える最大の語数 */
+	private static final int LANES = 4;
+	/** システムプロパティで指定された、既定の合法手の生成方法 */
+	private static final Kernel DEFAULT_KERNEL = "generic".equals(System.getProperty("othello.board.kernel")) ? Kernel.GENERIC : Kernel.AUTO;
+
+	private static final Map<Integer, BitBoard> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * 合法手の生成方法です。
+	 */
+	enum Kernel {
+		/** 語数に応じて選ぶ */
+		AUTO,
+		/** 1つの{@code long}で処理する（1語の盤面のみ） */
+		SINGLE,
+		/** 4語を局所変数に並べて処理する（4語以下の盤面のみ） */
+		LANES,
+		/** 配列ベースの汎用の実装 */
+		GENERIC
+	}
+
+	private final int size;
+	/** 語数 */
+	private final int words;
+	/** 盤内のマスのマスク */
+	private final long[] full;
+	/** 方向ごとのビット番号の差（正ならビット番号が増える方向） */
+	private final int[] shifts;
+	/** 方向ごとの、ずらした後に残してよいマスのマスク（ずらす前のマスが盤内で、列をまたいでいないマス） */
+	private final long[][] masks;
+	/** {@link #masks}を方向ごとに{@link #LANES}語へ0で埋めて並べたもの */
+	private final long[] laneMasks;
+	/** {@link #full}を{@link #LANES}語へ0で埋めたもの */
+	private final long[] laneFull;
+	/** 実際に使う合法手の生成方法（{@link Kernel#AUTO}以外） */
+	private final Kernel kernel;
+
+	/**
+	 * @param size   ボードサイズ
+	 * @param kernel 合法手の生成方法。盤面の語数で使えない方法の場合は汎用の実装を使う
+	 */
+	BitBoard(final int size, final Kernel kernel) {
+		this.size = size;
+		this.words = wordsFor(size);
+		this.full = new long[words];
+		for (int cell = 0; cell < size * size; cell++) full[cell >>> 6] |= 1L << cell;
+		this.shifts = new int[DIRECTIONS.length];
+		this.masks = new long[DIRECTIONS.length][words];
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int di = DIRECTIONS[d][0], dj = DIRECTIONS[d][1];
+			shifts[d] = di * size + dj;
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					int fromI = i - di, fromJ = j - dj;
+					if (0 <= fromI && fromI < size && 0 <= fromJ && fromJ < size) masks[d][(i * size + j) >>> 6] |= 1L << (i * size + j);
+				}
+			}
+		}
+		this.laneMasks = new long[DIRECTIONS.length * LANES];
+		this.laneFull = new long[LANES];
+		if (words <= LANES) {
+			for (int d = 0; d < DIRECTIONS.length; d++) System.arraycopy(masks[d], 0, laneMasks, d * LANES, words);
+			System.arraycopy(full, 0, laneFull, 0, words);
+		}
+		this.kernel = selectKernel(kernel, words);
+	}
+
+	private static Kernel selectKernel(final Kernel requested, final int words) {
+		switch (requested) {
+			case AUTO:
+				if (words == 1) return Kernel.SINGLE;
+				return words <= LANES ? Kernel.LANES : Kernel.GENERIC;
+			case SINGLE:
+				return words == 1 ? Kernel.SINGLE : Kernel.GENERIC;
+			case LANES:
+				return words <= LANES ? Kernel.LANES : Kernel.GENERIC;
+			default:
+				return Kernel.GENERIC;
+		}
+	}
+
+	/**
+	 * 指定されたボードサイズの補助クラスを返します。
+	 */
+	public static BitBoard of(final int size) {
+		return CACHE.computeIfAbsent(size, k -> new BitBoard(k, DEFAULT_KERNEL));
+	}
+
+	/**
+	 * ボードサイズの盤面を表すのに必要な語数を返します。
+	 */
+	static int wordsFor(final int size) {
+		return (size * size + 63) >>> 6;
+	}
+
+	/**
+	 * 語数を返します。
+	 */
+	public int getWords() {
+		return words;
+	}
+
+	/**
+	 * 実際に使う合法手の生成方法を返します。
+	 */
+	Kernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * ビット集合にマスが含まれるかを返します。
+	 */
+	static boolean contains(final long[] bits, final int cell) {
+		return (bits[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * ビット集合のマスを反転します。
+	 */
+	public static void toggle(final long[] bits, final int cell) {
+		bits[cell >>> 6] ^= 1L << cell;
+	}
+
+	/**
+	 * 合法手を求めます。
+	 *
+	 * @param own      手番のプレイヤーの石
+	 * @param opponent 相手の石
+	 * @param moves    合法手の書き込み先
+	 * @return 合法手の数
+	 */
+	public int generateMoves(final long[] own, final long[] opponent, final long[] moves) {
+		return generateMoves(own, opponent, moves, null);
+	}
+
+	/**
+	 * 作業用の配列を使って合法手を求めます。汎用の実装でも配列を確保しません。
+	 *
+	 * @param own      手番のプレイヤーの石
+	 * @param opponent 相手の石
+	 * @param moves    合法手の書き込み先
+	 * @param work     汎用の実装が使う作業用配列（語数の2倍以上の長さ）。nullの場合は必要なときに確保する
+	 * @return 合法手の数
+	 */
+	public int generateMoves(final long[] own, final long[] opponent, final long[] moves, final long[] work) {
+		switch (kernel) {
+			case SINGLE:
+				return generateMovesSingle(own[0], opponent[0], moves);
+			case LANES:
+				return generateMovesLanes(own, opponent, moves);
+			default:
+				return generateMovesGeneric(own, opponent, moves, work != null ? work : new long[words * 2]);
+		}
+	}
+
+	/**
+	 * 1語の盤面の合法手を求めます。
+	 */
+	private int generateMovesSingle(final long own, final long opponent, final long[] moves) {
+		long empty = ~(own | opponent) & full[0];
+		long result = 0;
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int amount = shifts[d];
+			long mask = masks[d][0];
+			// ずらした先として残してよい相手の石
+			long inner = opponent & mask;
+			long run, grown;
+			if (amount > 0) {
+				run = (own << amount) & inner;
+				if (run == 0) continue;
+				while ((grown = run | ((run << amount) & inner)) != run) run = grown;
+				result |= (run << amount) & mask & empty;
+			} else {
+				int back = -amount;
+				run = (own >>> back) & inner;
+				if (run == 0) continue;
+				while ((grown = run | ((run >>> back) & inner)) != run) run = grown;
+				result |= (run >>> back) & mask & empty;
+			}
+		}
+		moves[0] = result;
+		return Long.bitCount(result);
+	}
+
+	/**
+	 * 4語以下の盤面の合法手を求めます。
+	 * <p>
+	 * 4語を局所変数に置き、語をまたぐずらしを語ごとに展開して書くことで、配列の読み書きとループを避けます。
+	 * 4語に満たない盤面は上位の語を0として扱います（マスクも0のため、盤外に石が現れることはありません）。
+	 * ずらし量は最大でもボードサイズ+1（64未満）なので、隣の語からだけ桁が送られます。
+	 */
+	private int generateMovesLanes(final long[] own, final long[] opponent, final long[] moves) {
+		long o0 = own[0], o1 = words > 1 ? own[1] : 0, o2 = words > 2 ? own[2] : 0, o3 = words > 3 ? own[3] : 0;
+		long p0 = opponent[0], p1 = words > 1 ? opponent[1] : 0, p2 = words > 2 ? opponent[2] : 0, p3 = words > 3 ? opponent[3] : 0;
+		long e0 = ~(o0 | p0) & laneFull[0], e1 = ~(o1 | p1) & laneFull[1], e2 = ~(o2 | p2) & laneFull[2], e3 = ~(o3 | p3) & laneFull[3];
+		long x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int base = d * LANES;
+			long m0 = laneMasks[base], m1 = laneMasks[base + 1], m2 = laneMasks[base + 2], m3 = laneMasks[base + 3];
+			long i0 = p0 & m0, i1 = p1 & m1, i2 = p2 & m2, i3 = p3 & m3;
+			int amount = shifts[d];
+			long r0, r1, r2, r3;
+			if (amount > 0) {
+				// ビット番号が増える方向: 下位の語から上位の語へ桁を送る
+				int k = amount, c = 64 - amount;
+				r0 = (o0 << k) & i0;
+				r1 = ((o1 << k) | (o0 >>> c)) & i1;
+				r2 = ((o2 << k) | (o1 >>> c)) & i2;
+				r3 = ((o3 << k) | (o2 >>> c)) & i3;
+				if ((r0 | r1 | r2 | r3) == 0) continue;
+				while (true) {
+					long g0 = r0 | ((r0 << k) & i0);
+					long g1 = r1 | (((r1 << k) | (r0 >>> c)) & i1);
+					long g2 = r2 | (((r2 << k) | (r1 >>> c)) & i2);
+					long g3 = r3 | (((r3 << k) | (r2 >>> c)) & i3);
+					if (g0 == r0 && g1 == r1 && g2 == r2 && g3 == r3) break;
+					r0 = g0;
+					r1 = g1;
+					r2 = g2;
+					r3 = g3;
+				}
+				x0 |= (r0 << k) & m0 & e0;
+				x1 |= ((r1 << k) | (r0 >>> c)) & m1 & e1;
+				x2 |= ((r2 << k) | (r1 >>> c)) & m2 & e2;
+				x3 |= ((r3 << k) | (r2 >>> c)) & m3 & e3;
+			} else {
+				// ビット番号が減る方向: 上位の語から下位の語へ桁を送る
+				int k = -amount, c = 64 + amount;
+				r0 = ((o0 >>> k) | (o1 << c)) & i0;
+				r1 = ((o1 >>> k) | (o2 << c)) & i1;
+				r2 = ((o2 >>> k) | (o3 << c)) & i2;
+				r3 = (o3 >>> k) & i3;
+				if ((r0 | r1 | r2 | r3) == 0) continue;
+				while (true) {
+					long g0 = r0 | (((r0 >>> k) | (r1 << c)) & i0);
+					long g1 = r1 | (((r1 >>> k) | (r2 << c)) & i1);
+					long g2 = r2 | (((r2 >>> k) | (r3 << c)) & i2);
+					long g3 = r3 | ((r3 >>> k) & i3);
+					if (g0 == r0 && g1 == r1 && g2 == r2 && g3 == r3) break;
+					r0 = g0;
+					r1 = g1;
+					r2 = g2;
+					r3 = g3;
+				}
+				x0 |= ((r0 >>> k) | (r1 << c)) & m0 & e0;
+				x1 |= ((r1 >>> k) | (r2 << c)) & m1 & e1;
+				x2 |= ((r2 >>> k) | (r3 << c)) & m2 & e2;
+				x3 |= (r3 >>> k) & m3 & e3;
+			}
+		}
+		moves[0] = x0;
+		if (words > 1) moves[1] = x1;
+		if (words > 2) moves[2] = x2;
+		if (words > 3) moves[3] = x3;
+		return Long.bitCount(x0) + Long.bitCount(x1) + Long.bitCount(x2) + Long.bitCount(x3);
+	}
+
+	/**
+	 * 語数に依存しない方法で合法手を求めます。
+	 */
+	private int generateMovesGeneric(final long[] own, final long[] opponent, final long[] moves, final long[] work) {
+		// 作業用配列の前半を連なり、後半をずらした結果に使う
+		int next = words;
+		Arrays.fill(moves, 0, words, 0);
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			// 自分の石に隣接する相手の石から始めて、この方向に連なる相手の石を集める
+			shift(own, 0, d, work, 0);
+			boolean any = false;
+			for (int w = 0; w < words; w++) {
+				work[w] &= opponent[w];
+				any |= work[w] != 0;
+			}
+			if (!any) continue;
+			while (true) {
+				shift(work, 0, d, work, next);
+				boolean grew = false;
+				for (int w = 0; w < words; w++) {
+					long added = work[next + w] & opponent[w] & ~work[w];
+					work[w] |= added;
+					grew |= added != 0;
+				}
+				if (!grew) break;
+			}
+			// 連なりの先の空きマスが合法手
+			shift(work, 0, d, work, next);
+			for (int w = 0; w < words; w++) moves[w] |= work[next + w] & ~(own[w] | opponent[w]);
+		}
+		int count = 0;
+		for (int w = 0; w < words; w++) count += Long.bitCount(moves[w] &= full[w]);
+		return count;
+	}
+
+	/**
+	 * マスに石を置いたときに裏返る相手の石をリストに追加します。置いたマス自体は追加しません。
+	 *
+	 * @param own      手番のプレイヤーの石
+	 * @param opponent 相手の石
+	 * @param i        置くマスの行
+	 * @param j        置くマスの列
+	 * @param flips    裏返る石（i * size + j）の追加先
+	 */
+	void collectFlips(final long[] own, final long[] opponent, final int i, final int j, final List<Integer> flips) {
+		for (int[] direction : DIRECTIONS) {
+			int di = direction[0], dj = direction[1];
+			int length = flankedLength(own, opponent, i, j, di, dj);
+			for (int k = 1; k <= length; k++) flips.add((i + k * di) * size + (j + k * dj));
+		}
+	}
+
+	/**
+	 * マスに石を置き、挟んだ相手の石を裏返します。合法手であることが前提です。オブジェクトを生成しません。
+	 *
+	 * @param own      手番のプレイヤーの石（更新される）
+	 * @param opponent 相手の石（更新される）
+	 * @param cell     置くマス（i * size + j）
+	 * @return 裏返した石の数
+	 */
+	public int play(final long[] own, final long[] opponent, final int cell) {
+		int i = cell / size, j = cell % size, flipped = 0;
+		for (int[] direction : DIRECTIONS) {
+			int di = direction[0], dj = direction[1];
+			int length = flankedLength(own, opponent, i, j, di, dj);
+			for (int k = 1; k <= length; k++) {
+				int target = (i + k * di) * size + (j + k * dj);
+				toggle(opponent, target);
+				toggle(own, target);
+			}
+			flipped += length;
+		}
+		toggle(own, cell);
+		return flipped;
+	}
+
+	/**
+	 * マスから1方向に連なる相手の石が自分の石で挟まれていればその数を、挟まれていなければ0を返します。
+	 */
+	private int flankedLength(final long[] own, final long[] opponent, final int i, final int j, final int di, final int dj) {
+		int ni = i + di, nj = j + dj, length = 0;
+		while (isInBounds(ni, nj) && contains(opponent, ni * size + nj)) {
+			ni += di;
+			nj += dj;
+			length++;
+		}
+		if (length == 0 || !isInBounds(ni, nj) || !contains(own, ni * size + nj)) return 0;
+		return length;
+	}
+
+	/**
+	 * ビット集合を1方向に1マスずらします。{@code source}の{@code from}語目からを読み、{@code target}の{@code to}語目からへ書き込みます。
+	 * 同じ配列の同じ位置でも構いません。
+	 */
+	private void shift(final long[] source, final int from, final int direction, final long[] target, final int to) {
+		int amount = shifts[direction];
+		long[] mask = masks[direction];
+		if (amount > 0) {
+			int wordShift = amount >>> 6, bitShift = amount & 63;
+			// 上位の語から書き込むことで、同じ配列でもまだ読んでいない語を上書きしない
+			for (int w = words - 1; w >= 0; w--) {
+				int src = w - wordShift;
+				long value = src >= 0 ? source[from + src] << bitShift : 0;
+				if (bitShift != 0 && src > 0) value |= source[from + src - 1] >>> (64 - bitShift);
+				target[to + w] = value & mask[w];
+			}
+		} else {
+			int wordShift = -amount >>> 6, bitShift = -amount & 63;
+			for (int w = 0; w < words; w++) {
+				int src = w + wordShift;
+				long value = src < words ? source[from + src] >>> bitShift : 0;
+				if (bitShift != 0 && src + 1 < words) value |= source[from + src + 1] << (64 - bitShift);
+				target[to + w] = value & mask[w];
+			}
+		}
+	}
+
+	private boolean isInBounds(final int i, final int j) {
+		return 0 <= i && i < size && 0 <= j && j < size;
+	}
+}
@@ -4,30 +4,33 @@
 
 /**
  * オセロの盤面状態とゲームロジックを管理するクラス。
+ * <p>
+ * 石の配置と合法手は色ごとのビット集合（{@link BitBoard}）で持ち、石を置くたびに合法手をビット並列に生成し直します。
+ * 裏返る石は実際に置く手についてだけ求めるため、大きなボードでも1手あたりの手間は語数（マス数/64）と石の連なりの長さで抑えられます。
  */
 public final class Board {
-	/*** 探索する8方向（縦、横、斜め）のベクトル配列。 */
-	private static final int[][] directions = {
-			{-1, -1}, {1, 1},   // 左上, 右下
-			{-1, 1}, {1, -1},   // 右上, 左下
-			{0, -1}, {0, 1},    // 左, 右
-			{-1, 0}, {1, 0}     // 上, 下
-	};
 	/** ボードサイズ */
 	private final int size;
-	/** ボードの状態（黒、白、空） */
-	private final Piece[][] board;
-	/**
-	 * 白の有効な手のキャッシュ
-	 * Key: 座標 (i * size + j), Value: その手に着手した際に変更される全マスのリスト
-	 */
-	private final Map<Integer, List<Integer>> whiteValidMoves = new HashMap<>();
-	/**
-	 * 黒の有効な手のキャッシュ
-	 * Key: 座標 (i * size + j), Value: その手に着手した際に変更される全マスのリスト
-	 */
-	private final Map<Integer, List<Integer>> blackValidMoves = new HashMap<>();
+	/** ボードサイズごとの合法手の生成などに使う補助クラス */
+	private final BitBoard bits;
+	/** 白石のあるマス（ビット番号 i * size + j） */
+	private final long[] white;
+	/** 黒石のあるマス（ビット番号 i * size + j） */
+	private final long[] black;
+	/** 白の有効な手（石を置くたびに生成し直す） */
+	private final long[] whiteValidMoves;
+	/** 黒の有効な手（石を置くたびに生成し直す） */
+	private final long[] blackValidMoves;
 	private int whiteCount = 0, blackCount = 0;
+	private int whiteMoveCount = 0, blackMoveCount = 0;
+	/** 評価関数用のパターンの配置 */
+	private final PatternLayout patterns;
+	/** パターンごとの3進数のインデックス（石を置くたびに差分で更新する） */
+	private final int[] patternIndices;
+	/** ハッシュ値の乱数表 */
+	private final Zobrist zobrist;
+	/** 盤面のハッシュ値（手番を含まない。石を置くたびに差分で更新する） */
+	private long hash;
 
 	/**
 	 * 指定されたサイズでオセロ盤を作成し、初期配置を行います。
@@ -35,10 +38,16 @@ public final class Board {
 	 * @param size ボードサイズ
 	 */
 	public Board(final int size) {
-		if (size < 6 || size % 2 == 1) throw new IllegalArgumentException("Board size must be an even number >= 6.");
+		if (!isValidSize(size)) throw new IllegalArgumentException("Board size must be an even number >= 6.");
 		this.size = size;
-		board = new Piece[size][size];
-		for (int i = 0; i < size; i++) Arrays.fill(board[i], Piece.EMPTY);
+		bits = BitBoard.of(size);
+		white = new long[bits.getWords()];
+		black = new long[bits.getWords()];
+		whiteValidMoves = new long[bits.getWords()];
+		blackValidMoves = new long[bits.getWords()];
+		patterns = PatternLayout.of(size);
+		patternIndices = new int[patterns.getPatternCount()];
+		zobrist = Zobrist.of(size);
 		int half = size / 2;
 		placeWhite(half - 1, half - 1);
 		placeBlack(half - 1, half);
@@ -47,6 +56,79 @@ public Board(final int size) {
 		updateValidMoves();
 	}
 
+	/**
+	 * 既存の盤面を複製します。
+	 * 探索などで元の盤面を変更せずに手を試したい場合に使用します。
+	 *
+	 * @param other 複製元の盤面
+	 */
+	public Board(final Board other) {
+		this.size = other.size;
+		bits = other.bits;
+		white = other.white.clone();
+		black = other.black.clone();
+		whiteValidMoves = other.whiteValidMoves.clone();
+		blackValidMoves = other.blackValidMoves.clone();
+		whiteCount = other.whiteCount;
+		blackCount = other.blackCount;
+		whiteMoveCount = other.whiteMoveCount;
+		blackMoveCount = other.blackMoveCount;
+		patterns = other.patterns;
+		patternIndices = other.patternIndices.clone();
+		zobrist = other.zobrist;
+		hash = other.hash;
+	}
+
+	/**
+	 * 指定されたサイズがボードサイズとして有効か（6以上の偶数か）を判定します。
+	 *
+	 * @param size ボードサイズ
+	 * @return 有効な場合true
+	 */
+	public static boolean isValidSize(final int size) {
+		return size >= 6 && size % 2 == 0;
+	}
+
+	/**
+	 * ボードサイズ（片辺のマス数）を返します。
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * 指定座標の駒を返します。
+	 */
+	public Piece getPiece(final int i, final int j) {
+		int cell = i * size + j;
+		if (BitBoard.contains(white, cell)) return Piece.WHITE;
+		if (BitBoard.contains(black, cell)) return Piece.BLACK;
+		return Piece.EMPTY;
+	}
+
+	/**
+	 * 評価関数用のパターンの配置を返します。
+	 */
+	public PatternLayout getPatternLayout() {
+		return patterns;
+	}
+
+	/**
+	 * パターンの現在のインデックス（各マスを空0、白1、黒2とした3進数）を返します。
+	 *
+	 * @param pattern パターンの番号（{@link PatternLayout}を参照）
+	 */
+	public int getPatternIndex(final int pattern) {
+		return patternIndices[pattern];
+	}
+
+	/**
+	 * 盤面のハッシュ値（{@link Zobrist}）を返します。手番は含まないため、必要なら{@link Zobrist#BLACK_TO_MOVE}をXORしてください。
+	 */
+	public long getHash() {
+		return hash;
+	}
+
 	/**
 	 * 指定された与えたプレイヤー（色）の保持コマ数を返す
 	 *
@@ -62,27 +144,48 @@ public int getStoneCount(final Piece piece) {
 	 * <p>
 	 * 返却されるマップは変更不可です。
 	 * Keyは座標、Valueはその着手によって影響を受けるセルのリストです。
+	 * 呼び出すたびにすべての手の裏返る石を求めるため、置ける場所だけが必要な場合は{@link #getValidMoveCells}を使用してください。
 	 *
 	 * @param piece プレイヤーの色
 	 * @return 有効な手のマップ
 	 */
 	public Map<Integer, List<Integer>> getValidMoves(final Piece piece) {
-		Map<Integer, List<Integer>> validMoves = piece.isWhite() ? whiteValidMoves : blackValidMoves;
+		Map<Integer, List<Integer>> validMoves = new LinkedHashMap<>();
+		for (int cell : getValidMoveCells(piece)) validMoves.put(cell, changedCellsOf(piece, cell));
 		return Collections.unmodifiableMap(validMoves); // 読み取り専用にして返す
 	}
 
+	/**
+	 * 指定されたプレイヤーが置ける座標（i * size + j）を昇順に並べたリストを返します。
+	 *
+	 * @param piece プレイヤーの色
+	 * @return 置ける座標のリスト（呼び出し元で変更してよい）
+	 */
+	public List<Integer> getValidMoveCells(final Piece piece) {
+		long[] validMoves = piece.isWhite() ? whiteValidMoves : blackValidMoves;
+		List<Integer> cells = new ArrayList<>(countValidMoves(piece));
+		for (int w = 0; w < validMoves.length; w++) {
+			for (long word = validMoves[w]; word != 0; word &= word - 1) cells.add((w << 6) + Long.numberOfTrailingZeros(word));
+		}
+		return cells;
+	}
+
 	/**
 	 * 指定されたプレイヤー（色）が置くことのできるコマ数を返します。
 	 */
 	public int countValidMoves(final Piece player) {
-		return player.isWhite() ? whiteValidMoves.size() : blackValidMoves.size();
+		return player.isWhite() ? whiteMoveCount : blackMoveCount;
 	}
 
 	/**
-	 * 指定されたプレイヤーが座標i, jにコマを置き、ボードの状態を更新します（この座標は置くことができるという前提）
+	 * 指定されたプレイヤーが座標i, jにコマを置き、ボードの状態を更新します。
+	 *
+	 * @return 置いたマスと裏返ったマスのリスト（置いたマスが先頭）
+	 * @throws IllegalArgumentException 置けない座標の場合
 	 */
 	public List<Integer> applyMove(final Piece player, final int i, final int j) {
-		List<Integer> changedCells = player.isWhite() ? whiteValidMoves.get(i * size + j) : blackValidMoves.get(i * size + j);
+		if (!isValidMove(player, i, j)) throw new IllegalArgumentException("invalid move: (" + i + ", " + j + ")");
+		List<Integer> changedCells = changedCellsOf(player, i * size + j);
 		for (int cell : changedCells) {
 			int ni = cell / size;
 			int nj = cell % size;
@@ -97,80 +200,63 @@ public List<Integer> applyMove(final Piece player, final int i, final int j) {
 	 * 指定された座標が、有効な手（ルール上置ける場所）かどうかを判定します。
 	 */
 	public boolean isValidMove(Piece player, int i, int j) {
-		return getValidMoves(player).get(i * size + j) != null;
-	}
-
-	/**
-	 * 現在の盤面状態に基づいて、{@code whiteValidMoves} および {@code blackValidMoves} を更新します。
-	 */
-	private void updateValidMoves() {
-		whiteValidMoves.clear();
-		blackValidMoves.clear();
-		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < size; j++) {
-				Piece piece = board[i][j];
-				if (!piece.isEmpty()) continue;
-				for (int[] d : directions) {
-					int di = d[0], dj = d[1];
-					int ni = i + di, nj = j + dj;
-					if (!isInBounds(ni, nj)) continue;
-					if (board[ni][nj].isWhite()) {
-						if (!canFlank(ni, nj, Piece.BLACK, di, dj)) continue;
-						// i, j を始点とするひっくり返る駒のリスト
-						List<Integer> changedCells = blackValidMoves.computeIfAbsent(i * size + j, k -> new ArrayList<>());
-						if (changedCells.isEmpty()) changedCells.add(i * size + j);
-						collectFlippableCells(ni, nj, di, dj, Piece.WHITE, changedCells);
-					} else if (board[ni][nj].isBlack()) {
-						if (!canFlank(ni, nj, Piece.WHITE, di, dj)) continue;
-						List<Integer> changedCells = whiteValidMoves.computeIfAbsent(i * size + j, k -> new ArrayList<>());
-						if (changedCells.isEmpty()) changedCells.add(i * size + j);
-						collectFlippableCells(ni, nj, di, dj, Piece.BLACK, changedCells);
-					}
-				}
-			}
-		}
+		if (!isInBounds(i, j)) return false;
+		return BitBoard.contains(player.isWhite() ? whiteValidMoves : blackValidMoves, i * size + j);
 	}
 
 	/**
-	 * 指定された方向に向かって、相手の石を挟んで自分の石で閉じることができるか判定します。
+	 * 置いたマスと、そこに置いたときに裏返るマスのリストを返します（置いたマスが先頭）。
 	 */
-	private boolean canFlank(int i, int j, final Piece piece, final int di, final int dj) {
-		while (isInBounds(i, j) && piece.isOpponentPiece(board[i][j])) {
-			i += di;
-			j += dj;
-		}
-		return isInBounds(i, j) && piece.isMyPiece(board[i][j]);
+	private List<Integer> changedCellsOf(final Piece player, final int cell) {
+		List<Integer> changedCells = new ArrayList<>();
+		changedCells.add(cell);
+		if (player.isWhite()) bits.collectFlips(white, black, cell / size, cell % size, changedCells);
+		else bits.collectFlips(black, white, cell / size, cell % size, changedCells);
+		return changedCells;
 	}
 
 	/**
-	 * 挟んだ相手の石（裏返る対象）をリストに追加します。
+	 * 現在の盤面状態に基づいて、{@code whiteValidMoves} および {@code blackValidMoves} を更新します。
 	 */
-	private void collectFlippableCells(int i, int j, final int di, final int dj, Piece opponentColor, List<Integer> targetList) {
-		while (board[i][j] == opponentColor) {
-			targetList.add(i * size + j);
-			i += di;
-			j += dj;
-		}
+	private void updateValidMoves() {
+		whiteMoveCount = bits.generateMoves(white, black, whiteValidMoves);
+		blackMoveCount = bits.generateMoves(black, white, blackValidMoves);
 	}
 
 	/**
 	 * 指定座標に白石を置きます。
-	 * もし黒石があれば白石に変わり、カウントを更新します。
+	 * もし黒石があれば白石に変わり、カウント、パターンのインデックス、ハッシュ値を更新します。
 	 */
 	private void placeWhite(final int i, final int j) {
-		if (board[i][j].isBlack()) blackCount--;
+		int cell = i * size + j;
+		boolean flipped = BitBoard.contains(black, cell);
+		patterns.update(patternIndices, cell, flipped ? 2 : 0, 1);
+		if (flipped) {
+			hash ^= zobrist.black(cell);
+			BitBoard.toggle(black, cell);
+			blackCount--;
+		}
+		hash ^= zobrist.white(cell);
+		BitBoard.toggle(white, cell);
 		whiteCount++;
-		board[i][j] = Piece.WHITE;
 	}
 
 	/**
 	 * 指定座標に黒石を置きます。
-	 * もし白石があれば黒石に変わり、カウントを更新します。
+	 * もし白石があれば黒石に変わり、カウント、パターンのインデックス、ハッシュ値を更新します。
 	 */
 	private void placeBlack(final int i, final int j) {
-		if (board[i][j].isWhite()) whiteCount--;
+		int cell = i * size + j;
+		boolean flipped = BitBoard.contains(white, cell);
+		patterns.update(patternIndices, cell, flipped ? 1 : 0, 2);
+		if (flipped) {
+			hash ^= zobrist.white(cell);
+			BitBoard.toggle(white, cell);
+			whiteCount--;
+		}
+		hash ^= zobrist.black(cell);
+		BitBoard.toggle(black, cell);
 		blackCount++;
-		board[i][j] = Piece.BLACK;
 	}
 
 	/**
@@ -0,0 +1,148 @@
+package model;
+
+import java.util.*;
+
+/**
+ * 合法手の生成方法ごとの速度を計測するプログラムです。
+ * <p>
+ * 使い方: {@code java model.MoveGenBenchmark [秒数] [ボードサイズ...]}（既定は1秒、8、10、12、16、20）
+ * ランダムな対局から集めた局面について、両方の色の合法手を求める処理を繰り返し、1局面あたりの時間を表示します。
+ * 比較のため、空きマスごとに8方向へ1マスずつ調べる方法（ビット集合を使う前の{@code canFlank}と同じ走査）も計測します。
+ * すべての方法で合法手の数の合計が一致することも確認します。
+ */
+public final class MoveGenBenchmark {
+	/** 計測に使う局面の数 */
+	private static final int POSITIONS = 4096;
+	/** 探索する8方向（行の差、列の差） */
+	private static final int[][] DIRECTIONS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+	private MoveGenBenchmark() {
+	}
+
+	public static void main(final String[] args) {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+		int[] sizes = {8, 10, 12, 16, 20};
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int k = 1; k < args.length; k++) sizes[k - 1] = Integer.parseInt(args[k]);
+		}
+
+		for (int size : sizes) {
+			int words = BitBoard.wordsFor(size);
+			long[][] white = new long[POSITIONS][], black = new long[POSITIONS][];
+			Piece[][][] cells = new Piece[POSITIONS][][];
+			collectPositions(size, white, black, cells);
+
+			// 走査による方法
+			long expected = 0;
+			for (int p = 0; p < POSITIONS; p++) expected += countByScan(cells[p], Piece.WHITE) + countByScan(cells[p], Piece.BLACK);
+			double scanNanos = measure(seconds, () -> {
+				long total = 0;
+				for (int p = 0; p < POSITIONS; p++) total += countByScan(cells[p], Piece.WHITE) + countByScan(cells[p], Piece.BLACK);
+				return total;
+			}, expected);
+			System.out.printf("size=%d words=%d scan: %.0f ns/position%n", size, words, scanNanos);
+
+			Set<BitBoard.Kernel> kernels = new LinkedHashSet<>();
+			for (BitBoard.Kernel kernel : BitBoard.Kernel.values()) {
+				if (kernel != BitBoard.Kernel.AUTO) kernels.add(new BitBoard(size, kernel).getKernel());
+			}
+			for (BitBoard.Kernel kernel : kernels) {
+				BitBoard bits = new BitBoard(size, kernel);
+				long[] moves = new long[words];
+				double nanos = measure(seconds, () -> {
+					long total = 0;
+					for (int p = 0; p < POSITIONS; p++) {
+						total += bits.generateMoves(white[p], black[p], moves) + bits.generateMoves(black[p], white[p], moves);
+					}
+					return total;
+				}, expected);
+				System.out.printf("size=%d words=%d %s: %.0f ns/position (x%.1f)%n", size, words, kernel.name().toLowerCase(), nanos, scanNanos / nanos);
+			}
+		}
+	}
+
+	/**
+	 * ランダムに打った対局から局面を集めます。
+	 */
+	private static void collectPositions(final int size, final long[][] white, final long[][] black, final Piece[][][] cells) {
+		Random random = new Random(size);
+		int collected = 0;
+		while (collected < POSITIONS) {
+			Board board = new Board(size);
+			Piece turn = Piece.WHITE;
+			while (collected < POSITIONS) {
+				if (board.countValidMoves(turn) == 0) turn = turn.opposite();
+				if (board.countValidMoves(turn) == 0) break;
+				List<Integer> moves = board.getValidMoveCells(turn);
+				int move = moves.get(random.nextInt(moves.size()));
+				board.applyMove(turn, move / size, move % size);
+				turn = turn.opposite();
+
+				white[collected] = new long[BitBoard.wordsFor(size)];
+				black[collected] = new long[BitBoard.wordsFor(size)];
+				cells[collected] = new Piece[size][size];
+				for (int i = 0; i < size; i++) {
+					for (int j = 0; j < size; j++) {
+						Piece piece = board.getPiece(i, j);
+						cells[collected][i][j] = piece;
+						if (piece.isWhite()) BitBoard.toggle(white[collected], i * size + j);
+						else if (piece.isBlack()) BitBoard.toggle(black[collected], i * size + j);
+					}
+				}
+				collected++;
+			}
+		}
+	}
+
+	/**
+	 * 処理を指定秒数繰り返し、1局面あたりの時間（ナノ秒）を返します。最初の半分はJITコンパイルのための空回しです。
+	 */
+	private static double measure(final long seconds, final Run run, final long expected) {
+		long warmupEnd = System.nanoTime() + seconds * 500_000_000L;
+		while (System.nanoTime() < warmupEnd) check(run.run(), expected);
+		long start = System.nanoTime(), rounds = 0;
+		long end = start + seconds * 1_000_000_000L;
+		while (System.nanoTime() < end) {
+			check(run.run(), expected);
+			rounds++;
+		}
+		return (double) (System.nanoTime() - start) / (rounds * POSITIONS);
+	}
+
+	private static void check(final long actual, final long expected) {
+		if (actual != expected) throw new IllegalStateException("move count mismatch: " + actual + " != " + expected);
+	}
+
+	/**
+	 * 空きマスごとに8方向を調べて合法手を数えます。
+	 */
+	private static int countByScan(final Piece[][] cells, final Piece player) {
+		int size = cells.length, count = 0;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if (!cells[i][j].isEmpty()) continue;
+				for (int[] d : DIRECTIONS) {
+					int ni = i + d[0], nj = j + d[1], length = 0;
+					while (0 <= ni && ni < size && 0 <= nj && nj < size && player.isOpponentPiece(cells[ni][nj])) {
+						ni += d[0];
+						nj += d[1];
+						length++;
+					}
+					if (length > 0 && 0 <= ni && ni < size && 0 <= nj && nj < size && player.isMyPiece(cells[ni][nj])) {
+						count++;
+						break;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 計測する処理です。結果の確認用に合法手の数の合計を返します。
+	 */
+	private interface Run {
+		long run();
+	}
+}
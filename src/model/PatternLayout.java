@@ -0,0 +1,188 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 評価関数で使用する盤面のパターン（辺、角、対角線など）の配置です。
+ * <p>
+ * パターンは決まった順序に並んだマスの列で、各マスの状態（空0、白1、黒2）を3進数の桁としたインデックスで表します。
+ * 列の{@code k}番目のマスが{@code 3^k}の桁です。{@link Board}は石が置かれたり裏返ったりするたびに、
+ * そのマスを含むパターンのインデックスだけを差分で更新します。
+ * <p>
+ * 同じ種類（ファミリー）のパターンは盤面の対称変換で互いに移り合うようにマスを並べてあるため、
+ * 評価関数では1つのファミリーにつき1つの重みの表を共有できます。
+ * インスタンスは不変で、ボードサイズごとに1つを共有します。
+ */
+public final class PatternLayout {
+	/** 辺（角から辺に沿って並ぶマス） */
+	public static final int EDGE = 0;
+	/** 辺から1つ内側の列 */
+	public static final int LINE2 = 1;
+	/** 角の3x3のブロック */
+	public static final int CORNER = 2;
+	/** 角から中央に向かう対角線 */
+	public static final int DIAGONAL = 3;
+	/** ファミリーの数 */
+	public static final int FAMILY_COUNT = 4;
+	/** 直線のパターンの最大の長さ（重みの表が3^8要素に収まるようにする） */
+	private static final int MAX_LINE_LENGTH = 8;
+	/** 角のブロックの1辺の長さ */
+	private static final int CORNER_BLOCK = 3;
+
+	private static final Map<Integer, PatternLayout> CACHE = new ConcurrentHashMap<>();
+
+	private final int size;
+	/** ファミリーごとのパターンの長さ */
+	private final int[] familyLength = new int[FAMILY_COUNT];
+	/** パターンごとのファミリー */
+	private final int[] family;
+	/** パターンごとのマスの列（座標 i * size + j） */
+	private final int[][] cells;
+	/** マスごとの{@link #cellPattern}、{@link #cellPower}の開始位置（末尾に番兵を持つ） */
+	private final int[] cellStart;
+	/** マスを含むパターンの番号 */
+	private final int[] cellPattern;
+	/** そのパターンでのマスの桁の重み（3^k） */
+	private final int[] cellPower;
+
+	private PatternLayout(final int size) {
+		this.size = size;
+		int line = Math.min(size, MAX_LINE_LENGTH);
+		familyLength[EDGE] = line;
+		familyLength[LINE2] = line;
+		familyLength[CORNER] = CORNER_BLOCK * CORNER_BLOCK;
+		familyLength[DIAGONAL] = line;
+
+		// 4つの角それぞれについて、角を原点とした座標(a, b)でパターンを定義する
+		List<int[]> patterns = new ArrayList<>();
+		List<Integer> families = new ArrayList<>();
+		for (int corner = 0; corner < 4; corner++) {
+			int[] edgeRow = new int[line], edgeColumn = new int[line];
+			int[] line2Row = new int[line], line2Column = new int[line];
+			int[] diagonal = new int[line];
+			for (int k = 0; k < line; k++) {
+				edgeRow[k] = cellAt(corner, 0, k);
+				edgeColumn[k] = cellAt(corner, k, 0);
+				line2Row[k] = cellAt(corner, 1, k);
+				line2Column[k] = cellAt(corner, k, 1);
+				diagonal[k] = cellAt(corner, k, k);
+			}
+			int[] block = new int[CORNER_BLOCK * CORNER_BLOCK];
+			for (int a = 0; a < CORNER_BLOCK; a++) {
+				for (int b = 0; b < CORNER_BLOCK; b++) block[a * CORNER_BLOCK + b] = cellAt(corner, a, b);
+			}
+			patterns.add(edgeRow);
+			families.add(EDGE);
+			patterns.add(edgeColumn);
+			families.add(EDGE);
+			patterns.add(line2Row);
+			families.add(LINE2);
+			patterns.add(line2Column);
+			families.add(LINE2);
+			patterns.add(block);
+			families.add(CORNER);
+			patterns.add(diagonal);
+			families.add(DIAGONAL);
+		}
+		cells = patterns.toArray(new int[0][]);
+		family = new int[cells.length];
+		for (int p = 0; p < cells.length; p++) family[p] = families.get(p);
+
+		// マスからパターンを引けるように並べ替える
+		int squares = size * size;
+		cellStart = new int[squares + 1];
+		for (int[] pattern : cells) {
+			for (int cell : pattern) cellStart[cell + 1]++;
+		}
+		for (int cell = 0; cell < squares; cell++) cellStart[cell + 1] += cellStart[cell];
+		cellPattern = new int[cellStart[squares]];
+		cellPower = new int[cellStart[squares]];
+		int[] next = Arrays.copyOf(cellStart, squares);
+		for (int p = 0; p < cells.length; p++) {
+			int power = 1;
+			for (int cell : cells[p]) {
+				cellPattern[next[cell]] = p;
+				cellPower[next[cell]] = power;
+				next[cell]++;
+				power *= 3;
+			}
+		}
+	}
+
+	/**
+	 * 指定されたボードサイズの配置を返します。
+	 */
+	public static PatternLayout of(final int size) {
+		if (!Board.isValidSize(size)) throw new IllegalArgumentException("invalid board size: " + size);
+		return CACHE.computeIfAbsent(size, PatternLayout::new);
+	}
+
+	/**
+	 * 角を原点とした座標(a, b)を盤面の座標に変換します。
+	 *
+	 * @param corner 角の番号（0: 左上、1: 右上、2: 左下、3: 右下）
+	 */
+	private int cellAt(final int corner, final int a, final int b) {
+		int i = (corner & 2) == 0 ? a : size - 1 - a;
+		int j = (corner & 1) == 0 ? b : size - 1 - b;
+		return i * size + j;
+	}
+
+	/**
+	 * ボードサイズを返します。
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * パターンの数を返します。
+	 */
+	public int getPatternCount() {
+		return cells.length;
+	}
+
+	/**
+	 * パターンのファミリーを返します。
+	 */
+	public int getFamily(final int pattern) {
+		return family[pattern];
+	}
+
+	/**
+	 * パターンのマスの列を返します（座標 i * size + j）。
+	 */
+	public int[] getCells(final int pattern) {
+		return cells[pattern].clone();
+	}
+
+	/**
+	 * ファミリーのパターンの長さ（マスの数）を返します。
+	 */
+	public int getFamilyLength(final int family) {
+		return familyLength[family];
+	}
+
+	/**
+	 * ファミリーのインデックスの取りうる数（3^長さ）を返します。
+	 */
+	public int getTableSize(final int family) {
+		int tableSize = 1;
+		for (int k = 0; k < familyLength[family]; k++) tableSize *= 3;
+		return tableSize;
+	}
+
+	/**
+	 * マスの状態が{@code from}から{@code to}に変わったときに、パターンのインデックスを差分で更新します。
+	 *
+	 * @param indices パターンごとのインデックス
+	 * @param cell    変わったマス（i * size + j）
+	 * @param from    変わる前の桁（空0、白1、黒2）
+	 * @param to      変わった後の桁
+	 */
+	void update(final int[] indices, final int cell, final int from, final int to) {
+		int delta = to - from;
+		for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) indices[cellPattern[k]] += delta * cellPower[k];
+	}
+}
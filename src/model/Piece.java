@@ -24,4 +24,13 @@ public boolean isWhite() {
 	public boolean isEmpty() {
 		return this == EMPTY;
 	}
+
+	/**
+	 * 相手の色を返します（EMPTYの場合はEMPTY）。
+	 */
+	public Piece opposite() {
+		if (this == WHITE) return BLACK;
+		if (this == BLACK) return WHITE;
+		return EMPTY;
+	}
 }
@@ -0,0 +1,62 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 盤面のハッシュ値（Zobristハッシュ）に使う乱数表です。
+ * <p>
+ * マスごと・色ごとに64ビットの乱数を持ち、盤面のハッシュ値は石のあるマスの乱数のXORです。
+ * 石を置いたり裏返したりしたときは、変わったマスの乱数をXORするだけで更新できます。
+ * ボードサイズごとに別の乱数を使うため、サイズの異なる盤面のハッシュ値が一致することはほぼありません。
+ * インスタンスは不変で、ボードサイズごとに1つを共有します。
+ */
+public final class Zobrist {
+	/** 黒番であることを表す乱数（手番を含めたハッシュ値を作るときにXORする） */
+	public static final long BLACK_TO_MOVE = 0x9E3779B97F4A7C15L;
+	/** 乱数の種（固定して、実行ごとに同じハッシュ値になるようにする） */
+	private static final long SEED = 0x5A0B2C3D4E5F6071L;
+
+	private static final Map<Integer, Zobrist> CACHE = new ConcurrentHashMap<>();
+
+	/** マスごとの白石の乱数 */
+	private final long[] white;
+	/** マスごとの黒石の乱数 */
+	private final long[] black;
+
+	private Zobrist(final int size) {
+		SplittableRandom random = new SplittableRandom(SEED + size);
+		white = new long[size * size];
+		black = new long[size * size];
+		for (int cell = 0; cell < white.length; cell++) {
+			white[cell] = random.nextLong();
+			black[cell] = random.nextLong();
+		}
+	}
+
+	/**
+	 * 指定されたボードサイズの乱数表を返します。
+	 */
+	public static Zobrist of(final int size) {
+		if (!Board.isValidSize(size)) throw new IllegalArgumentException("invalid board size: " + size);
+		return CACHE.computeIfAbsent(size, Zobrist::new);
+	}
+
+	/**
+	 * マスに白石があることを表す乱数を返します。
+	 *
+	 * @param cell 座標（i * size + j）
+	 */
+	public long white(final int cell) {
+		return white[cell];
+	}
+
+	/**
+	 * マスに黒石があることを表す乱数を返します。
+	 *
+	 * @param cell 座標（i * size + j）
+	 */
+	public long black(final int cell) {
+		return black[cell];
+	}
+}
@@ -0,0 +1,139 @@
+package server;
+
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * 接続の受け入れ制御を行うクラスです。
+ * <p>
+ * 同時接続数の上限と、トークンバケットによるレート制限を管理します。
+ * 接続はIPアドレスごとに制限し、接続の判定は受け入れスレッド上で行われるため、拒否された接続にはスレッドもルームも割り当てられません。
+ * メッセージは接続ごとに制限します（NATの内側など同じアドレスから多数のクライアントが接続しても、互いの枠を使い切らないようにするため）。
+ */
+final class AdmissionController {
+	/** 同時接続数の上限（デフォルト） */
+	private static final int DEFAULT_MAX_CONNECTIONS = 1000;
+	/** 1アドレスあたりの接続トークンの補充速度（個/秒） */
+	private static final double CONNECT_RATE = 1.0;
+	/** 1アドレスあたりの接続トークンの最大数（バースト） */
+	private static final double CONNECT_BURST = 5;
+	/** 1接続あたりのメッセージトークンの補充速度（個/秒） */
+	private static final double MESSAGE_RATE = 20;
+	/** 1接続あたりのメッセージトークンの最大数（バースト） */
+	private static final double MESSAGE_BURST = 40;
+	/** アドレスごとの状態がこの数を超えたら、使われていないものを掃除する */
+	private static final int PRUNE_THRESHOLD = 10_000;
+	/** この時間使われていないアドレスの状態は掃除の対象になる */
+	private static final long IDLE_EVICT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+	/** 同時接続数の上限 */
+	private final int maxConnections;
+	/** 現在の接続数 */
+	private final AtomicInteger activeConnections = new AtomicInteger();
+	/** アドレスごとのレート制限状態 */
+	private final ConcurrentHashMap<InetAddress, AddressState> addresses = new ConcurrentHashMap<>();
+
+	AdmissionController() {
+		this(Integer.getInteger("othello.maxConnections", DEFAULT_MAX_CONNECTIONS));
+	}
+
+	AdmissionController(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * 新しい接続を受け入れてよいか判定します。
+	 * trueを返した場合、接続終了時に必ず{@link #release()}を呼び出してください。
+	 *
+	 * @param address 接続元アドレス
+	 * @return 受け入れる場合true
+	 */
+	public boolean tryAdmit(InetAddress address) {
+		if (!stateOf(address).connects.tryAcquire()) return false;
+		while (true) {
+			int current = activeConnections.get();
+			if (current >= maxConnections) return false;
+			if (activeConnections.compareAndSet(current, current + 1)) return true;
+		}
+	}
+
+	/**
+	 * 受け入れた接続の終了を通知します。
+	 */
+	public void release() {
+		activeConnections.decrementAndGet();
+	}
+
+	/**
+	 * 1つの接続のメッセージのレート制限を作成します。{@link TokenBucket#tryAcquire()}がfalseを返したら、その接続は制限を超えています。
+	 */
+	TokenBucket newMessageBucket() {
+		return new TokenBucket(MESSAGE_RATE, MESSAGE_BURST);
+	}
+
+	/**
+	 * 現在の接続数を返します。
+	 */
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	private AddressState stateOf(InetAddress address) {
+		AddressState state = addresses.get(address);
+		if (state != null) return state;
+		if (addresses.size() > PRUNE_THRESHOLD) pruneIdle();
+		return addresses.computeIfAbsent(address, k -> new AddressState());
+	}
+
+	/**
+	 * 長時間使われていないアドレスの状態を削除します。
+	 */
+	private void pruneIdle() {
+		long now = System.nanoTime();
+		addresses.values().removeIf(state -> now - state.lastUsed() > IDLE_EVICT_NANOS);
+	}
+
+	/**
+	 * 1つのアドレスに対するレート制限状態です。
+	 */
+	private static final class AddressState {
+		private final TokenBucket connects = new TokenBucket(CONNECT_RATE, CONNECT_BURST);
+
+		long lastUsed() {
+			return connects.lastRefill();
+		}
+	}
+
+	/**
+	 * トークンバケットによるレート制限です。
+	 */
+	static final class TokenBucket {
+		/** 1ナノ秒あたりの補充量 */
+		private final double ratePerNano;
+		/** 最大トークン数 */
+		private final double capacity;
+		private double tokens;
+		private long lastRefill;
+
+		TokenBucket(double ratePerSecond, double capacity) {
+			this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = capacity;
+			this.tokens = capacity;
+			this.lastRefill = System.nanoTime();
+		}
+
+		synchronized boolean tryAcquire() {
+			long now = System.nanoTime();
+			tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+			lastRefill = now;
+			if (tokens < 1) return false;
+			tokens -= 1;
+			return true;
+		}
+
+		synchronized long lastRefill() {
+			return lastRefill;
+		}
+	}
+}
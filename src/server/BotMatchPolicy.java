@@ -0,0 +1,139 @@
+package server;
+
+import engine.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 待ち時間が長いプレイヤーにボットを割り当てるためのポリシーです。
+ * <p>
+ * 設定はシステムプロパティで変更できます。
+ * <ul>
+ *     <li>{@code othello.bot.waitSeconds}: ボットと対局させるまでの待ち時間（秒）。0以下で無効</li>
+ *     <li>{@code othello.bot.moveMillis}: ボットが1手に使ってよいCPU時間（ミリ秒）</li>
+ *     <li>{@code othello.bookDir}: 定石ブック（{@code book-<size>.bin}）を置くディレクトリ</li>
+ *     <li>{@code othello.weightsDir}: 評価関数の重み（{@code weights-<size>.bin}）を置くディレクトリ。ないサイズは初期値を使う</li>
+ *     <li>{@code othello.tt.mb}: 全ボットで共有する置換表の大きさ（MB）。0で置換表を使わない</li>
+ *     <li>{@code othello.tt.offHeap}: trueの場合は置換表をヒープ外に確保する</li>
+ * </ul>
+ */
+final class BotMatchPolicy {
+	/** ボットと対局させるまでの待ち時間（デフォルト、秒） */
+	private static final int DEFAULT_WAIT_SECONDS = 30;
+	/** ボットが1手に使ってよいCPU時間（デフォルト、ミリ秒） */
+	private static final int DEFAULT_MOVE_MILLIS = 200;
+	/** 定石ブックを置くディレクトリ（デフォルト） */
+	private static final String DEFAULT_BOOK_DIR = "book";
+	/** 評価関数の重みを置くディレクトリ（デフォルト） */
+	private static final String DEFAULT_WEIGHTS_DIR = "weights";
+	/** 置換表の大きさ（デフォルト、MB） */
+	private static final int DEFAULT_TT_MB = 64;
+
+	/** ボットと対局させるまでの待ち時間（ナノ秒） */
+	private final long waitThresholdNanos;
+	/** ボットが1手に使ってよいCPU時間（ナノ秒） */
+	private final long moveBudgetNanos;
+	/** ボードサイズごとの定石ブック（ないサイズは含まない） */
+	private final Map<Integer, OpeningBook> books;
+	/** 評価関数の重みを置くディレクトリ */
+	private final Path weightsDir;
+	/** ボードサイズごとの評価関数（最初にボットを作成したときに読み込む） */
+	private final Map<Integer, Evaluator> evaluators = new ConcurrentHashMap<>();
+	/** 全ボットの探索で共有する置換表（使わない場合はnull） */
+	private final TranspositionTable table;
+
+	BotMatchPolicy(final long waitThresholdNanos, final long moveBudgetNanos, final Map<Integer, OpeningBook> books, final Path weightsDir,
+				   final TranspositionTable table) {
+		this.waitThresholdNanos = waitThresholdNanos;
+		this.moveBudgetNanos = moveBudgetNanos;
+		this.books = books;
+		this.weightsDir = weightsDir;
+		this.table = table;
+	}
+
+	/**
+	 * システムプロパティからポリシーを作成します。
+	 */
+	static BotMatchPolicy fromSystemProperties() {
+		int waitSeconds = Integer.getInteger("othello.bot.waitSeconds", DEFAULT_WAIT_SECONDS);
+		int moveMillis = Integer.getInteger("othello.bot.moveMillis", DEFAULT_MOVE_MILLIS);
+		Path bookDir = Paths.get(System.getProperty("othello.bookDir", DEFAULT_BOOK_DIR));
+		Path weightsDir = Paths.get(System.getProperty("othello.weightsDir", DEFAULT_WEIGHTS_DIR));
+		int tableMegabytes = Integer.getInteger("othello.tt.mb", DEFAULT_TT_MB);
+		TranspositionTable table = null;
+		if (waitSeconds > 0 && tableMegabytes > 0) {
+			table = new TranspositionTable(tableMegabytes, Boolean.getBoolean("othello.tt.offHeap"));
+			System.out.println("置換表を確保しました: " + (table.getBytes() >> 20) + "MB");
+		}
+		return new BotMatchPolicy(TimeUnit.SECONDS.toNanos(waitSeconds), TimeUnit.MILLISECONDS.toNanos(moveMillis), openBooks(bookDir), weightsDir,
+				table);
+	}
+
+	/**
+	 * ディレクトリにあるすべてのサイズの定石ブックを開きます。メモリマップするだけなので大きさにかかわらずすぐに終わります。
+	 */
+	private static Map<Integer, OpeningBook> openBooks(final Path directory) {
+		Map<Integer, OpeningBook> books = new HashMap<>();
+		if (!Files.isDirectory(directory)) return books;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "book-*.bin")) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				int size;
+				try {
+					size = Integer.parseInt(name.substring("book-".length(), name.length() - ".bin".length()));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				OpeningBook book = OpeningBook.openIfExists(directory, size);
+				if (book == null) continue;
+				books.put(size, book);
+				System.out.println("定石ブックを読み込みました: " + file + "（" + book.getEntryCount() + "局面）");
+			}
+		} catch (IOException e) {
+			System.err.println("定石ブックのディレクトリを読めませんでした: " + e);
+		}
+		return books;
+	}
+
+	/**
+	 * ボットとの対局が有効かを返します。
+	 */
+	boolean isEnabled() {
+		return waitThresholdNanos > 0;
+	}
+
+	/**
+	 * ボットと対局させるまでの待ち時間（ナノ秒）を返します。
+	 */
+	long getWaitThresholdNanos() {
+		return waitThresholdNanos;
+	}
+
+	/**
+	 * 新しいボットを作成します。
+	 *
+	 * @param boardSize ボードサイズ
+	 */
+	BotPlayer createBot(final int boardSize) {
+		return new BotPlayer(boardSize, moveBudgetNanos, books.get(boardSize), evaluatorFor(boardSize), table);
+	}
+
+	/**
+	 * ボードサイズの評価関数を返します。最初に呼ばれたときに読み込み、以降は同じインスタンスを返します。
+	 */
+	Evaluator evaluatorFor(final int boardSize) {
+		return evaluators.computeIfAbsent(boardSize, this::loadEvaluator);
+	}
+
+	/**
+	 * ボードサイズの評価関数を作成します。重みのファイルがなければ初期値の重みを使います。
+	 */
+	private Evaluator loadEvaluator(final int boardSize) {
+		Path file = PatternWeights.fileFor(weightsDir, boardSize);
+		if (Files.isRegularFile(file)) System.out.println("評価関数の重みを読み込みます: " + file);
+		return new PatternEvaluator(PatternWeights.loadOrInitial(weightsDir, boardSize));
+	}
+}
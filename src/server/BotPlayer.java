@@ -0,0 +1,177 @@
+package server;
+
+import common.*;
+import engine.*;
+import model.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * サーバー内で動作するボットの対局者です。
+ * <p>
+ * {@link ClientHandler}と同じくプロトコル文字列を受け取り、自分の盤面を更新します。
+ * 手番が来たら共有のワーカースレッドプールで探索を行い、{@link GameRoom#processMove}で着手します。
+ * ワーカーは低優先度かつ少数に制限しているため、人間同士の対局のスレッドを圧迫しません。
+ * 定石ブックに載っている局面では探索せずにブックの手を打ちます。
+ */
+final class BotPlayer implements Player {
+	/** ワーカースレッド数（CPUコア数の1/4、最低1） */
+	private static final int WORKER_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+	/** 探索待ちの上限（これを超えた場合は探索せずに着手する） */
+	private static final int WORKER_QUEUE_CAPACITY = 256;
+	/** 全ボットで共有する探索用のワーカースレッドプール */
+	private static final ThreadPoolExecutor WORKERS = createWorkers();
+	/** ボットの通し番号 */
+	private static final AtomicInteger botIdCounter = new AtomicInteger();
+
+	private final String playerName;
+	private final int boardSize;
+	/** 1手に使ってよいCPU時間（ナノ秒） */
+	private final long moveBudgetNanos;
+	/** このボードサイズの定石ブック（なければnull） */
+	private final OpeningBook book;
+	/** 探索に使用する評価関数（状態を持たないため同じサイズのボットで共有する） */
+	private final Evaluator evaluator;
+	/** 全ボットで共有する置換表（使わない場合はnull） */
+	private final TranspositionTable table;
+	private GameRoom gameRoom;
+	private Board board;
+	private Piece myColor;
+	private Piece currentTurn;
+	private volatile boolean closed;
+	/** 実行中の探索の打ち切り時刻（探索していない場合はnull）。閉じたときに打ち切る */
+	private volatile Deadline current;
+	/** 置換表に対局の開始を知らせた場合true（終了を知らせるまで） */
+	private boolean inTableGame;
+
+	BotPlayer(final int boardSize, final long moveBudgetNanos, final OpeningBook book, final Evaluator evaluator,
+			  final TranspositionTable table) {
+		this.playerName = "BOT-" + botIdCounter.incrementAndGet();
+		this.boardSize = boardSize;
+		this.moveBudgetNanos = moveBudgetNanos;
+		this.book = book;
+		this.evaluator = evaluator;
+		this.table = table;
+	}
+
+	private static ThreadPoolExecutor createWorkers() {
+		AtomicInteger threadIdCounter = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread thread = new Thread(r, "bot-worker-" + threadIdCounter.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		};
+		return new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY), factory);
+	}
+
+	/**
+	 * GameRoomから届いたメッセージで盤面を更新します。
+	 * GameRoomのロックを保持したまま呼ばれるため、探索はここでは行いません。
+	 */
+	@Override
+	public void sendMessage(final String message) {
+		if (closed) return;
+		String[] tokens = message.split(" ");
+		switch (CommandType.fromToken(tokens[0])) {
+			case GAME_START:
+				myColor = Piece.valueOf(tokens[1]);
+				currentTurn = Piece.WHITE;
+				board = new Board(boardSize);
+				// 置換表の世代は、同時に打っているボットの対局数に応じて表が進める
+				if (table != null && !inTableGame) {
+					inTableGame = true;
+					table.beginGame();
+				}
+				break;
+
+			case YOUR_TURN:
+				currentTurn = myColor;
+				scheduleMove(new Board(board));
+				break;
+
+			case OPPONENT_TURN:
+				currentTurn = myColor.opposite();
+				break;
+
+			case MOVE_ACCEPTED:
+				board.applyMove(currentTurn, Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * 盤面のスナップショットに対する探索をワーカーに依頼します。
+	 */
+	private void scheduleMove(final Board snapshot) {
+		try {
+			WORKERS.execute(() -> play(snapshot, search(snapshot)));
+		} catch (RejectedExecutionException e) {
+			// ワーカーが混み合っている場合は探索せずに最初の合法手を打つ
+			System.out.println(playerName + ": ワーカーが混雑しているため探索を省略します");
+			int move = snapshot.getValidMoveCells(myColor).get(0);
+			ForkJoinPool.commonPool().execute(() -> play(snapshot, move));
+		}
+	}
+
+	/**
+	 * ワーカースレッド上で、1手分のCPU時間の範囲で最善手を探索します。ブックに載っている局面ではブックの手を返します。
+	 */
+	private int search(final Board snapshot) {
+		// 待っている間に閉じられた場合は探索しない
+		if (closed) return -1;
+		if (book != null) {
+			int move = book.probe(snapshot, myColor);
+			if (move >= 0 && snapshot.isValidMove(myColor, move / boardSize, move % boardSize)) return move;
+		}
+		Deadline deadline = Deadline.cpuTime(moveBudgetNanos);
+		current = deadline;
+		try {
+			// 公開する前に閉じられていた場合も、close()の打ち切りを取りこぼさない
+			if (closed) return -1;
+			AlphaBetaSearch search = new AlphaBetaSearch(evaluator, deadline, table);
+			return search.bestMove(snapshot, myColor);
+		} finally {
+			current = null;
+		}
+	}
+
+	private void play(final Board snapshot, final int move) {
+		if (closed || move < 0) return;
+		int size = snapshot.getSize();
+		gameRoom.processMove(this, move / size, move % size);
+	}
+
+	@Override
+	public void setGameRoom(final GameRoom room) {
+		this.gameRoom = room;
+	}
+
+	@Override
+	public boolean isDisconnected() {
+		return closed;
+	}
+
+	@Override
+	public String getPlayerName() {
+		return playerName;
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		Deadline deadline = current;
+		if (deadline != null) deadline.cancel();
+		if (inTableGame) {
+			inTableGame = false;
+			table.endGame();
+		}
+		if (table != null) System.out.println(playerName + ": " + table.describeStats());
+	}
+}
@@ -1,47 +1,104 @@
 package server;
 
 import common.*;
+import model.*;
 
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.*;
+
+class ClientHandler extends Thread implements Player {
+	/** 送信キューの上限（これを超えて溜まるクライアントは低速とみなして切断する） */
+	private static final int OUTBOUND_HIGH_WATER_MARK = 256;
+	/** 送信キューの深さがこの値を超えたら警告を出す */
+	private static final int OUTBOUND_WARN_DEPTH = OUTBOUND_HIGH_WATER_MARK / 2;
+	/** 送信スレッドに終了を伝えるための番兵（参照比較で判定する） */
+	private static final String CLOSE_SIGNAL = new String("CLOSE");
+	/** CONNECTを受信するまでの制限時間（ミリ秒） */
+	private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+	/** サーバーが受け付ける最大のボードサイズ */
+	private static final int MAX_BOARD_SIZE = 20;
+	/** 順位表の要求で返す最大人数 */
+	private static final int MAX_LEADERBOARD_COUNT = 100;
+	/**
+	 * 受信がこの時間（ミリ秒）途絶えたら、PINGを送ってくるクライアントは切断されたとみなす
+	 * （クライアントは2秒ごとにPINGを送る）
+	 */
+	private static final int HEARTBEAT_TIMEOUT_MILLIS = 6000;
 
-class ClientHandler extends Thread {
 	private final Socket socket;
 	private final PrintWriter out;
 	private final BufferedReader in;
 	private final OthelloServer server;
-	private GameRoom gameRoom;
+	private final AdmissionController admission;
+	/** この接続のメッセージのレート制限 */
+	private final AdmissionController.TokenBucket messageBucket;
+	/** 送信待ちメッセージのキュー（送信スレッドが非同期に書き出す） */
+	private final BlockingQueue<String> outbound = new ArrayBlockingQueue<>(OUTBOUND_HIGH_WATER_MARK);
+	/** 送信キューを書き出すスレッド */
+	private final Thread writerThread;
+	/** 対局中のルーム（マッチングのスレッドが設定し、このスレッドが読む） */
+	private volatile GameRoom gameRoom;
 	private String playerName;
+	/** 切断の処理を始めた後はtrue（ルームへの登録と行き違った切断をルーム側で検出するために使う） */
+	private volatile boolean disconnected;
+	/** close()またはabort()が呼ばれた後はtrue */
+	private volatile boolean closing;
+	/** 送信キューの最大深さ（統計用） */
+	private volatile int peakQueueDepth;
+	/** 一度でもPINGを受信した場合true（PINGを送らない古いクライアントはハートビートで切断しない） */
+	private boolean heartbeat;
 
-	public ClientHandler(Socket socket, OthelloServer server) {
+	public ClientHandler(Socket socket, OthelloServer server, AdmissionController admission) {
 		this.socket = socket;
 		this.server = server;
+		this.admission = admission;
+		this.messageBucket = admission.newMessageBucket();
 
 		try {
-			out = new PrintWriter(socket.getOutputStream(), true);
+			out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), false);
 			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		writerThread = new Thread(this::drainOutbound, "writer-" + socket.getRemoteSocketAddress());
+		writerThread.setDaemon(true);
+	}
+
+	@Override
+	public synchronized void start() {
+		writerThread.start();
+		super.start();
 	}
 
 	public void run() {
 		try {
 			// 最初のメッセージでプレイヤー名を取得
-			String[] firstLine = in.readLine().split(" ");
-			if (CommandType.fromToken(firstLine[0]) == CommandType.CONNECT) {
-				playerName = firstLine[1];
-				int boardSize = Integer.parseInt(firstLine[2]);
-				System.out.println("プレイヤー接続: " + playerName);
-
-				// マッチング待ちキューに追加
-				server.addWaitingPlayer(boardSize, this);
-			}
+			if (!handshake()) return;
 
 			// メッセージ受信ループ
+			socket.setSoTimeout(HEARTBEAT_TIMEOUT_MILLIS);
 			while (true) {
-				String line = in.readLine();
+				String line;
+				try {
+					line = in.readLine();
+				} catch (SocketTimeoutException e) {
+					if (!heartbeat) continue;
+					System.out.println(playerName + " からのハートビートが途絶えたため切断します");
+					break;
+				}
 				if (line == null) break;
+				if (!messageBucket.tryAcquire()) {
+					System.out.println(playerName + " のメッセージ送信頻度が上限を超えたため切断します");
+					sendMessage(Protocol.error("rate limit exceeded"));
+					break;
+				}
+				if (line.startsWith(CommandType.PING.command() + " ")) {
+					// ハートビートはログに出さずにすぐ返す
+					heartbeat = true;
+					sendMessage(Protocol.pong(line.substring(CommandType.PING.command().length()).trim()));
+					continue;
+				}
 				System.out.println(playerName + " からの受信: " + line);
 				handleMessage(line);
 			}
@@ -52,15 +109,90 @@ public void run() {
 		}
 	}
 
+	/**
+	 * 最初のメッセージ（CONNECT name boardSize）を制限時間内に受信し、マッチング待ちキューに登録します。
+	 * 最初のメッセージがANALYSIS gameIdの場合は、解析結果を返して接続を終えます。
+	 *
+	 * @return 正しいCONNECTを受信できた場合true
+	 */
+	private boolean handshake() throws IOException {
+		String line;
+		socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+		try {
+			line = in.readLine();
+		} catch (SocketTimeoutException e) {
+			System.out.println("CONNECTが制限時間内に届かなかったため切断します");
+			return false;
+		}
+		if (line == null) return false;
+
+		String[] tokens = line.split(" ");
+		if (tokens.length == 2 && CommandType.fromToken(tokens[0]) == CommandType.ANALYSIS) {
+			// 解析結果の問い合わせだけの接続は、結果を返して閉じる
+			sendMessage(server.getAnalysisReport(tokens[1]));
+			return false;
+		}
+		if (tokens.length != 3 || CommandType.fromToken(tokens[0]) != CommandType.CONNECT) {
+			sendMessage(Protocol.error("CONNECT expected"));
+			return false;
+		}
+		int boardSize;
+		try {
+			boardSize = Integer.parseInt(tokens[2]);
+		} catch (NumberFormatException e) {
+			boardSize = -1;
+		}
+		if (!Board.isValidSize(boardSize) || boardSize > MAX_BOARD_SIZE) {
+			sendMessage(Protocol.error("invalid board size"));
+			return false;
+		}
+
+		playerName = tokens[1];
+		System.out.println("プレイヤー接続: " + playerName);
+
+		// マッチング待ちキューに追加
+		server.addWaitingPlayer(boardSize, this);
+		return true;
+	}
+
 	private void handleMessage(String message) {
 		String[] tokens = message.split(" ");
 		CommandType command = CommandType.fromToken(tokens[0]);
 
 		switch (command) {
 			case MOVE:
-				int i = Integer.parseInt(tokens[1]);
-				int j = Integer.parseInt(tokens[2]);
-				gameRoom.processMove(i, j);
+				if (gameRoom == null || tokens.length != 3) {
+					sendMessage(Protocol.error("invalid move"));
+					break;
+				}
+				try {
+					int i = Integer.parseInt(tokens[1]);
+					int j = Integer.parseInt(tokens[2]);
+					gameRoom.processMove(this, i, j);
+				} catch (NumberFormatException e) {
+					sendMessage(Protocol.error("invalid move"));
+				}
+				break;
+
+			case LEADERBOARD:
+				// LEADERBOARD [count]
+				int count = 10;
+				try {
+					if (tokens.length > 1) count = Integer.parseInt(tokens[1]);
+				} catch (NumberFormatException ignored) {
+				}
+				count = Math.max(0, Math.min(count, MAX_LEADERBOARD_COUNT));
+				Leaderboard leaderboard = server.getLeaderboard();
+				sendMessage(Protocol.leaderboard(leaderboard.rankOf(playerName), leaderboard.size(), leaderboard.top(count)));
+				break;
+
+			case ANALYSIS:
+				// ANALYSIS gameId
+				if (tokens.length != 2) {
+					sendMessage(Protocol.error("invalid analysis request"));
+					break;
+				}
+				sendMessage(server.getAnalysisReport(tokens[1]));
 				break;
 
 			case RESIGN:
@@ -68,25 +200,76 @@ private void handleMessage(String message) {
 				else gameRoom.handleResign(this);
 				break;
 
+			case PONG:
+				break;
+
 			default:
 				System.out.println("不明なコマンド: " + tokens[0]);
 		}
 	}
 
+	/**
+	 * メッセージを送信キューに積みます。実際の書き込みは送信スレッドが行うため、呼び出し元はブロックしません。
+	 * キューが上限に達している場合、このクライアントは低速とみなして切断します。
+	 */
+	@Override
 	public void sendMessage(String message) {
-		out.println(message);
-		out.flush();
+		if (closing) return;
+		if (!outbound.offer(message)) {
+			System.out.println(playerName + " の送信キューが上限(" + OUTBOUND_HIGH_WATER_MARK + ")に達したため切断します");
+			abort();
+			return;
+		}
+		int depth = outbound.size();
+		if (depth > peakQueueDepth) {
+			peakQueueDepth = depth;
+			if (depth == OUTBOUND_WARN_DEPTH) System.out.println(playerName + " の送信キューが滞留しています: " + depth);
+		}
+	}
+
+	/**
+	 * 現在の送信キューの深さを返します。
+	 */
+	public int getOutboundQueueDepth() {
+		return outbound.size();
 	}
 
+	@Override
 	public void setGameRoom(GameRoom room) {
 		this.gameRoom = room;
 	}
 
+	@Override
+	public boolean isDisconnected() {
+		return disconnected;
+	}
+
+	@Override
 	public String getPlayerName() {
 		return playerName;
 	}
 
+	/**
+	 * キューに積まれたメッセージを送り切ってから接続を閉じます。
+	 */
+	@Override
 	public void close() {
+		if (closing) return;
+		closing = true;
+		if (!outbound.offer(CLOSE_SIGNAL)) abort();
+	}
+
+	/**
+	 * 送信待ちのメッセージを破棄して直ちに接続を閉じます。
+	 */
+	private void abort() {
+		closing = true;
+		outbound.clear();
+		writerThread.interrupt();
+		closeSocket();
+	}
+
+	private void closeSocket() {
 		try {
 			socket.close();
 		} catch (IOException e) {
@@ -94,10 +277,38 @@ public void close() {
 		}
 	}
 
+	/**
+	 * 送信スレッドの本体です。キューが空になった時点でまとめてflushします。
+	 */
+	private void drainOutbound() {
+		try {
+			while (true) {
+				String message = outbound.take();
+				if (message == CLOSE_SIGNAL) break;
+				out.println(message);
+				// checkError()はflushを伴うため、まとめてflushするときだけ確認する
+				if (outbound.isEmpty()) {
+					out.flush();
+					if (out.checkError()) break;
+				}
+			}
+			out.flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeSocket();
+		}
+	}
+
 	private void handleDisconnect() {
-		if (gameRoom != null) gameRoom.handleDisconnect(this);
+		// 先にフラグを立ててからルームを読む。ルームへの登録と行き違っても、
+		// こちらがルームを見つけるか、GameRoom.startGameがこのフラグを見つけるかのどちらかになる
+		disconnected = true;
+		GameRoom room = gameRoom;
+		if (room != null) room.handleDisconnect(this);
 		else server.disconnectPlayer(this);
-		System.out.println("プレイヤー切断: " + playerName);
+		System.out.println("プレイヤー切断: " + playerName + "（送信キュー最大深さ: " + peakQueueDepth + "）");
 		close();
+		admission.release();
 	}
 }
@@ -0,0 +1,261 @@
+package server;
+
+import common.*;
+import engine.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * 終わった対局をバックグラウンドで解析し、結果を保持するサービスです。
+ * <p>
+ * 対局の終了時に棋譜を解析待ちの優先度付きキューに積み、専用の配送スレッドが1局ずつ取り出して
+ * 専用のワーカースレッドプールで各局面を探索します。どちらのスレッドも低優先度のデーモンスレッドで、
+ * 通信のスレッドやボットのワーカーとは共有しません。キューは上限があり、満杯の場合は優先度の低い対局から諦めます。
+ * <p>
+ * 解析結果は棋譜のハッシュ値（対局ID）をキーにしたLRUキャッシュに保持するため、同じ対局の再要求は探索せずに返します。
+ * <p>
+ * 設定はシステムプロパティで変更できます。
+ * <ul>
+ *     <li>{@code othello.analysis.threads}: 解析のワーカースレッド数。0で解析を行わない</li>
+ *     <li>{@code othello.analysis.queue}: 解析待ちの上限</li>
+ *     <li>{@code othello.analysis.moveMillis}: 1局面に使ってよいCPU時間（ミリ秒）</li>
+ *     <li>{@code othello.analysis.ttMb}: 解析用の置換表の大きさ（MB）。0で置換表を使わない</li>
+ * </ul>
+ */
+final class GameAnalysisService {
+	/** ワーカースレッド数（デフォルト、CPUコア数の1/4、最低1） */
+	private static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+	/** 解析待ちの上限（デフォルト） */
+	private static final int DEFAULT_QUEUE_CAPACITY = 64;
+	/** 1局面に使ってよいCPU時間（デフォルト、ミリ秒） */
+	private static final int DEFAULT_MOVE_MILLIS = 100;
+	/** 解析用の置換表の大きさ（デフォルト、MB） */
+	private static final int DEFAULT_TT_MB = 16;
+	/** 保持する解析結果の上限 */
+	private static final int CACHE_CAPACITY = 1024;
+
+	/** 優先度: プレイヤーが結果を要求した対局 */
+	private static final int PRIORITY_REQUESTED = 0;
+	/** 優先度: 人間同士の対局 */
+	private static final int PRIORITY_HUMAN = 1;
+	/** 優先度: ボットが参加した対局 */
+	private static final int PRIORITY_BOT = 2;
+
+	/** ボードサイズごとの評価関数 */
+	private final IntFunction<Evaluator> evaluators;
+	/** 1局面に使ってよいCPU時間（ナノ秒） */
+	private final long moveBudgetNanos;
+	private final int queueCapacity;
+	/** 解析用の置換表（使わない場合はnull） */
+	private final TranspositionTable table;
+	/** 解析待ちの対局（優先度順） */
+	private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+	/** 解析待ちまたは解析中の対局（対局IDがキー） */
+	private final Map<String, Job> pending = new ConcurrentHashMap<>();
+	/** 解析結果（対局IDがキー、アクセス順） */
+	private final Map<String, String> reports = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+			return size() > CACHE_CAPACITY;
+		}
+	});
+	/** 各局面を探索するワーカースレッドプール */
+	private final ExecutorService workers;
+	/** 投入順の通し番号（同じ優先度の対局は先に終わったものから解析する） */
+	private final AtomicLong sequence = new AtomicLong();
+	// 統計
+	private final LongAdder analyzed = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	private GameAnalysisService(final IntFunction<Evaluator> evaluators, final int threads, final int queueCapacity, final long moveBudgetNanos,
+								final TranspositionTable table) {
+		this.evaluators = evaluators;
+		this.queueCapacity = queueCapacity;
+		this.moveBudgetNanos = moveBudgetNanos;
+		this.table = table;
+
+		AtomicInteger threadIdCounter = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "analysis-worker-" + threadIdCounter.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		Thread dispatcher = new Thread(this::dispatch, "analysis-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.setPriority(Thread.MIN_PRIORITY);
+		dispatcher.start();
+	}
+
+	/**
+	 * システムプロパティからサービスを作成します。解析が無効な場合はnullを返します。
+	 *
+	 * @param evaluators ボードサイズごとの評価関数
+	 */
+	static GameAnalysisService fromSystemProperties(final IntFunction<Evaluator> evaluators) {
+		int threads = Integer.getInteger("othello.analysis.threads", DEFAULT_THREADS);
+		if (threads <= 0) return null;
+		int queueCapacity = Math.max(1, Integer.getInteger("othello.analysis.queue", DEFAULT_QUEUE_CAPACITY));
+		int moveMillis = Integer.getInteger("othello.analysis.moveMillis", DEFAULT_MOVE_MILLIS);
+		int tableMegabytes = Integer.getInteger("othello.analysis.ttMb", DEFAULT_TT_MB);
+		TranspositionTable table = tableMegabytes > 0 ? new TranspositionTable(tableMegabytes, false) : null;
+		System.out.println("対局の解析を有効にしました（ワーカー" + threads + "、解析待ちの上限" + queueCapacity + "）");
+		return new GameAnalysisService(evaluators, threads, queueCapacity, TimeUnit.MILLISECONDS.toNanos(moveMillis), table);
+	}
+
+	/**
+	 * 棋譜から対局IDを求めます。同じボードサイズ・同じ手順の対局は同じIDになります。
+	 *
+	 * @param size  ボードサイズ
+	 * @param moves 着手の座標（i * size + j）の並び
+	 */
+	static String gameIdOf(final int size, final List<Integer> moves) {
+		// FNV-1a（64ビット）
+		long hash = 0xCBF29CE484222325L;
+		hash = (hash ^ size) * 0x100000001B3L;
+		for (int move : moves) hash = (hash ^ move) * 0x100000001B3L;
+		return String.format("%016x", hash);
+	}
+
+	/**
+	 * 終わった対局を解析待ちに追加します。呼び出し元をブロックしません。
+	 * すでに解析済みまたは解析待ちの対局は追加しません。
+	 *
+	 * @param size      ボードサイズ
+	 * @param moves     着手の座標（i * size + j）の並び（コピーして保持する）
+	 * @param humanGame 人間同士の対局の場合true（ボットが参加した対局より先に解析する）
+	 * @return 対局ID。解析待ちが満杯で追加できなかった場合はnull
+	 */
+	String enqueue(final int size, final List<Integer> moves, final boolean humanGame) {
+		String gameId = gameIdOf(size, moves);
+		if (reports.containsKey(gameId)) return gameId;
+		Job job = new Job(gameId, size, new ArrayList<>(moves), humanGame ? PRIORITY_HUMAN : PRIORITY_BOT, sequence.getAndIncrement());
+		synchronized (this) {
+			if (pending.putIfAbsent(gameId, job) != null) return gameId;
+			if (queue.size() >= queueCapacity && !evictLowerThan(job)) {
+				pending.remove(gameId);
+				dropped.increment();
+				System.out.println("解析待ちが満杯のため対局 " + gameId + " の解析を見送ります");
+				return null;
+			}
+			queue.add(job);
+		}
+		return gameId;
+	}
+
+	/**
+	 * 解析待ちの中で最も優先度の低い対局が{@code job}より低ければ、それを取り除きます。
+	 *
+	 * @return 取り除いた場合true
+	 */
+	private boolean evictLowerThan(final Job job) {
+		Job lowest = null;
+		for (Job candidate : queue) {
+			if (lowest == null || candidate.compareTo(lowest) > 0) lowest = candidate;
+		}
+		if (lowest == null || lowest.compareTo(job) <= 0 || !queue.remove(lowest)) return false;
+		pending.remove(lowest.gameId);
+		dropped.increment();
+		System.out.println("解析待ちが満杯のため対局 " + lowest.gameId + " の解析を取りやめます");
+		return true;
+	}
+
+	/**
+	 * 対局の解析結果をプロトコル文字列で返します。解析待ちの対局は優先度を上げ、{@code PENDING}を返します。
+	 *
+	 * @param gameId 対局ID
+	 */
+	String report(final String gameId) {
+		String report = reports.get(gameId);
+		if (report != null) {
+			cacheHits.increment();
+			return report;
+		}
+		synchronized (this) {
+			Job job = pending.get(gameId);
+			if (job == null) {
+				// 要求の直前に解析が終わった場合
+				report = reports.get(gameId);
+				return report != null ? report : Protocol.analysisUnknown(gameId);
+			}
+			// 優先度付きキューは要素の順位を変えられないため、取り除いて入れ直す
+			if (job.priority != PRIORITY_REQUESTED && queue.remove(job)) {
+				queue.add(new Job(job.gameId, job.size, job.moves, PRIORITY_REQUESTED, job.sequence));
+			}
+		}
+		return Protocol.analysisPending(gameId);
+	}
+
+	/**
+	 * 配送スレッドの本体です。解析待ちから優先度の高い対局を1局ずつ取り出して解析します。
+	 */
+	private void dispatch() {
+		while (true) {
+			Job job;
+			try {
+				job = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				long start = System.nanoTime();
+				// 1局分の局面を同じ世代で探索する（各局面の探索は世代を進めない）
+				if (table != null) table.newSearch();
+				BatchEvaluator batch = new BatchEvaluator(evaluators.apply(job.size), table, workers);
+				GameAnalysis analysis = GameAnalysis.analyze(batch, job.size, job.moves, moveBudgetNanos);
+				reports.put(job.gameId, format(job.gameId, analysis));
+				analyzed.increment();
+				System.out.printf("対局 %s を解析しました（%d手、%.1f秒）: 解析済み%d キャッシュヒット%d 見送り%d%n", job.gameId, job.moves.size(),
+						(System.nanoTime() - start) / 1e9, analyzed.sum(), cacheHits.sum(), dropped.sum());
+			} catch (InterruptedException e) {
+				return;
+			} catch (RuntimeException e) {
+				System.err.println("対局 " + job.gameId + " の解析中にエラーが発生しました: " + e);
+			} finally {
+				pending.remove(job.gameId);
+			}
+		}
+	}
+
+	private static String format(final String gameId, final GameAnalysis analysis) {
+		int plies = analysis.getPlies();
+		int[] played = new int[plies], best = new int[plies], win = new int[plies], loss = new int[plies], grades = new int[plies];
+		for (int ply = 0; ply < plies; ply++) {
+			played[ply] = analysis.getPlayed(ply);
+			best[ply] = analysis.getBest(ply);
+			win[ply] = analysis.getWhiteWinPercent(ply);
+			loss[ply] = analysis.getLossPercent(ply);
+			grades[ply] = analysis.getGrade(ply);
+		}
+		return Protocol.analysisReport(gameId, analysis.getSize(), played, best, win, loss, grades);
+	}
+
+	/**
+	 * 解析待ちの対局です。優先度の値が小さいほど、同じ優先度なら先に追加したものほど先に解析します。
+	 */
+	private static final class Job implements Comparable<Job> {
+		final String gameId;
+		final int size;
+		final List<Integer> moves;
+		final int priority;
+		final long sequence;
+
+		Job(final String gameId, final int size, final List<Integer> moves, final int priority, final long sequence) {
+			this.gameId = gameId;
+			this.size = size;
+			this.moves = moves;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(final Job other) {
+			if (priority != other.priority) return Integer.compare(priority, other.priority);
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
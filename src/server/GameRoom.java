@@ -3,32 +3,47 @@
 import common.*;
 import model.*;
 
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
 class GameRoom {
-	private static int roomIdCounter = 0;
+	private static final AtomicInteger roomIdCounter = new AtomicInteger();
 
 	private final int roomId;
 	private final Board board;
-	private final ClientHandler player1;  // 白
-	private final ClientHandler player2;  // 黒
+	private final Player player1;  // 白
+	private final Player player2;  // 黒
+	private final OthelloServer server;
 	private Piece currentTurn;
-
-	public GameRoom(ClientHandler player1, ClientHandler player2, int boardSize) {
-		this.roomId = roomIdCounter++;
+	/** これまでの着手の座標（i * size + j、パスは含まない） */
+	private final List<Integer> moves = new ArrayList<>();
+	/** 終局または投了によってゲームが終わった後はtrue */
+	private boolean finished;
+
+	public GameRoom(Player player1, Player player2, int boardSize, OthelloServer server) {
+		this.roomId = roomIdCounter.getAndIncrement();
+		this.server = server;
 		this.board = new Board(boardSize);
 		this.currentTurn = Piece.WHITE;
 
 		// player1
 		this.player1 = player1;
-		player1.setGameRoom(this);
 
 		// player2
 		this.player2 = player2;
-		player2.setGameRoom(this);
-
-		startGame();
 	}
 
-	private void startGame() {
+	/**
+	 * 両プレイヤーをこのルームに登録し、対局の開始と最初の手番を知らせます。作成した側が構築の後に1度だけ呼び出します。
+	 * ロックを保持したまま通知するため、先手のボットがすぐに手を返しても、後手への{@code OPPONENT_TURN}より先に処理されることはありません。
+	 * <p>
+	 * マッチングが成立してからルームに登録されるまでの間に切断したプレイヤーは、自分の切断の処理でルームを見つけられないため、
+	 * 登録の後に切断済みかを確認し、ここで切断として扱います。
+	 */
+	synchronized void startGame() {
+		player1.setGameRoom(this);
+		player2.setGameRoom(this);
+
 		player1.sendMessage(Protocol.gameStart(Piece.WHITE));
 		player2.sendMessage(Protocol.gameStart(Piece.BLACK));
 
@@ -36,15 +51,29 @@ private void startGame() {
 		player2.sendMessage(Protocol.opponentTurn());
 
 		System.out.println("ルーム " + roomId + " でゲーム開始");
+
+		if (player1.isDisconnected()) handleDisconnect(player1);
+		else if (player2.isDisconnected()) handleDisconnect(player2);
 	}
 
-	public synchronized void processMove(int i, int j) {
+	public synchronized void processMove(Player player, int i, int j) {
+		// 手番でないプレイヤーからの手や、置けない場所への手は拒否する
+		Player current = currentTurn == Piece.WHITE ? player1 : player2;
+		if (finished || player != current || !isInBoard(i, j) || !board.isValidMove(currentTurn, i, j)) {
+			player.sendMessage(Protocol.error("invalid move"));
+			return;
+		}
+
 		// オセロを置いて全体に知らせる
 		board.applyMove(currentTurn, i, j);
+		moves.add(i * board.getSize() + j);
 		broadcastMessage(Protocol.moveAccepted(i, j));
 
 		// ゲーム終了判定
-		if (isGameOver()) endGame();
+		if (isGameOver()) {
+			endGame();
+			return;
+		}
 
 		// ターンを切り替える
 		currentTurn = currentTurn == Piece.WHITE ? Piece.BLACK : Piece.WHITE;
@@ -57,8 +86,9 @@ public synchronized void processMove(int i, int j) {
 		}
 	}
 
-	public void handleResign(ClientHandler resigner) {
-		ClientHandler opponent = resigner == player1 ? player2 : player1;
+	public synchronized void handleResign(Player resigner) {
+		if (finished) return;
+		Player opponent = resigner == player1 ? player2 : player1;
 
 		int whiteCount = board.getStoneCount(Piece.WHITE);
 		int blackCount = board.getStoneCount(Piece.BLACK);
@@ -70,12 +100,15 @@ public void handleResign(ClientHandler resigner) {
 
 		System.out.println("Room " + roomId + ": Player resigned");
 
+		server.reportResult(player1, player2, resigner == player1 ? 0 : 1);
 		closeRoom();
 	}
 
-	public void handleDisconnect(ClientHandler player) {
+	public synchronized void handleDisconnect(Player player) {
+		if (finished) return;
+		finished = true;
 		// 相手に勝利通知
-		ClientHandler opponent = player == player1 ? player2 : player1;
+		Player opponent = player == player1 ? player2 : player1;
 		if (opponent != null) {
 			opponent.sendMessage(Protocol.opponentDisconnected());
 			int whiteCount = board.getStoneCount(Piece.WHITE);
@@ -84,6 +117,9 @@ public void handleDisconnect(ClientHandler player) {
 		}
 
 		System.out.println("ルーム " + roomId + " でプレイヤー切断");
+		server.reportResult(player1, player2, player == player1 ? 0 : 1);
+		// 残った相手も閉じる（ボットの場合は探索中の手を打ち切る）
+		closeRoom();
 	}
 
 	private void handlePass() {
@@ -105,11 +141,19 @@ private void notifyTurnChange() {
 		}
 	}
 
+	private boolean isInBoard(int i, int j) {
+		return 0 <= i && i < board.getSize() && 0 <= j && j < board.getSize();
+	}
+
 	private boolean isGameOver() {
 		return board.countValidMoves(Piece.WHITE) == 0 && board.countValidMoves(Piece.BLACK) == 0;
 	}
 
 	private void endGame() {
+		// 解析を受け付けた場合は、結果を後から要求するための対局IDを知らせる
+		// （クライアントはGAME_OVERを受信すると切断するため、先に送る）
+		String gameId = server.enqueueAnalysis(player1, player2, board.getSize(), moves);
+		if (gameId != null) broadcastMessage(Protocol.analysisPending(gameId));
 		notifyResult();
 		closeRoom();
 	}
@@ -123,20 +167,24 @@ private void notifyResult() {
 			player1.sendMessage(Protocol.gameWin(whiteCount, blackCount));
 			player2.sendMessage(Protocol.gameLose(whiteCount, blackCount));
 			result = "白の勝利";
+			server.reportResult(player1, player2, 1);
 		} else if (whiteCount < blackCount) {
 			player1.sendMessage(Protocol.gameLose(whiteCount, blackCount));
 			player2.sendMessage(Protocol.gameWin(whiteCount, blackCount));
 			result = "黒の勝利";
+			server.reportResult(player1, player2, 0);
 		} else {
 			player1.sendMessage(Protocol.gameDraw(whiteCount, blackCount));
 			player2.sendMessage(Protocol.gameDraw(whiteCount, blackCount));
 			result = "引き分け";
+			server.reportResult(player1, player2, 0.5);
 		}
 
 		System.out.println("ルーム " + roomId + " でゲーム終了: " + result);
 	}
 
 	private void closeRoom() {
+		finished = true;
 		player1.close();
 		player2.close();
 	}
@@ -0,0 +1,264 @@
+package server;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * レーティング順の順位表です。
+ * <p>
+ * 部分木のサイズを持つトリープ（順序統計木）で管理しているため、レーティングの更新、
+ * 「プレイヤーXの順位」、「上位K人」の取得はいずれもO(log n)（上位K人はO(log n + K)）です。
+ * ノードはオブジェクトではなくint配列の添字で表し、1人あたりのメモリ使用量を一定に抑えています。
+ * 並び順はレーティングの高い順、同じレーティングなら名前の辞書順です。
+ */
+final class Leaderboard {
+	/** 空の部分木を表す添字（0番は使用しない） */
+	private static final int NIL = 0;
+	/** 配列の初期容量 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** 参照は並行に、更新は排他的に行うためのロック */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/** プレイヤー名からノードの添字へのマップ */
+	private final HashMap<String, Integer> nodeOf = new HashMap<>();
+	/** ヒープ条件のための優先度を生成する乱数 */
+	private final Random random = new Random();
+
+	private int[] left = new int[INITIAL_CAPACITY];
+	private int[] right = new int[INITIAL_CAPACITY];
+	/** 部分木のノード数 */
+	private int[] size = new int[INITIAL_CAPACITY];
+	private int[] priority = new int[INITIAL_CAPACITY];
+	private int[] rating = new int[INITIAL_CAPACITY];
+	private String[] name = new String[INITIAL_CAPACITY];
+	private int root = NIL;
+	/** 次に割り当てるノードの添字 */
+	private int nextNode = 1;
+	/** 分割結果の受け渡し用（書き込みロック中のみ使用） */
+	private int splitLeft, splitRight;
+	/** 前回のスナップショット以降に更新があればtrue */
+	private volatile boolean dirty;
+
+	/**
+	 * プレイヤーのレーティングを登録または更新します。
+	 */
+	public void update(final String playerName, final int newRating) {
+		lock.writeLock().lock();
+		try {
+			Integer node = nodeOf.get(playerName);
+			if (node == null) {
+				node = allocate(playerName);
+				nodeOf.put(playerName, node);
+			} else {
+				if (rating[node] == newRating) return;
+				root = remove(root, node);
+			}
+			rating[node] = newRating;
+			left[node] = right[node] = NIL;
+			size[node] = 1;
+			root = insert(root, node);
+			dirty = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * プレイヤーの順位（1始まり）を返します。登録されていなければ0を返します。
+	 */
+	public int rankOf(final String playerName) {
+		lock.readLock().lock();
+		try {
+			Integer node = nodeOf.get(playerName);
+			if (node == null) return 0;
+			int rank = 0;
+			int t = root;
+			while (t != NIL) {
+				if (t == node) return rank + size[left[t]] + 1;
+				if (less(node, t)) {
+					t = left[t];
+				} else {
+					rank += size[left[t]] + 1;
+					t = right[t];
+				}
+			}
+			return 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 上位K人の名前とレーティングを順位順に返します。
+	 */
+	public LinkedHashMap<String, Integer> top(final int k) {
+		lock.readLock().lock();
+		try {
+			LinkedHashMap<String, Integer> result = new LinkedHashMap<>();
+			Deque<Integer> stack = new ArrayDeque<>();
+			int t = root;
+			while ((t != NIL || !stack.isEmpty()) && result.size() < k) {
+				while (t != NIL) {
+					stack.push(t);
+					t = left[t];
+				}
+				t = stack.pop();
+				result.put(name[t], rating[t]);
+				t = right[t];
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 登録されているプレイヤー数を返します。
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size[root];
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 前回の保存以降に更新があれば、順位表全体を「順位 名前 レーティング」の形式でファイルに書き出します。
+	 * 読み取りロックは名前とレーティングを配列に写す間だけ保持し、ファイルへの書き込み中は更新を妨げません。
+	 */
+	public void saveIfDirty(final Path file) {
+		if (!dirty) return;
+		dirty = false;
+		String[] names;
+		int[] ratings;
+		lock.readLock().lock();
+		try {
+			names = new String[size[root]];
+			ratings = new int[names.length];
+			int rank = 0;
+			Deque<Integer> stack = new ArrayDeque<>();
+			int t = root;
+			while (t != NIL || !stack.isEmpty()) {
+				while (t != NIL) {
+					stack.push(t);
+					t = left[t];
+				}
+				t = stack.pop();
+				names[rank] = name[t];
+				ratings[rank++] = rating[t];
+				t = right[t];
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				for (int rank = 0; rank < names.length; rank++) {
+					writer.write((rank + 1) + " " + names[rank] + " " + ratings[rank]);
+					writer.newLine();
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			dirty = true;
+			System.err.println("順位表の保存に失敗しました: " + e);
+		}
+	}
+
+	private int allocate(final String playerName) {
+		if (nextNode == name.length) grow();
+		int node = nextNode++;
+		name[node] = playerName;
+		priority[node] = random.nextInt();
+		return node;
+	}
+
+	private void grow() {
+		int capacity = name.length * 2;
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		size = Arrays.copyOf(size, capacity);
+		priority = Arrays.copyOf(priority, capacity);
+		rating = Arrays.copyOf(rating, capacity);
+		name = Arrays.copyOf(name, capacity);
+	}
+
+	/**
+	 * ノードaがノードbより上位かを返します。
+	 */
+	private boolean less(final int a, final int b) {
+		if (rating[a] != rating[b]) return rating[a] > rating[b];
+		return name[a].compareTo(name[b]) < 0;
+	}
+
+	private void updateSize(final int t) {
+		size[t] = size[left[t]] + size[right[t]] + 1;
+	}
+
+	private int insert(final int t, final int node) {
+		if (t == NIL) return node;
+		if (priority[node] > priority[t]) {
+			split(t, node);
+			left[node] = splitLeft;
+			right[node] = splitRight;
+			updateSize(node);
+			return node;
+		}
+		if (less(node, t)) left[t] = insert(left[t], node);
+		else right[t] = insert(right[t], node);
+		updateSize(t);
+		return t;
+	}
+
+	private int remove(final int t, final int node) {
+		if (t == node) return merge(left[t], right[t]);
+		if (less(node, t)) left[t] = remove(left[t], node);
+		else right[t] = remove(right[t], node);
+		updateSize(t);
+		return t;
+	}
+
+	/**
+	 * 部分木tを、nodeより上位のノード（splitLeft）とそれ以外（splitRight）に分割します。
+	 */
+	private void split(final int t, final int node) {
+		if (t == NIL) {
+			splitLeft = splitRight = NIL;
+			return;
+		}
+		if (less(t, node)) {
+			split(right[t], node);
+			right[t] = splitLeft;
+			updateSize(t);
+			splitLeft = t;
+		} else {
+			split(left[t], node);
+			left[t] = splitRight;
+			updateSize(t);
+			splitRight = t;
+		}
+	}
+
+	/**
+	 * aのすべてのノードがbのすべてのノードより上位である2つの部分木を結合します。
+	 */
+	private int merge(final int a, final int b) {
+		if (a == NIL) return b;
+		if (b == NIL) return a;
+		if (priority[a] > priority[b]) {
+			right[a] = merge(right[a], b);
+			updateSize(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		updateSize(b);
+		return b;
+	}
+}
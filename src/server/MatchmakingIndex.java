@@ -0,0 +1,173 @@
+package server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * 1つのボードサイズのマッチング待ちプレイヤーを、レーティング順に保持する索引です。
+ * <p>
+ * {@link ConcurrentSkipListSet}で管理しているため、追加・削除・近傍検索はO(log n)で、全体をロックしません。
+ * 待ち行列からの取り出しは{@code remove}の成否で判定するため、同じプレイヤーが二重にマッチングされることはありません。
+ * 許容するレーティング差は待ち時間に応じて広がります。
+ */
+final class MatchmakingIndex {
+	/** 待ち始めた直後に許容するレーティング差 */
+	private static final int BASE_WINDOW = 100;
+	/** 1秒待つごとに広げるレーティング差 */
+	private static final int WINDOW_PER_SECOND = 10;
+	/** 許容するレーティング差の上限 */
+	private static final int MAX_WINDOW = 1000;
+	/** チケットの通し番号（同じレーティングのプレイヤーを区別するため） */
+	private static final AtomicLong sequence = new AtomicLong();
+
+	/** レーティング順の待ち行列 */
+	private final ConcurrentSkipListSet<Ticket> waiting = new ConcurrentSkipListSet<>();
+
+	/**
+	 * プレイヤーを待ち行列に追加します。
+	 *
+	 * @return 追加したプレイヤーのチケット
+	 */
+	public Ticket add(final ClientHandler player, final int rating) {
+		Ticket ticket = new Ticket(player, rating, System.nanoTime(), sequence.incrementAndGet());
+		waiting.add(ticket);
+		return ticket;
+	}
+
+	/**
+	 * チケットを取り消して待ち行列から取り除きます。取り消したチケットは二度と待ち行列に戻りません。
+	 *
+	 * @return 取り除けた場合true（既に他のスレッドに取り出されていた場合false）
+	 */
+	public boolean remove(final Ticket ticket) {
+		ticket.cancelled = true;
+		return waiting.remove(ticket);
+	}
+
+	/**
+	 * 待ち人数を返します（O(n)のため統計用）。
+	 */
+	public int size() {
+		return waiting.size();
+	}
+
+	/**
+	 * 指定チケットのプレイヤーに対戦相手を探し、見つかれば両者を待ち行列から取り出します。
+	 *
+	 * @return 対戦相手のチケット。見つからなければnull
+	 */
+	public Ticket tryMatch(final Ticket ticket) {
+		while (true) {
+			long now = System.nanoTime();
+			Ticket partner = nearestCompatible(ticket, now);
+			if (partner == null) return null;
+			if (claimPair(ticket, partner)) return partner;
+			// 自分が既に取り出されていれば終了、相手が取られただけならやり直す
+			if (!waiting.contains(ticket)) return null;
+		}
+	}
+
+	/**
+	 * 待ち行列をレーティング順に走査し、隣り合う組み合わせで許容範囲内のものをマッチングします。
+	 * 待ち時間で許容範囲が広がったプレイヤーを定期的に拾うために使用します。
+	 *
+	 * @return 成立した組み合わせのリスト
+	 */
+	public List<Ticket[]> sweep() {
+		long now = System.nanoTime();
+		List<Ticket[]> pairs = new ArrayList<>();
+		Ticket previous = null;
+		for (Ticket current : waiting) {
+			if (previous != null && isCompatible(previous, current, now) && claimPair(previous, current)) {
+				pairs.add(new Ticket[]{previous, current});
+				previous = null;
+				continue;
+			}
+			previous = current;
+		}
+		return pairs;
+	}
+
+	/**
+	 * 指定時間以上待っているプレイヤーを待ち行列から取り出します。
+	 *
+	 * @param waitNanos 待ち時間のしきい値（ナノ秒）
+	 * @return 取り出したチケットのリスト
+	 */
+	public List<Ticket> pollWaitingLongerThan(final long waitNanos) {
+		long now = System.nanoTime();
+		List<Ticket> result = new ArrayList<>();
+		for (Ticket ticket : waiting) {
+			if (now - ticket.enqueuedAt >= waitNanos && waiting.remove(ticket)) result.add(ticket);
+		}
+		return result;
+	}
+
+	/**
+	 * 2つのチケットをまとめて待ち行列から取り出します。
+	 * 先にaを取り出せたスレッドだけがbの取り出しに進み、bが既に取られていればaを戻します。
+	 * aを戻す間に{@link #remove}で取り消された場合は、戻したaを取り除きます
+	 * （取り消し側はフラグを立ててから取り除き、こちらは戻してからフラグを確認するため、どちらかが必ず取り除く）。
+	 *
+	 * @return 両方を取り出せた場合true
+	 */
+	private boolean claimPair(final Ticket a, final Ticket b) {
+		if (!waiting.remove(a)) return false;
+		if (waiting.remove(b)) return true;
+		waiting.add(a);
+		if (a.cancelled) waiting.remove(a);
+		return false;
+	}
+
+	/**
+	 * レーティングが最も近く、許容範囲内にある待ちプレイヤーを返します。
+	 */
+	private Ticket nearestCompatible(final Ticket ticket, final long now) {
+		Ticket lower = waiting.lower(ticket);
+		Ticket higher = waiting.higher(ticket);
+		Ticket nearest;
+		if (lower == null) nearest = higher;
+		else if (higher == null) nearest = lower;
+		else nearest = ticket.rating - lower.rating <= higher.rating - ticket.rating ? lower : higher;
+		return nearest != null && isCompatible(ticket, nearest, now) ? nearest : null;
+	}
+
+	private static boolean isCompatible(final Ticket a, final Ticket b, final long now) {
+		return Math.abs(a.rating - b.rating) <= Math.max(a.window(now), b.window(now));
+	}
+
+	/**
+	 * マッチング待ちの1人分の情報です。レーティング順（同じなら到着順）に並びます。
+	 */
+	static final class Ticket implements Comparable<Ticket> {
+		final ClientHandler player;
+		final int rating;
+		/** 待ち始めた時刻（System.nanoTime） */
+		final long enqueuedAt;
+		private final long seq;
+		/** 切断などで取り消された場合true（取り消したチケットは待ち行列に戻さない） */
+		private volatile boolean cancelled;
+
+		private Ticket(final ClientHandler player, final int rating, final long enqueuedAt, final long seq) {
+			this.player = player;
+			this.rating = rating;
+			this.enqueuedAt = enqueuedAt;
+			this.seq = seq;
+		}
+
+		/**
+		 * 現在の待ち時間に応じた許容レーティング差を返します。
+		 */
+		int window(final long now) {
+			long waitedSeconds = TimeUnit.NANOSECONDS.toSeconds(now - enqueuedAt);
+			return (int) Math.min(MAX_WINDOW, BASE_WINDOW + WINDOW_PER_SECOND * waitedSeconds);
+		}
+
+		@Override
+		public int compareTo(final Ticket other) {
+			if (rating != other.rating) return Integer.compare(rating, other.rating);
+			return Long.compare(seq, other.seq);
+		}
+	}
+}
@@ -1,16 +1,59 @@
 package server;
 
+import common.*;
+
 import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 class OthelloServer {
 	private static final int DEFAULT_PORT = 10000;
-	private final HashMap<Integer, Queue<ClientHandler>> waitingPlayers;
+	/** レーティングの保存先（デフォルト） */
+	private static final String DEFAULT_RATINGS_FILE = "ratings.txt";
+	/** レーティングを保存する間隔（秒） */
+	private static final int RATINGS_SAVE_INTERVAL_SECONDS = 30;
+	/** 順位表のスナップショットの保存先（デフォルト） */
+	private static final String DEFAULT_LEADERBOARD_FILE = "leaderboard.txt";
+	/** 順位表のスナップショットを保存する間隔（秒） */
+	private static final int LEADERBOARD_SAVE_INTERVAL_SECONDS = 60;
+	/** ボードサイズごとのマッチング待ち索引 */
+	private final ConcurrentHashMap<Integer, MatchmakingIndex> waitingPlayers;
+	/** マッチング待ちプレイヤーのチケット */
+	private final ConcurrentHashMap<ClientHandler, MatchmakingIndex.Ticket> tickets;
+	private final AdmissionController admission;
+	private final BotMatchPolicy botPolicy;
+	/** 終わった対局の解析（無効な場合はnull） */
+	private final GameAnalysisService analysis;
+	private final RatingStore ratings;
+	private final Leaderboard leaderboard;
+	/** 待ち時間の監視などを行うスレッド */
+	private final ScheduledExecutorService scheduler;
 	private ServerSocket serverSocket;
 
 	public OthelloServer(int port) {
-		waitingPlayers = new HashMap<>();
+		waitingPlayers = new ConcurrentHashMap<>();
+		tickets = new ConcurrentHashMap<>();
+		admission = new AdmissionController();
+		botPolicy = BotMatchPolicy.fromSystemProperties();
+		analysis = GameAnalysisService.fromSystemProperties(botPolicy::evaluatorFor);
+		leaderboard = new Leaderboard();
+		ratings = new RatingStore(Paths.get(System.getProperty("othello.ratingsFile", DEFAULT_RATINGS_FILE)), leaderboard);
+		Path leaderboardFile = Paths.get(System.getProperty("othello.leaderboardFile", DEFAULT_LEADERBOARD_FILE));
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "matchmaker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::sweepWaitingPlayers, 1, 1, TimeUnit.SECONDS);
+		scheduler.scheduleWithFixedDelay(ratings::saveIfDirty, RATINGS_SAVE_INTERVAL_SECONDS, RATINGS_SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		scheduler.scheduleWithFixedDelay(() -> leaderboard.saveIfDirty(leaderboardFile), LEADERBOARD_SAVE_INTERVAL_SECONDS, LEADERBOARD_SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			ratings.saveIfDirty();
+			leaderboard.saveIfDirty(leaderboardFile);
+		}));
 
 		try {
 			serverSocket = new ServerSocket(port);
@@ -40,10 +83,22 @@ public void start() {
 		while (true) {
 			try {
 				Socket clientSocket = serverSocket.accept();
-				System.out.println("新しいクライアントが接続しました");
 
-				ClientHandler handler = new ClientHandler(clientSocket, this);
-				handler.start();
+				// スレッドを作る前に受け入れ可否を判定する
+				if (!admission.tryAdmit(clientSocket.getInetAddress())) {
+					rejectConnection(clientSocket);
+					continue;
+				}
+				System.out.println("新しいクライアントが接続しました（接続数: " + admission.getActiveConnections() + "）");
+
+				try {
+					ClientHandler handler = new ClientHandler(clientSocket, this, admission);
+					handler.start();
+				} catch (RuntimeException e) {
+					admission.release();
+					clientSocket.close();
+					e.printStackTrace();
+				}
 
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -51,22 +106,111 @@ public void start() {
 		}
 	}
 
-	public synchronized void addWaitingPlayer(int boardSize, ClientHandler player) {
-		waitingPlayers.computeIfAbsent(boardSize, k -> new LinkedList<>()).add(player);
-		System.out.println("プレイヤーが待ち行列に追加されました: " + player.getPlayerName());
-		matchPlayers(boardSize);
+	/**
+	 * 受け入れを拒否した接続にエラーを返して閉じます。
+	 */
+	private void rejectConnection(Socket socket) {
+		System.out.println("接続を拒否しました: " + socket.getInetAddress().getHostAddress());
+		try {
+			socket.getOutputStream().write((Protocol.error("server busy") + "\n").getBytes(StandardCharsets.UTF_8));
+		} catch (IOException ignored) {
+			// 拒否する接続なので、書き込みに失敗しても何もしない
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException ignored) {
+			}
+		}
 	}
 
-	private void matchPlayers(int boardSize) {
-		while (waitingPlayers.get(boardSize).size() >= 2) {
-			ClientHandler player1 = waitingPlayers.get(boardSize).poll();
-			ClientHandler player2 = waitingPlayers.get(boardSize).poll();
-			new GameRoom(player1, player2, boardSize);
-			System.out.println("マッチング成立: " + player1.getPlayerName() + " vs " + player2.getPlayerName());
+	/**
+	 * プレイヤーをマッチング待ちに追加し、レーティングの近い相手がいればすぐに対局を開始します。
+	 */
+	public void addWaitingPlayer(int boardSize, ClientHandler player) {
+		MatchmakingIndex index = waitingPlayers.computeIfAbsent(boardSize, k -> new MatchmakingIndex());
+		MatchmakingIndex.Ticket ticket = index.add(player, ratings.getRating(player.getPlayerName()));
+		tickets.put(player, ticket);
+		System.out.println("プレイヤーが待ち行列に追加されました: " + player.getPlayerName() + "（レーティング: " + ticket.rating + "）");
+
+		MatchmakingIndex.Ticket partner = index.tryMatch(ticket);
+		if (partner != null) startGame(partner, ticket, boardSize);
+	}
+
+	/**
+	 * 待ち時間によって許容範囲が広がったプレイヤー同士をマッチングし、
+	 * それでも相手が見つからず待ち時間がしきい値を超えたプレイヤーをボットと対局させます。
+	 */
+	private void sweepWaitingPlayers() {
+		for (Map.Entry<Integer, MatchmakingIndex> entry : waitingPlayers.entrySet()) {
+			int boardSize = entry.getKey();
+			MatchmakingIndex index = entry.getValue();
+			for (MatchmakingIndex.Ticket[] pair : index.sweep()) startGame(pair[0], pair[1], boardSize);
+
+			if (!botPolicy.isEnabled()) continue;
+			for (MatchmakingIndex.Ticket ticket : index.pollWaitingLongerThan(botPolicy.getWaitThresholdNanos())) {
+				tickets.remove(ticket.player);
+				BotPlayer bot = botPolicy.createBot(boardSize);
+				new GameRoom(ticket.player, bot, boardSize, this).startGame();
+				System.out.println("ボットとのマッチング成立: " + ticket.player.getPlayerName() + " vs " + bot.getPlayerName());
+			}
 		}
 	}
 
+	/**
+	 * 待ち行列から取り出した2人の対局を開始します。先に待っていた方が白（先手）になります。
+	 */
+	private void startGame(MatchmakingIndex.Ticket first, MatchmakingIndex.Ticket second, int boardSize) {
+		tickets.remove(first.player);
+		tickets.remove(second.player);
+		new GameRoom(first.player, second.player, boardSize, this).startGame();
+		System.out.println("マッチング成立: " + first.player.getPlayerName() + " vs " + second.player.getPlayerName());
+	}
+
+	/**
+	 * 対局結果をレーティングに反映します。ボットが参加した対局は対象外です。
+	 *
+	 * @param white      白のプレイヤー
+	 * @param black      黒のプレイヤー
+	 * @param whiteScore 白の得点（勝ち1, 引き分け0.5, 負け0）
+	 */
+	public void reportResult(Player white, Player black, double whiteScore) {
+		if (white instanceof BotPlayer || black instanceof BotPlayer) return;
+		if (white.getPlayerName().equals(black.getPlayerName())) return;
+		ratings.recordResult(white.getPlayerName(), black.getPlayerName(), whiteScore);
+	}
+
+	/**
+	 * 終わった対局を解析待ちに追加します。
+	 *
+	 * @param white 白のプレイヤー
+	 * @param black 黒のプレイヤー
+	 * @param size  ボードサイズ
+	 * @param moves 着手の座標（i * size + j）の並び
+	 * @return 対局ID。解析が無効か、解析待ちが満杯の場合はnull
+	 */
+	public String enqueueAnalysis(Player white, Player black, int size, List<Integer> moves) {
+		if (analysis == null) return null;
+		boolean humanGame = !(white instanceof BotPlayer) && !(black instanceof BotPlayer);
+		return analysis.enqueue(size, moves, humanGame);
+	}
+
+	/**
+	 * 対局の解析結果をプロトコル文字列で返します。
+	 *
+	 * @param gameId 対局ID
+	 */
+	public String getAnalysisReport(String gameId) {
+		if (analysis == null) return Protocol.analysisUnknown(gameId);
+		return analysis.report(gameId);
+	}
+
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+
 	public void disconnectPlayer(ClientHandler player) {
-		waitingPlayers.values().forEach(queue -> queue.remove(player));
+		MatchmakingIndex.Ticket ticket = tickets.remove(player);
+		if (ticket == null) return;
+		waitingPlayers.values().forEach(index -> index.remove(ticket));
 	}
 }
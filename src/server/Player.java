@@ -0,0 +1,27 @@
+package server;
+
+/**
+ * GameRoomから見た対局者です。
+ * ネットワーク越しのクライアント（{@link ClientHandler}）とサーバー内のボット（{@link BotPlayer}）が実装します。
+ */
+interface Player {
+
+	/**
+	 * プロトコル文字列を対局者に送ります。呼び出し元をブロックしてはいけません。
+	 */
+	void sendMessage(String message);
+
+	void setGameRoom(GameRoom room);
+
+	/**
+	 * 対局者が切断した（または切断の処理を始めた）場合trueを返します。
+	 */
+	boolean isDisconnected();
+
+	String getPlayerName();
+
+	/**
+	 * 対局者との接続を終了します。
+	 */
+	void close();
+}
@@ -0,0 +1,108 @@
+package server;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * プレイヤー名ごとのイロレーティングを管理し、ファイルに保存するクラスです。
+ * <p>
+ * ファイルは「名前 レーティング」を1行ずつ並べたテキスト形式です。
+ * 更新はメモリ上で行い、{@link #saveIfDirty()}で一時ファイルに書き出してから置き換えます。
+ * レーティングが変わるたびに{@link Leaderboard}にも反映します。
+ */
+final class RatingStore {
+	/** 初めて対局するプレイヤーのレーティング */
+	static final int INITIAL_RATING = 1500;
+	/** 1局あたりの変動の大きさ（K係数） */
+	private static final int K_FACTOR = 32;
+
+	/** 保存先のファイル */
+	private final Path file;
+	/** プレイヤー名からレーティングへのマップ */
+	private final ConcurrentHashMap<String, Integer> ratings = new ConcurrentHashMap<>();
+	/** レーティングの変更を反映する順位表 */
+	private final Leaderboard leaderboard;
+	/** 前回の保存以降に更新があればtrue */
+	private volatile boolean dirty;
+
+	RatingStore(final Path file, final Leaderboard leaderboard) {
+		this.file = file;
+		this.leaderboard = leaderboard;
+		load();
+	}
+
+	/**
+	 * 指定プレイヤーのレーティングを返します。記録がなければ初期値を返します。
+	 */
+	public int getRating(final String playerName) {
+		return ratings.getOrDefault(playerName, INITIAL_RATING);
+	}
+
+	/**
+	 * 対局結果をレーティングに反映します。
+	 *
+	 * @param white      白のプレイヤー名
+	 * @param black      黒のプレイヤー名
+	 * @param whiteScore 白の得点（勝ち1, 引き分け0.5, 負け0）
+	 */
+	public synchronized void recordResult(final String white, final String black, final double whiteScore) {
+		int whiteRating = getRating(white);
+		int blackRating = getRating(black);
+		double expected = 1.0 / (1.0 + Math.pow(10, (blackRating - whiteRating) / 400.0));
+		int delta = (int) Math.round(K_FACTOR * (whiteScore - expected));
+		ratings.put(white, whiteRating + delta);
+		ratings.put(black, blackRating - delta);
+		leaderboard.update(white, whiteRating + delta);
+		leaderboard.update(black, blackRating - delta);
+		dirty = true;
+	}
+
+	/**
+	 * 前回の保存以降に更新があればファイルに書き出します。
+	 */
+	public void saveIfDirty() {
+		if (!dirty) return;
+		dirty = false;
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Integer> entry : ratings.entrySet()) {
+				writer.write(entry.getKey() + " " + entry.getValue());
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			dirty = true;
+			System.err.println("レーティングの保存に失敗しました: " + e);
+			return;
+		}
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			dirty = true;
+			System.err.println("レーティングの保存に失敗しました: " + e);
+		}
+	}
+
+	private void load() {
+		if (!Files.exists(file)) return;
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.split(" ");
+				if (tokens.length != 2) continue;
+				try {
+					int rating = Integer.parseInt(tokens[1]);
+					ratings.put(tokens[0], rating);
+					leaderboard.update(tokens[0], rating);
+				} catch (NumberFormatException ignored) {
+					// 壊れた行は読み飛ばす
+				}
+			}
+			System.out.println("レーティングを読み込みました: " + ratings.size() + "人");
+		} catch (IOException e) {
+			System.err.println("レーティングの読み込みに失敗しました: " + e);
+		}
+	}
+}